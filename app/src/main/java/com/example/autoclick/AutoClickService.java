@@ -1,26 +1,134 @@
 package com.example.autoclick;
 
 import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.AccessibilityServiceInfo;
 import android.accessibilityservice.GestureDescription;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.content.Context;
+import android.database.ContentObserver;
 import android.graphics.Path;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.text.TextUtils;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
 import androidx.core.app.NotificationCompat;
+import com.example.autoclick.engine.BurstPlanner;
+import com.example.autoclick.engine.ClickChord;
+import com.example.autoclick.engine.ClickLog;
+import com.example.autoclick.engine.CoordinateCell;
+import com.example.autoclick.engine.EventTrigger;
+import com.example.autoclick.engine.ImageTrigger;
+import com.example.autoclick.engine.LatencyHistogram;
+import com.example.autoclick.engine.LeadEstimator;
+import com.example.autoclick.engine.NodeTarget;
+import com.example.autoclick.engine.PixelProbe;
+import com.example.autoclick.engine.StrokeBatch;
+import com.example.autoclick.engine.TemplateMatcher;
+import com.example.autoclick.engine.TimeBase;
+import com.example.autoclick.engine.TriggerRegistry;
+import java.util.Arrays;
+import java.util.List;
 
 public class AutoClickService extends AccessibilityService {
     private static AutoClickService instance;
     private static final String CHANNEL_ID = "AutoClickChannel";
     private static final int NOTIFICATION_ID = 1001;
+    public static final long DEFAULT_TAP_DURATION_MS = 100;
+
+    // 单点点击手势缓存，稳定状态下每次点击不再分配对象
+    private static final GestureCache gestureCache = new GestureCache();
+
+    /**
+     * 手势完成/取消通知，回调在 setGestureHandler 指定的线程，未指定时在主线程
+     */
+    public interface GestureListener {
+        void onGestureCompleted();
+
+        void onGestureCancelled();
+    }
+
+    // dispatchGesture 调用本身（跨进程提交）的耗时
+    private static final LatencyHistogram dispatchCallHistogram = new LatencyHistogram();
+
+    private static final int LOG_TRIGGER = ClickLog.event("触发条件 {} 命中, 事件类型 {}");
+
+    /**
+     * 事件触发通知，在主线程的 onAccessibilityEvent 中同步回调
+     */
+    public interface TriggerListener {
+        /**
+         * @param eventUptimeMs 事件产生时刻（uptimeMillis 时基）
+         */
+        void onTriggered(long eventUptimeMs);
+    }
+
+    /**
+     * 图像模板在截图中找到时回调，坐标为图像中心
+     */
+    public interface ImageListener {
+        void onImageFound(long frameUptimeMs, int x, int y);
+    }
+
+    // 当前等待中的触发条件；服务只订阅这些条件需要的事件类型和应用，没有条件时不接收任何事件
+    private static final TriggerRegistry<TriggerListener> triggers = new TriggerRegistry<>();
+    // 事件产生到触发的点击派发完成的延迟
+    private static final LatencyHistogram triggerLatencyHistogram = new LatencyHistogram();
+
+    // 按界面元素定位点击目标的缓存索引，有任务使用时才订阅窗口和内容变化事件
+    private static final NodeLocator locator = new NodeLocator();
+    private static int locatorUsers;
+    private static final int LOCATOR_EVENT_MASK =
+            AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED;
+    // 输入延迟校准：有任务在点击时订阅点击事件，与派发配对学习提前量。
+    // 首次配对成功后只接收该应用的点击事件，配满一个估计窗口的样本后不再订阅，直到校准重新开始
+    private static int calibrationUsers;
+    private static String calibrationPackage;
+    private static int calibrationSamples;
+    // 查找一次目标（含索引刷新）的耗时
+    private static final LatencyHistogram locateHistogram = new LatencyHistogram();
+
+    // 手势完成/取消回调投递到的线程，点击引擎运行期间为点击线程，为 null 时回调在主线程
+    private static volatile Handler gestureHandler;
+
+    // 系统设置中本服务的开启状态，观察设置期间由 watchServiceEnabled 注册的观察者维护
+    private static ContentObserver enabledObserver;
+    private static volatile boolean enabledCached;
+
+    // 截屏像素探测，所有探针共用一个截屏循环
+    private static final ScreenProbe screenProbe = new ScreenProbe();
+
+    /**
+     * 为一个点击任务创建手势回调，任务创建时调用一次，之后每次派发复用，
+     * 多个任务同时运行时各自的完成/取消通知不会混在一起
+     */
+    public static GestureResultCallback newGestureCallback(final GestureListener listener) {
+        return new GestureResultCallback() {
+            @Override
+            public void onCompleted(GestureDescription gestureDescription) {
+                super.onCompleted(gestureDescription);
+                listener.onGestureCompleted();
+            }
+
+            @Override
+            public void onCancelled(GestureDescription gestureDescription) {
+                super.onCancelled(gestureDescription);
+                listener.onGestureCancelled();
+            }
+        };
+    }
 
     @Override
     protected void onServiceConnected() {
         super.onServiceConnected();
+        ClickLog.start(EngineChannel.logDir(this));
         instance = this;
+        applyEventFilter();
+        screenProbe.attach(this);
         createNotificationChannel();
         showServiceNotification();
         
@@ -28,7 +136,236 @@ public class AutoClickService extends AccessibilityService {
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        // 不需要特殊处理
+        if (locatorUsers > 0) {
+            locator.onEvent(event);
+        }
+        if (isCalibrating() && event.getEventType() == AccessibilityEvent.TYPE_VIEW_CLICKED) {
+            onCalibrationClick(event);
+        }
+        TriggerRegistry.Entry<TriggerListener>[] entries = triggers.entries();
+        if (entries.length == 0) return;
+        int eventType = event.getEventType();
+        CharSequence packageName = event.getPackageName();
+        for (TriggerRegistry.Entry<TriggerListener> entry : entries) {
+            // 先按类型和应用预筛选，只有通过的事件才去读节点内容
+            if (!entry.trigger.accepts(eventType, packageName)) continue;
+            if (!matchesContent(entry.trigger, event)) continue;
+            ClickLog.d(LOG_TRIGGER, entry.key, eventType);
+            entry.listener.onTriggered(event.getEventTime());
+        }
+    }
+
+    private static boolean matchesContent(EventTrigger trigger, AccessibilityEvent event) {
+        switch (trigger.kind()) {
+            case WINDOW:
+                return true;
+            case TEXT:
+                // 事件自带的文字不需要跨进程查询节点
+                List<CharSequence> texts = event.getText();
+                if (texts != null) {
+                    for (int i = 0; i < texts.size(); i++) {
+                        CharSequence text = texts.get(i);
+                        if (text != null && text.toString().contains(trigger.value())) return true;
+                    }
+                }
+                return sourceContains(trigger, event);
+            default:
+                return sourceContains(trigger, event);
+        }
+    }
+
+    /**
+     * 在事件来源节点的子树中查找条件指定的文字或控件
+     */
+    private static boolean sourceContains(EventTrigger trigger, AccessibilityEvent event) {
+        AccessibilityNodeInfo source = event.getSource();
+        if (source == null) return false;
+        try {
+            if (trigger.kind() == EventTrigger.Kind.VIEW
+                    && trigger.value().equals(source.getViewIdResourceName())) {
+                return true;
+            }
+            List<AccessibilityNodeInfo> found = trigger.kind() == EventTrigger.Kind.TEXT
+                    ? source.findAccessibilityNodeInfosByText(trigger.value())
+                    : source.findAccessibilityNodeInfosByViewId(trigger.value());
+            if (found == null || found.isEmpty()) return false;
+            for (int i = 0; i < found.size(); i++) {
+                found.get(i).recycle();
+            }
+            return true;
+        } finally {
+            source.recycle();
+        }
+    }
+
+    private static boolean isCalibrating() {
+        return calibrationUsers > 0 && calibrationSamples < LeadEstimator.WINDOW;
+    }
+
+    private void onCalibrationClick(AccessibilityEvent event) {
+        CharSequence packageName = event.getPackageName();
+        if (packageName == null || getPackageName().contentEquals(packageName)) return;
+        if (calibrationPackage != null && !calibrationPackage.contentEquals(packageName)) return;
+        // 事件时间只有毫秒精度，换算到 elapsedRealtimeNanos 时基
+        boolean paired = InputLatency.onClickEvent(SystemClock.elapsedRealtimeNanos()
+                - (SystemClock.uptimeMillis() - event.getEventTime()) * TimeBase.NANOS_PER_MILLI);
+        if (!paired) return;
+        calibrationSamples++;
+        if (calibrationPackage == null) {
+            // 与派发配对的应用就是点击目标，之后只接收它的点击事件
+            calibrationPackage = packageName.toString();
+            applyEventFilter();
+        } else if (calibrationSamples == LeadEstimator.WINDOW) {
+            applyEventFilter();
+        }
+    }
+
+    /**
+     * 按当前触发条件收窄订阅：事件类型取并集，所有条件都限定应用时只接收这些应用的事件，
+     * 不合并事件（notificationTimeout 为 0）以免触发被推迟。
+     * 定位器在使用中时加上窗口和内容变化事件，活动窗口可能属于任何应用，不按应用过滤；
+     * 输入延迟校准期间加上点击事件，认出目标应用之前不按应用过滤，之后把目标应用并入应用列表。
+     */
+    private void applyEventFilter() {
+        AccessibilityServiceInfo info = getServiceInfo();
+        if (info == null) return;
+        boolean calibrating = isCalibrating();
+        info.eventTypes = triggers.eventMask() | (locatorUsers > 0 ? LOCATOR_EVENT_MASK : 0)
+                | (calibrating ? AccessibilityEvent.TYPE_VIEW_CLICKED : 0);
+        if (locatorUsers > 0 || (calibrating && calibrationPackage == null)) {
+            info.packageNames = null;
+        } else if (calibrating) {
+            info.packageNames = withPackage(triggers.packageNames(), calibrationPackage);
+        } else {
+            info.packageNames = triggers.packageNames();
+        }
+        info.notificationTimeout = 0;
+        setServiceInfo(info);
+    }
+
+    /**
+     * 触发条件的应用列表加上校准目标；没有触发条件时只有校准目标，触发条件不限应用时仍不限
+     */
+    private static String[] withPackage(String[] packageNames, String packageName) {
+        if (triggers.entries().length == 0) return new String[]{packageName};
+        if (packageNames == null) return null;
+        for (String name : packageNames) {
+            if (name.equals(packageName)) return packageNames;
+        }
+        String[] result = Arrays.copyOf(packageNames, packageNames.length + 1);
+        result[packageNames.length] = packageName;
+        return result;
+    }
+
+    /**
+     * 添加或替换 key 对应的触发条件，服务未连接时在连接后生效；只能在主线程调用
+     */
+    public static void registerTrigger(int key, EventTrigger trigger, TriggerListener listener) {
+        triggers.put(key, trigger, listener);
+        if (instance != null) {
+            instance.applyEventFilter();
+        }
+    }
+
+    public static void unregisterTrigger(int key) {
+        if (triggers.remove(key) && instance != null) {
+            instance.applyEventFilter();
+        }
+    }
+
+    /**
+     * 开始使用节点定位器，与 releaseLocator 成对调用；只能在主线程调用
+     */
+    public static void acquireLocator() {
+        if (locatorUsers++ == 0 && instance != null) {
+            instance.applyEventFilter();
+        }
+    }
+
+    public static void releaseLocator() {
+        if (locatorUsers == 0) return;
+        if (--locatorUsers == 0) {
+            // 不再订阅变化事件，索引会过时，直接丢弃
+            locator.invalidateAll();
+            if (instance != null) {
+                instance.applyEventFilter();
+            }
+        }
+    }
+
+    /**
+     * 开始输入延迟校准，订阅点击事件直到认出目标应用、配满样本，与 releaseCalibration 成对调用；只能在主线程调用
+     */
+    public static void acquireCalibration() {
+        if (calibrationUsers++ == 0 && instance != null) {
+            instance.applyEventFilter();
+        }
+    }
+
+    public static void releaseCalibration() {
+        if (calibrationUsers == 0) return;
+        if (--calibrationUsers == 0) {
+            // 下次校准的目标可能是另一个应用
+            calibrationPackage = null;
+            calibrationSamples = 0;
+            if (instance != null) {
+                instance.applyEventFilter();
+            }
+        }
+    }
+
+    /**
+     * 目标在活动窗口中的点击点，找不到或服务未连接时返回 CoordinateCell.UNSET；可在点击线程调用
+     */
+    public static long locate(NodeTarget target) {
+        if (instance == null) return CoordinateCell.UNSET;
+        long start = SystemClock.elapsedRealtimeNanos();
+        long point = locator.locate(instance, target);
+        locateHistogram.record(SystemClock.elapsedRealtimeNanos() - start);
+        return point;
+    }
+
+    public static LatencyHistogram getLocateHistogram() {
+        return locateHistogram;
+    }
+
+    public static String getLocatorSummary() {
+        return locator.summary();
+    }
+
+    /**
+     * 添加或替换 key 对应的像素探针，命中时回调 listener；服务未连接时在连接后开始截屏。
+     * 截屏需要 API 30，不支持时返回 false。只能在主线程调用
+     */
+    public static boolean startProbe(int key, PixelProbe probe, TriggerListener listener) {
+        if (!ScreenProbe.isSupported()) return false;
+        screenProbe.add(key, probe, listener);
+        return true;
+    }
+
+    /**
+     * 添加或替换 key 对应的图像模板，与像素探针共用截屏循环；不支持截屏时返回 false。只能在主线程调用
+     */
+    public static boolean startImageSearch(int key, TemplateMatcher.Template template, ImageTrigger trigger,
+                                           ImageListener listener) {
+        if (!ScreenProbe.isSupported()) return false;
+        screenProbe.addTemplate(key, template, trigger, listener);
+        return true;
+    }
+
+    /**
+     * 停止 key 对应的像素探针或图像模板
+     */
+    public static void stopProbe(int key) {
+        screenProbe.remove(key);
+    }
+
+    public static LatencyHistogram getProbeSampleHistogram() {
+        return screenProbe.getSampleHistogram();
+    }
+
+    public static LatencyHistogram getTriggerLatencyHistogram() {
+        return triggerLatencyHistogram;
     }
 
     @Override
@@ -40,10 +377,16 @@ public class AutoClickService extends AccessibilityService {
     public void onDestroy() {
         super.onDestroy();
         instance = null;
+        locator.invalidateAll();
+        screenProbe.attach(null);
         
     }
 
     public static boolean performClickAt(int x, int y) {
+        return performClickAt(x, y, DEFAULT_TAP_DURATION_MS, null);
+    }
+
+    public static boolean performClickAt(int x, int y, long tapDurationMs, GestureResultCallback callback) {
         if (instance == null) {
             
             return false;
@@ -53,27 +396,14 @@ public class AutoClickService extends AccessibilityService {
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
             try {
-                Path path = new Path();
-                path.moveTo(x, y);
-
-                GestureDescription.Builder builder = new GestureDescription.Builder();
-                GestureDescription.StrokeDescription stroke =
-                        new GestureDescription.StrokeDescription(path, 0, 100);
-                builder.addStroke(stroke);
-
-                boolean result = instance.dispatchGesture(builder.build(), new GestureResultCallback() {
-                    @Override
-                    public void onCompleted(GestureDescription gestureDescription) {
-                        super.onCompleted(gestureDescription);
-                        
-                    }
-
-                    @Override
-                    public void onCancelled(GestureDescription gestureDescription) {
-                        super.onCancelled(gestureDescription);
-                        
-                    }
-                }, null);
+                long tapMs = Math.max(BurstPlanner.MIN_TAP_DURATION_MS, tapDurationMs);
+                GestureDescription gesture = gestureCache.obtainTap(x, y, tapMs);
+                long start = SystemClock.elapsedRealtimeNanos();
+                boolean result = instance.dispatchGesture(gesture, callback, gestureHandler);
+                dispatchCallHistogram.record(SystemClock.elapsedRealtimeNanos() - start);
+                if (result) {
+                    InputLatency.onTapDispatched(start, tapMs);
+                }
 
                 
                 return result;
@@ -88,7 +418,187 @@ public class AutoClickService extends AccessibilityService {
         }
     }
 
+    /**
+     * 设置手势回调投递到的线程，点击引擎启动时设为点击线程，停止时恢复为 null（主线程）
+     */
+    public static void setGestureHandler(Handler handler) {
+        gestureHandler = handler;
+    }
+
+    /**
+     * 预先构建单点点击手势放入缓存，目标时刻的首次点击直接命中
+     */
+    public static void prewarmTap(int x, int y, long tapDurationMs) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return;
+        gestureCache.obtainTap(x, y, Math.max(BurstPlanner.MIN_TAP_DURATION_MS, tapDurationMs));
+    }
+
+    /**
+     * 连发：在同一个手势里对同一点执行 count 次点击，
+     * 第 i 次点击在手势开始后 offsetsMs[i] 毫秒按下，持续 tapDurationMs 毫秒。
+     * 超出系统笔画数或手势时长上限的部分会被截掉。
+     *
+     * @return 实际打包进手势的点击数，失败返回 0
+     */
+    public static int performBurstAt(int x, int y, long[] offsetsMs, int count, long tapDurationMs,
+                                     GestureResultCallback callback) {
+        if (instance == null || count <= 0 || Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return 0;
+        }
+
+        try {
+            long tapMs = Math.max(BurstPlanner.MIN_TAP_DURATION_MS, tapDurationMs);
+            long maxDurationMs = GestureDescription.getMaxGestureDuration();
+            int strokes = Math.min(count, GestureDescription.getMaxStrokeCount());
+
+            GestureDescription.Builder builder = new GestureDescription.Builder();
+            int added = 0;
+            for (int i = 0; i < strokes; i++) {
+                if (offsetsMs[i] + tapMs > maxDurationMs) break;
+                Path path = new Path();
+                path.moveTo(x, y);
+                builder.addStroke(new GestureDescription.StrokeDescription(path, offsetsMs[i], tapMs));
+                added++;
+            }
+            if (added == 0) {
+                return 0;
+            }
+
+            GestureDescription gesture = builder.build();
+            long start = SystemClock.elapsedRealtimeNanos();
+            boolean result = instance.dispatchGesture(gesture, callback, gestureHandler);
+            dispatchCallHistogram.record(SystemClock.elapsedRealtimeNanos() - start);
+            return result ? added : 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * 多指同时点击：chord 的前 count 个点各占一个笔画，起点都为 0，系统在同一次注入中一起按下。
+     * count 不能超过 getMaxStrokeCount。构建一次后可反复派发。
+     */
+    public static GestureDescription buildChord(ClickChord chord, int count, long tapDurationMs) {
+        long tapMs = Math.max(BurstPlanner.MIN_TAP_DURATION_MS, tapDurationMs);
+        GestureDescription.Builder builder = new GestureDescription.Builder();
+        for (int i = 0; i < count; i++) {
+            Path path = new Path();
+            path.moveTo(chord.x(i), chord.y(i));
+            builder.addStroke(new GestureDescription.StrokeDescription(path, 0, tapMs));
+        }
+        return builder.build();
+    }
+
+    /**
+     * 把一批录制的笔画构建成一个手势，每个笔画保持录制时相对本批开始的起点和时长。
+     * 笔画内部的位置由系统沿路径匀速插值，录制时的按下、抬起时刻精确到毫秒。
+     */
+    public static GestureDescription buildGesture(StrokeBatch batch) {
+        GestureDescription.Builder builder = new GestureDescription.Builder();
+        for (int i = 0; i < batch.size(); i++) {
+            Path path = new Path();
+            int point = batch.firstPoint(i);
+            path.moveTo(batch.x(point), batch.y(point));
+            for (point = batch.nextPoint(point); point >= 0; point = batch.nextPoint(point)) {
+                path.lineTo(batch.x(point), batch.y(point));
+            }
+            builder.addStroke(new GestureDescription.StrokeDescription(path,
+                    batch.strokeStartMs(i), batch.strokeDurationMs(i)));
+        }
+        return builder.build();
+    }
+
+    /**
+     * 派发预先构建好的手势
+     */
+    public static boolean dispatch(GestureDescription gesture, GestureResultCallback callback) {
+        AutoClickService service = instance;
+        if (service == null) {
+            return false;
+        }
+        try {
+            long start = SystemClock.elapsedRealtimeNanos();
+            boolean result = service.dispatchGesture(gesture, callback, gestureHandler);
+            dispatchCallHistogram.record(SystemClock.elapsedRealtimeNanos() - start);
+            return result;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 手势缓存构建次数，即点击热路径上发生对象分配的次数；
+     * 稳定状态下连续点击时该值不应再增长
+     */
+    public static long getGestureBuildCount() {
+        return gestureCache.getBuilds();
+    }
+
+    public static long getGestureCacheHitCount() {
+        return gestureCache.getHits();
+    }
+
+    public static LatencyHistogram getDispatchCallHistogram() {
+        return dispatchCallHistogram;
+    }
+
+    /**
+     * 单个手势允许的最大笔画数
+     */
+    public static int getMaxStrokeCount() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return 1;
+        }
+        return GestureDescription.getMaxStrokeCount();
+    }
+
+    /**
+     * 单个手势允许的最长时长（毫秒）
+     */
+    public static long getMaxGestureDurationMs() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return 0;
+        }
+        return GestureDescription.getMaxGestureDuration();
+    }
+
+    /**
+     * 开始观察无障碍设置，之后 isServiceEnabled 直接返回缓存的结果，设置变化时由观察者刷新。
+     * 重复调用只注册一次。与 unwatchServiceEnabled 在同一线程调用
+     */
+    public static void watchServiceEnabled(Context context) {
+        if (enabledObserver != null) return;
+        final Context appContext = context.getApplicationContext();
+        enabledObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                enabledCached = readServiceEnabled(appContext);
+            }
+        };
+        appContext.getContentResolver().registerContentObserver(
+                Settings.Secure.getUriFor(Settings.Secure.ENABLED_ACCESSIBILITY_SERVICES), false, enabledObserver);
+        enabledCached = readServiceEnabled(appContext);
+    }
+
+    public static void unwatchServiceEnabled(Context context) {
+        if (enabledObserver == null) return;
+        context.getApplicationContext().getContentResolver().unregisterContentObserver(enabledObserver);
+        enabledObserver = null;
+    }
+
+    /**
+     * 本服务是否已在系统设置中开启；观察设置期间返回缓存结果，不再读取设置
+     */
     public static boolean isServiceEnabled(Context context) {
+        if (enabledObserver != null) {
+            return enabledCached;
+        }
+        return readServiceEnabled(context);
+    }
+
+    private static boolean readServiceEnabled(Context context) {
         if (context == null) {
             return false;
         }
@@ -0,0 +1,957 @@
+package com.example.autoclick;
+
+import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.GestureDescription;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.SystemClock;
+import com.example.autoclick.engine.BurstPlanner;
+import com.example.autoclick.engine.ClickChord;
+import com.example.autoclick.engine.ClickLog;
+import com.example.autoclick.engine.ClickPipeline;
+import com.example.autoclick.engine.ClickScript;
+import com.example.autoclick.engine.ClickTimeline;
+import com.example.autoclick.engine.CoordinateCell;
+import com.example.autoclick.engine.EventTrigger;
+import com.example.autoclick.engine.ImageTrigger;
+import com.example.autoclick.engine.LatencyHistogram;
+import com.example.autoclick.engine.NodeTarget;
+import com.example.autoclick.engine.PixelProbe;
+import com.example.autoclick.engine.TemplateMatcher;
+import com.example.autoclick.engine.TaskSpec;
+import com.example.autoclick.engine.TimeBase;
+import com.example.autoclick.engine.TimerWheel;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * 一个定时点击任务：自己的目标时间、点击参数、时间线、投递管线和延迟统计。
+ * 等待期间只作为定时轮里的一个定时器存在；临近目标时刻交给自己的高精度定时器，
+ * 之后在点击线程上按时间线执行点击循环。带触发条件的任务从目标时间起等待无障碍事件、屏幕像素变化
+ * 或参考图像出现，命中后立即在点击线程上开始点击；图像触发的任务点击图像中心。
+ * 指定了触摸宏的任务在开始时刻回放录制的手势，代替时间线上的点击。
+ *
+ * <p>除首次点击外，所有方法都在点击线程（handler 所在线程）调用，任务状态只在这里读写。
+ * 无障碍服务中属于主线程的注册（触发条件、截屏探测、节点定位器订阅）投递到主线程执行，
+ * 它们的命中回调再投递回点击线程。
+ */
+final class ClickTask {
+
+    /**
+     * 任务状态
+     */
+    enum State {
+        // 在定时轮中等待
+        ARMED,
+        // 已交给高精度定时器，等待首次点击
+        APPROACHING,
+        // 等待无障碍事件、像素探针或图像触发
+        WAITING_TRIGGER,
+        // 正在按时间线点击
+        RUNNING,
+        // 时间线已执行完，等待最后的手势回调
+        FINISHING,
+        DONE,
+        CANCELLED
+    }
+
+    // 热路径日志事件
+    private static final int LOG_CLICK = ClickLog.event("点击 ({}, {})");
+    private static final int LOG_IN_FLIGHT = ClickLog.event("在途手势 {}, 跳过槽位 {}");
+    private static final int LOG_BURST_AT = ClickLog.event("连发点击 ({}, {})");
+    private static final int LOG_BURST = ClickLog.event("连发计划 {}, 派发 {}");
+    private static final int LOG_TARGET_MISS = ClickLog.event("任务 {} 未找到点击目标, 累计 {} 次, 使用布置坐标");
+
+    // 触发到派发的目标上限：一帧
+    private static final long TRIGGER_BUDGET_NANOS = 16_666_667L;
+    // 预热时空跑投递管线的次数，足以让首次点击经过的方法被 JIT 编译
+    private static final int WARMUP_ITERATIONS = 2000;
+
+    // 预热用的空派发器，不注入任何触摸
+    private static final ClickPipeline.Dispatcher DRY_DISPATCHER = new ClickPipeline.Dispatcher() {
+        @Override
+        public boolean dispatchTap(int x, int y) {
+            return true;
+        }
+    };
+
+    final int id;
+    final long targetTime;
+    final int clickX, clickY;
+    final double clickDurationSeconds;
+    final int baseInterval;
+    final int randomRange;
+    final ClickTimeline.MissedSlotPolicy missedSlotPolicy;
+    final long tapDurationMs;
+    final boolean burstMode;       // 连发模式：多次点击打包进一个手势
+    final long burstWindowMs;      // 连发模式下一个手势最多覆盖的时间窗口
+    final int maxInFlight;         // 同时在途的手势上限
+    final long retryWindowMs;      // 被取消的点击在槽位截止后多久内仍可重试
+    final String scriptSource;     // 多步点击脚本，为空时按单点持续点击执行
+    final boolean fromUi;          // 由界面布置，拥有倒计时和标记悬浮窗，点击跟随拖拽标记
+    final String triggerSource;    // 触发条件，为空时到目标时间直接点击
+    final String targetSource;     // 按界面元素定位的点击目标，为空时使用坐标
+    final String macroSource;      // 触摸宏文件，非空时回放录制的手势代替点击
+    final String chordSource;      // 多指同时点击的各点，非空时每个槽位派发一次多指点击
+    final long warmupMs;           // 目标时刻前的预热窗口，0 为不预热
+    final boolean compensateLatency; // 按学习到的输入延迟提前派发
+
+    private final ScheduleKeepAliveService service;
+    private final Handler handler;      // 点击线程
+    private final Handler mainHandler;
+    private final Random random = new Random();
+    private final PrecisionClickTimer precisionTimer = new PrecisionClickTimer();
+    private final AccessibilityService.GestureResultCallback gestureCallback;
+
+    private volatile State state = State.ARMED;
+    TimerWheel.Timeout wheelTimeout;
+    TimerWheel.Timeout warmupTimeout;
+    private boolean warmedUp;
+
+    // 分级唤醒记录：是否由闹钟唤醒、闹钟和定时轮各自迟到多久
+    private boolean wokenByAlarm;
+    private long alarmLateMs = -1;
+    private long wheelLateMs = -1;
+    // 事件产生到首次点击派发完成的耗时，未触发时为 -1
+    private long triggerLatencyNanos = -1;
+
+    private EventTrigger trigger;
+    private PixelProbe pixelProbe;
+    private ImageTrigger imageTrigger;
+    private TemplateMatcher.Template imageTemplate;
+    // 图像触发时找到的图像中心，之后的点击都点这里
+    private volatile long imagePoint = CoordinateCell.UNSET;
+    private NodeTarget nodeTarget;
+    private boolean locatorAcquired;
+    private boolean calibrating;     // 已订阅点击事件用于输入延迟校准
+    private long leadNanos;          // 本次按输入延迟提前派发的时间，未补偿时为 0
+    // 按界面元素定位时首次点击的点击点，在点击线程预先解析，供高精度定时线程使用
+    private volatile long firstTargetPoint = CoordinateCell.UNSET;
+    private int targetMisses;        // 未找到目标、退回布置坐标的次数
+    private MacroPlayer macroPlayer; // 回放触摸宏时代替时间线上的点击
+    // 多指点击的手势在布置时构建一次，每个槽位复用；跨线程读取
+    private volatile GestureDescription chordGesture;
+
+    private ClickTimeline timeline;  // 布置任务时预先生成的绝对点击时间线
+    private int slotIndex;           // 下一个待执行的槽位
+    private int skippedSlots;        // 因延迟被跳过的槽位数
+    private long[] burstOffsetsMs;   // 连发规划结果，布置任务时按最大笔画数分配
+    private long gestureEndNanos;    // 当前手势预计结束时刻，连发时下个手势不早于此刻派发
+    private volatile ClickPipeline pipeline;
+
+    // 点击延迟统计：实际执行时刻相对计划时刻的误差、派发到完成回调的耗时
+    private final LatencyHistogram scheduleErrorHistogram = new LatencyHistogram();
+    private final LatencyHistogram completionLatencyHistogram = new LatencyHistogram();
+    // 点击本身的耗时（取点 + 提交 + 派发调用）：首次点击单独记录，其余计入稳态分布
+    private volatile long firstClickCostNanos = -1;
+    private final LatencyHistogram clickCostHistogram = new LatencyHistogram();
+    // 本进程在点击窗口（交给高精度定时器或开始点击起，到时间线执行完）内的 GC
+    private GcStats gcAtStart;
+    private GcStats gcDuringClicks;
+
+    private final ClickPipeline.Dispatcher tapDispatcher = new ClickPipeline.Dispatcher() {
+        @Override
+        public boolean dispatchTap(int x, int y) {
+            GestureDescription chord = chordGesture;
+            if (chord != null) {
+                return AutoClickService.dispatch(chord, gestureCallback);
+            }
+            return AutoClickService.performClickAt(x, y, tapDurationMs, gestureCallback);
+        }
+    };
+
+    private final Runnable clickLoopRunnable = new Runnable() {
+        @Override
+        public void run() {
+            executeClickLoop();
+        }
+    };
+
+    // 首次点击由高精度定时线程执行，之后回到点击线程继续点击循环
+    private final Runnable firstClickAction = new Runnable() {
+        @Override
+        public void run() {
+            long start = SystemClock.elapsedRealtimeNanos();
+            if (macroPlayer != null) {
+                macroPlayer.dispatchNext(start);
+            } else {
+                long point = nodeTarget != null ? firstTargetPoint : slotPoint(0);
+                pipeline.submitTap(CoordinateCell.x(point), CoordinateCell.y(point),
+                        timeline.startNanos(), start);
+            }
+            firstClickCostNanos = SystemClock.elapsedRealtimeNanos() - start;
+            handler.post(() -> onFirstClickFired());
+        }
+    };
+
+    private final AutoClickService.TriggerListener triggerListener = new AutoClickService.TriggerListener() {
+        @Override
+        public void onTriggered(final long eventUptimeMs) {
+            // 在主线程回调，转到点击线程处理
+            handler.post(() -> onTriggerFired(eventUptimeMs));
+        }
+    };
+
+    private final AutoClickService.ImageListener imageListener = new AutoClickService.ImageListener() {
+        @Override
+        public void onImageFound(final long frameUptimeMs, int x, int y) {
+            if (state != State.WAITING_TRIGGER) return;
+            imagePoint = CoordinateCell.pack(x, y);
+            handler.post(() -> onTriggerFired(frameUptimeMs));
+        }
+    };
+
+    private final Runnable macroFinished = new Runnable() {
+        @Override
+        public void run() {
+            finishTask(SystemClock.elapsedRealtimeNanos());
+        }
+    };
+
+    private final Runnable reportRunnable = new Runnable() {
+        @Override
+        public void run() {
+            state = State.DONE;
+            releaseLocator();
+            releaseCalibration();
+            service.onTaskFinished(ClickTask.this);
+        }
+    };
+
+    ClickTask(ScheduleKeepAliveService service, Handler handler, Handler mainHandler, int id, TaskSpec spec) {
+        this.service = service;
+        this.handler = handler;
+        this.mainHandler = mainHandler;
+        this.id = id;
+        targetTime = spec.targetTime;
+        clickX = spec.clickX;
+        clickY = spec.clickY;
+        clickDurationSeconds = spec.clickDurationSeconds;
+        baseInterval = spec.baseInterval;
+        randomRange = spec.randomRange;
+        missedSlotPolicy = parseMissedSlotPolicy(spec.missedSlotPolicy);
+        tapDurationMs = spec.tapDurationMs;
+        burstMode = spec.burstMode;
+        burstWindowMs = spec.burstWindowMs;
+        maxInFlight = spec.maxInFlight;
+        retryWindowMs = spec.retryWindowMs;
+        scriptSource = spec.script;
+        fromUi = spec.fromUi;
+        triggerSource = spec.trigger;
+        targetSource = spec.target;
+        macroSource = spec.macro;
+        chordSource = spec.chord;
+        warmupMs = spec.warmupMs;
+        compensateLatency = spec.compensateLatency;
+
+        // 手势完成/取消回调驱动本任务的投递管线
+        gestureCallback = AutoClickService.newGestureCallback(new AutoClickService.GestureListener() {
+            @Override
+            public void onGestureCompleted() {
+                ClickPipeline current = pipeline;
+                if (current != null) {
+                    long latency = current.onGestureCompleted(SystemClock.elapsedRealtimeNanos());
+                    // 连发手势的完成时刻取决于整批时长，不作为样本
+                    if (latency >= 0 && !isBursting() && macroPlayer == null) {
+                        InputLatency.onTapCompleted(latency, Math.max(BurstPlanner.MIN_TAP_DURATION_MS, tapDurationMs));
+                    }
+                }
+            }
+
+            @Override
+            public void onGestureCancelled() {
+                ClickPipeline current = pipeline;
+                if (current != null) {
+                    current.onGestureCancelled(SystemClock.elapsedRealtimeNanos());
+                }
+            }
+        });
+    }
+
+    /**
+     * 从启动服务的 Intent 中读取任务参数，缺省值见 TaskSpec
+     */
+    static TaskSpec specFromIntent(Intent intent) {
+        TaskSpec spec = new TaskSpec();
+        spec.targetTime = intent.getLongExtra("targetTime", 0);
+        spec.clickX = intent.getIntExtra("clickX", 0);
+        spec.clickY = intent.getIntExtra("clickY", 0);
+        spec.clickDurationSeconds = intent.getDoubleExtra("clickDurationSeconds", spec.clickDurationSeconds);
+        spec.baseInterval = intent.getIntExtra("baseInterval", spec.baseInterval);
+        spec.randomRange = intent.getIntExtra("randomRange", spec.randomRange);
+        spec.missedSlotPolicy = intent.getStringExtra("missedSlotPolicy");
+        spec.tapDurationMs = intent.getLongExtra("tapDurationMs", AutoClickService.DEFAULT_TAP_DURATION_MS);
+        spec.burstMode = intent.getBooleanExtra("burstMode", spec.burstMode);
+        spec.burstWindowMs = intent.getLongExtra("burstWindowMs", spec.burstWindowMs);
+        spec.maxInFlight = intent.getIntExtra("maxInFlight", spec.maxInFlight);
+        spec.retryWindowMs = intent.getLongExtra("retryWindowMs", spec.retryWindowMs);
+        spec.script = intent.getStringExtra("script");
+        spec.fromUi = intent.getBooleanExtra("fromUi", spec.fromUi);
+        spec.trigger = intent.getStringExtra("trigger");
+        spec.target = intent.getStringExtra("target");
+        spec.macro = intent.getStringExtra("macro");
+        spec.chord = intent.getStringExtra("chord");
+        spec.warmupMs = intent.getLongExtra("warmupMs", spec.warmupMs);
+        spec.compensateLatency = intent.getBooleanExtra("compensateLatency", spec.compensateLatency);
+        return spec;
+    }
+
+    private static ClickTimeline.MissedSlotPolicy parseMissedSlotPolicy(String name) {
+        if (name != null) {
+            try {
+                return ClickTimeline.MissedSlotPolicy.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                // 未知策略，使用默认值
+            }
+        }
+        return ClickTimeline.MissedSlotPolicy.SKIP;
+    }
+
+    boolean hasMacro() {
+        return macroSource != null && !macroSource.trim().isEmpty();
+    }
+
+    /**
+     * 连发模式只打包单点点击，指定了多指点击时按普通点击逐个槽位派发
+     */
+    private boolean isBursting() {
+        return burstMode && chordGesture == null;
+    }
+
+    boolean hasTrigger() {
+        return triggerSource != null && !triggerSource.trim().isEmpty();
+    }
+
+    State getState() {
+        return state;
+    }
+
+    boolean isActive() {
+        return state != State.DONE && state != State.CANCELLED;
+    }
+
+    /**
+     * 按输入延迟提前派发的时间（纳秒），未补偿时为 0
+     */
+    long leadNanos() {
+        return leadNanos;
+    }
+
+    /**
+     * 首次点击的绝对时刻（elapsedRealtimeNanos 时基），准备前为 0
+     */
+    long startNanos() {
+        return timeline == null ? 0 : timeline.startNanos();
+    }
+
+    /**
+     * 布置任务时一次性生成完整时间线（含随机抖动）；脚本任务在此时编译展开。
+     * 开启输入延迟补偿时整条时间线提前学习到的提前量，让按下落在 startNanos 上；交接前还会按最新估计再调整一次
+     *
+     * @return 参数无效时返回 false
+     */
+    boolean prepare(long startNanos) {
+        if (hasTrigger() && trigger == null && pixelProbe == null && imageTrigger == null) {
+            try {
+                if (PixelProbe.isProbeSpec(triggerSource)) {
+                    pixelProbe = PixelProbe.parse(triggerSource);
+                } else if (ImageTrigger.isImageSpec(triggerSource)) {
+                    imageTrigger = ImageTrigger.parse(triggerSource);
+                    imageTemplate = loadTemplate(imageTrigger.path());
+                } else {
+                    trigger = EventTrigger.parse(triggerSource);
+                }
+            } catch (IllegalArgumentException e) {
+                ClickLog.text(ClickLog.ERROR, "任务 " + id + " 触发条件无效: " + e.getMessage());
+                return false;
+            }
+        }
+        if (targetSource != null && !targetSource.trim().isEmpty() && nodeTarget == null) {
+            try {
+                nodeTarget = NodeTarget.parse(targetSource);
+            } catch (IllegalArgumentException e) {
+                ClickLog.text(ClickLog.ERROR, "任务 " + id + " 点击目标无效: " + e.getMessage());
+                return false;
+            }
+        }
+        if (chordSource != null && !chordSource.trim().isEmpty() && chordGesture == null) {
+            ClickChord chord;
+            try {
+                chord = ClickChord.parse(chordSource);
+            } catch (IllegalArgumentException e) {
+                ClickLog.text(ClickLog.ERROR, "任务 " + id + " 多指点击无效: " + e.getMessage());
+                return false;
+            }
+            int count = Math.min(chord.size(), AutoClickService.getMaxStrokeCount());
+            if (count < chord.size()) {
+                ClickLog.text(ClickLog.WARN, "任务 " + id + " 多指点击超出系统笔画上限, 只点前 " + count + " 个点");
+            }
+            chordGesture = AutoClickService.buildChord(chord, count, tapDurationMs);
+        }
+        // 触发的和已过时的任务立即点击，无从提前
+        leadNanos = compensateLatency && !hasTrigger()
+                ? Math.min(InputLatency.leadNanos(), Math.max(0, startNanos - SystemClock.elapsedRealtimeNanos()))
+                : 0;
+        long fireNanos = startNanos - leadNanos;
+        if (hasMacro()) {
+            if (macroPlayer == null) {
+                try {
+                    macroPlayer = MacroPlayer.open(new File(macroSource), handler, scheduleErrorHistogram,
+                            macroFinished);
+                } catch (IOException e) {
+                    ClickLog.text(ClickLog.ERROR, "任务 " + id + " 触摸宏无效: " + e.getMessage());
+                    return false;
+                }
+                ClickLog.text(ClickLog.INFO, "任务 " + id + " 触摸宏已映射: " + macroPlayer.fileSize() + " 字节");
+            }
+            // 时间线只有一个槽位，标记回放开始时刻
+            timeline = ClickTimeline.build(fireNanos, 0, baseInterval, 0, random);
+            macroPlayer.reset(fireNanos);
+        } else if (scriptSource != null && !scriptSource.trim().isEmpty()) {
+            ClickScript.Compiled compiled;
+            try {
+                compiled = ClickScript.parse(scriptSource).compile();
+            } catch (IllegalArgumentException e) {
+                ClickLog.text(ClickLog.ERROR, "任务 " + id + " 点击脚本无效: " + e.getMessage());
+                return false;
+            }
+            if (compiled.size() == 0) {
+                ClickLog.text(ClickLog.ERROR, "任务 " + id + " 点击脚本中没有点击步骤");
+                return false;
+            }
+            timeline = ClickTimeline.fromScript(fireNanos, compiled);
+            ClickLog.text(ClickLog.INFO, "任务 " + id + " 点击脚本编译完成: " + compiled.size()
+                    + " 次点击, 时长 " + compiled.durationMs() + "ms");
+        } else {
+            timeline = ClickTimeline.build(fireNanos, (long) (clickDurationSeconds * 1_000_000_000L),
+                    baseInterval, randomRange, random);
+        }
+        slotIndex = 0;
+        skippedSlots = 0;
+        gestureEndNanos = 0;
+        burstOffsetsMs = isBursting() ? new long[AutoClickService.getMaxStrokeCount()] : null;
+        scheduleErrorHistogram.reset();
+        completionLatencyHistogram.reset();
+        clickCostHistogram.reset();
+        firstClickCostNanos = -1;
+        pipeline = new ClickPipeline(tapDispatcher, maxInFlight, retryWindowMs * 1_000_000L,
+                completionLatencyHistogram);
+        return true;
+    }
+
+    /**
+     * 进入预热窗口（目标时刻前 warmupMs，窗口比交接给高精度定时器的提前量还短时在交接之前）：
+     * 开始缓存无障碍服务的开启状态，预先构建首次点击的手势，
+     * 再用空派发器把投递管线和取点路径空跑一遍，首次点击走的代码届时已被 JIT 编译。
+     * 真正的 dispatchGesture 无法空跑，不注入触摸就调用不到；手势对象已在缓存中，派发时不再构建。
+     */
+    void warmUp() {
+        if (warmupTimeout != null) {
+            warmupTimeout.cancel();
+            warmupTimeout = null;
+        }
+        if (state != State.ARMED || warmedUp) return;
+        warmedUp = true;
+        long start = SystemClock.elapsedRealtimeNanos();
+        AutoClickService.watchServiceEnabled(service);
+        if (!AutoClickService.isServiceEnabled(service)) {
+            ClickLog.text(ClickLog.WARN, "任务 " + id + " 预热时无障碍服务未开启");
+        }
+
+        // 触发和按元素定位的任务此时还不知道点击点，用布置坐标跑热同一条路径
+        long point = hasTrigger() || nodeTarget != null
+                ? CoordinateCell.pack(clickX, clickY) : slotPoint(0);
+        int x = CoordinateCell.x(point);
+        int y = CoordinateCell.y(point);
+        if (macroPlayer == null && chordGesture == null) {
+            AutoClickService.prewarmTap(x, y, tapDurationMs);
+        }
+        ClickPipeline dry = new ClickPipeline(DRY_DISPATCHER, maxInFlight, retryWindowMs * 1_000_000L,
+                new LatencyHistogram());
+        boolean bursting = isBursting() && !hasTrigger();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            long now = SystemClock.elapsedRealtimeNanos();
+            timeline.nextSlot(0, now, missedSlotPolicy);
+            dry.submitTap(x, y, now, now);
+            dry.onGestureCompleted(SystemClock.elapsedRealtimeNanos());
+            if (bursting) {
+                BurstPlanner.planBatch(timeline, 0, tapDurationMs, burstOffsetsMs.length,
+                        AutoClickService.getMaxGestureDurationMs(), burstWindowMs, burstOffsetsMs);
+            } else if (macroPlayer == null && chordGesture == null) {
+                AutoClickService.prewarmTap(x, y, tapDurationMs);
+            }
+        }
+
+        service.onWarmupStarted(this);
+        ClickLog.text(ClickLog.INFO, "任务 " + id + " 预热完成, 耗时 "
+                + (SystemClock.elapsedRealtimeNanos() - start) / 1000 + "us");
+    }
+
+    /**
+     * 定时轮到期：目标时刻还没到就交给高精度定时器，否则立即开始点击
+     *
+     * @param alarmLateMs 本次唤醒来自闹钟时为闹钟的迟到时间，否则为 -1
+     */
+    void onWheelExpired(long alarmLateMs) {
+        if (wheelTimeout != null) {
+            wheelLateMs = SystemClock.elapsedRealtime() - wheelTimeout.deadline();
+            wheelTimeout = null;
+        }
+        if (state != State.ARMED) return;
+        wokenByAlarm = alarmLateMs >= 0;
+        this.alarmLateMs = alarmLateMs;
+
+        // 预热没能按时执行（进程重启后恢复、唤醒迟到）时在这里补上；
+        // 已经到了首次点击的时刻就不再预热，否则只会推迟点击
+        if (warmupMs > 0 && !warmedUp
+                && SystemClock.elapsedRealtimeNanos() < timeline.startNanos()) {
+            warmUp();
+        }
+
+        if (!calibrating) {
+            // 首次点击前开始订阅点击事件，首次点击也能配对
+            calibrating = true;
+            mainHandler.post(() -> AutoClickService.acquireCalibration());
+        }
+        if (nodeTarget != null && !locatorAcquired) {
+            // 提前建立节点索引，之后只随内容变化增量刷新
+            locatorAcquired = true;
+            mainHandler.post(() -> AutoClickService.acquireLocator());
+            firstTargetPoint = slotPoint(0);
+        }
+
+        if (trigger != null) {
+            // 开始监听，服务的事件订阅随之收窄到本条件需要的范围
+            state = State.WAITING_TRIGGER;
+            final EventTrigger registered = trigger;
+            mainHandler.post(() -> AutoClickService.registerTrigger(id, registered, triggerListener));
+            service.onTaskWaitingTrigger(this);
+            ClickLog.text(ClickLog.INFO, "任务 " + id + " 等待触发: " + trigger);
+            return;
+        }
+        if (imageTrigger != null) {
+            if (!ScreenProbe.isSupported()) {
+                ClickLog.text(ClickLog.ERROR, "任务 " + id + " 图像触发需要 Android 11 及以上");
+                service.onTaskFailed(this);
+                return;
+            }
+            final TemplateMatcher.Template template = imageTemplate;
+            final ImageTrigger searched = imageTrigger;
+            mainHandler.post(() -> AutoClickService.startImageSearch(id, template, searched, imageListener));
+            state = State.WAITING_TRIGGER;
+            service.onTaskWaitingTrigger(this);
+            ClickLog.text(ClickLog.INFO, "任务 " + id + " 等待图像: " + imageTrigger);
+            return;
+        }
+        if (pixelProbe != null) {
+            if (!ScreenProbe.isSupported()) {
+                ClickLog.text(ClickLog.ERROR, "任务 " + id + " 像素探针需要 Android 11 及以上");
+                service.onTaskFailed(this);
+                return;
+            }
+            final PixelProbe probe = pixelProbe;
+            mainHandler.post(() -> AutoClickService.startProbe(id, probe, triggerListener));
+            state = State.WAITING_TRIGGER;
+            service.onTaskWaitingTrigger(this);
+            ClickLog.text(ClickLog.INFO, "任务 " + id + " 等待像素: " + pixelProbe);
+            return;
+        }
+        updateLead();
+        if (SystemClock.elapsedRealtimeNanos() >= timeline.startNanos()) {
+            executeClick();
+            return;
+        }
+        // 交给独立线程的高精度定时器，不受点击线程上其他消息影响；期间服务持有唤醒锁
+        state = State.APPROACHING;
+        service.onApproachStarted();
+        gcAtStart = GcStats.snapshot();
+        precisionTimer.arm(timeline.startNanos(), firstClickAction);
+    }
+
+    /**
+     * 交接给高精度定时器前按最新的估计重算提前量：布置到交接之间校准可能已积累了样本，
+     * 整条时间线随之平移，按下仍落在目标时刻上
+     */
+    private void updateLead() {
+        if (!compensateLatency) return;
+        long targetNanos = timeline.startNanos() + leadNanos;
+        long lead = Math.min(InputLatency.leadNanos(),
+                Math.max(0, targetNanos - SystemClock.elapsedRealtimeNanos()));
+        if (lead == leadNanos) return;
+        timeline.shift(leadNanos - lead);
+        if (macroPlayer != null) {
+            macroPlayer.reset(timeline.startNanos());
+        }
+        ClickLog.text(ClickLog.INFO, "任务 " + id + " 提前量更新: " + leadNanos / 1000 + "us -> " + lead / 1000 + "us");
+        leadNanos = lead;
+    }
+
+    /**
+     * 触发条件命中：以当前时刻重新生成时间线，立即派发首次点击。
+     * 事件能送达说明无障碍服务正在运行，不再查询系统设置。
+     */
+    private void onTriggerFired(long eventUptimeMs) {
+        if (state != State.WAITING_TRIGGER) return;
+        long now = SystemClock.elapsedRealtimeNanos();
+        // 事件时间只有毫秒精度，换算到 elapsedRealtimeNanos 时基
+        long eventNanos = now - (SystemClock.uptimeMillis() - eventUptimeMs) * TimeBase.NANOS_PER_MILLI;
+        stopListening();
+        if (!prepare(now)) {
+            service.onTaskFailed(this);
+            return;
+        }
+        startClickLoop();
+
+        triggerLatencyNanos = SystemClock.elapsedRealtimeNanos() - eventNanos;
+        AutoClickService.getTriggerLatencyHistogram().record(triggerLatencyNanos);
+        ClickLog.text(triggerLatencyNanos > TRIGGER_BUDGET_NANOS ? ClickLog.WARN : ClickLog.INFO,
+                "任务 " + id + " 事件触发, 事件到派发 " + triggerLatencyNanos / 1000 + "us");
+    }
+
+    /**
+     * 唤醒链路描述：哪一级唤醒了任务，以及每一级的迟到时间
+     */
+    String wakeSummary() {
+        StringBuilder summary = new StringBuilder();
+        if (wokenByAlarm) {
+            summary.append("闹钟(迟 ").append(alarmLateMs).append("ms) -> ");
+        }
+        summary.append("定时轮(迟 ").append(wheelLateMs).append("ms)");
+        long fireErrorNanos = precisionTimer.getLastFireErrorNanos();
+        if (fireErrorNanos != PrecisionClickTimer.NO_MEASUREMENT) {
+            summary.append(" -> 高精度定时器(误差 ").append(fireErrorNanos / 1000).append("us)");
+        }
+        if (triggerLatencyNanos >= 0) {
+            summary.append(" -> 事件触发(延迟 ").append(triggerLatencyNanos / 1000).append("us)");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * 取消任务：从定时轮摘除或停止高精度定时器和点击循环
+     */
+    void cancel() {
+        if (!isActive()) return;
+        boolean approaching = state == State.APPROACHING;
+        state = State.CANCELLED;
+        if (approaching) {
+            service.onApproachFinished();
+        }
+        if (wheelTimeout != null) {
+            wheelTimeout.cancel();
+            wheelTimeout = null;
+        }
+        if (warmupTimeout != null) {
+            warmupTimeout.cancel();
+            warmupTimeout = null;
+        }
+        stopListening();
+        releaseLocator();
+        releaseCalibration();
+        precisionTimer.cancel();
+        if (macroPlayer != null) {
+            macroPlayer.stop();
+        }
+        handler.removeCallbacks(clickLoopRunnable);
+        handler.removeCallbacks(reportRunnable);
+    }
+
+    private void onFirstClickFired() {
+        if (state != State.APPROACHING) return;
+        long fireErrorNanos = precisionTimer.getLastFireErrorNanos();
+        ClickLog.text(ClickLog.INFO, "任务 " + id + " 首次点击, 唤醒: " + wakeSummary());
+        scheduleErrorHistogram.record(fireErrorNanos);
+
+        if (!AutoClickService.isServiceEnabled(service)) {
+            service.onTaskFailed(this);
+            return;
+        }
+
+        // 首次点击已完成，按时间线继续后续点击
+        state = State.RUNNING;
+        service.onApproachFinished();
+        service.onTaskStarted(this);
+        if (macroPlayer != null) {
+            macroPlayer.scheduleNext();
+            return;
+        }
+        slotIndex = 1;
+        gestureEndNanos = timeline.startNanos()
+                + Math.max(BurstPlanner.MIN_TAP_DURATION_MS, tapDurationMs) * 1_000_000L;
+        scheduleNextSlot();
+    }
+
+    private void executeClick() {
+        if (!AutoClickService.isServiceEnabled(service)) {
+            service.onTaskFailed(this);
+            return;
+        }
+        startClickLoop();
+    }
+
+    private void startClickLoop() {
+        state = State.RUNNING;
+        gcAtStart = GcStats.snapshot();
+        service.onTaskStarted(this);
+        if (macroPlayer != null) {
+            ClickLog.text(ClickLog.INFO, "任务 " + id + " 开始回放触摸宏");
+            long start = SystemClock.elapsedRealtimeNanos();
+            macroPlayer.dispatchNext(start);
+            firstClickCostNanos = SystemClock.elapsedRealtimeNanos() - start;
+            macroPlayer.scheduleNext();
+            return;
+        }
+        ClickLog.text(ClickLog.INFO, "任务 " + id + " 开始持续点击: " + clickDurationSeconds
+                + "秒, 共 " + timeline.size() + " 次");
+        executeClickLoop();
+    }
+
+    private void executeClickLoop() {
+        long now = SystemClock.elapsedRealtimeNanos();
+
+        // 按策略处理已错过的槽位
+        int slot = timeline.nextSlot(slotIndex, now, missedSlotPolicy);
+        skippedSlots += slot - slotIndex;
+        scheduleErrorHistogram.record(now - timeline.deadlineAt(slot));
+
+        if (isBursting()) {
+            executeBurst(slot, now);
+        } else {
+            // 执行一次点击，由投递管线控制在途数量和重试
+            long point = slotPoint(slot);
+            int x = CoordinateCell.x(point);
+            int y = CoordinateCell.y(point);
+            pipeline.submitTap(x, y, timeline.deadlineAt(slot), now);
+            ClickLog.d(LOG_CLICK, x, y);
+            ClickLog.d(LOG_IN_FLIGHT, pipeline.getInFlight(), skippedSlots);
+            slotIndex = slot + 1;
+        }
+        long costNanos = SystemClock.elapsedRealtimeNanos() - now;
+        if (firstClickCostNanos < 0) {
+            firstClickCostNanos = costNanos;
+        } else {
+            clickCostHistogram.record(costNanos);
+        }
+
+        scheduleNextSlot();
+    }
+
+    /**
+     * 连发模式：把从 slot 开始的若干个槽位打包成一个手势派发
+     */
+    private void executeBurst(int slot, long now) {
+        int planned = BurstPlanner.planBatch(timeline, slot, tapDurationMs,
+                burstOffsetsMs.length, AutoClickService.getMaxGestureDurationMs(),
+                burstWindowMs, burstOffsetsMs);
+        // 规划保证同一批次的点击位置相同
+        long point = slotPoint(slot);
+        int x = CoordinateCell.x(point);
+        int y = CoordinateCell.y(point);
+        int dispatched = 0;
+        if (pipeline.tryAcquireBurst(now)) {
+            dispatched = AutoClickService.performBurstAt(x, y, burstOffsetsMs, planned, tapDurationMs,
+                    gestureCallback);
+            pipeline.onBurstDispatched(timeline.deadlineAt(slot), now, planned, dispatched);
+        } else {
+            pipeline.onBurstDropped(planned);
+        }
+        ClickLog.d(LOG_BURST_AT, x, y);
+        ClickLog.d(LOG_BURST, planned, dispatched);
+
+        // 无论派发是否成功都越过本批槽位，避免同一批反复重试
+        slotIndex = slot + Math.max(planned, 1);
+        if (planned > 0) {
+            long tapMs = Math.max(BurstPlanner.MIN_TAP_DURATION_MS, tapDurationMs);
+            gestureEndNanos = now + (burstOffsetsMs[planned - 1] + tapMs) * 1_000_000L;
+        }
+    }
+
+    private void stopListening() {
+        if (trigger != null) {
+            mainHandler.post(() -> AutoClickService.unregisterTrigger(id));
+        }
+        if (pixelProbe != null || imageTrigger != null) {
+            mainHandler.post(() -> AutoClickService.stopProbe(id));
+        }
+    }
+
+    /**
+     * 读取参考图像并建立模板金字塔，布置任务时执行一次
+     */
+    private static TemplateMatcher.Template loadTemplate(String path) {
+        Bitmap bitmap = BitmapFactory.decodeFile(path);
+        if (bitmap == null) {
+            throw new IllegalArgumentException("无法读取参考图像: " + path);
+        }
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            return new TemplateMatcher.Template(pixels, width, height);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    private void releaseCalibration() {
+        if (!calibrating) return;
+        calibrating = false;
+        mainHandler.post(() -> AutoClickService.releaseCalibration());
+    }
+
+    private void releaseLocator() {
+        if (!locatorAcquired) return;
+        locatorAcquired = false;
+        mainHandler.post(() -> AutoClickService.releaseLocator());
+    }
+
+    /**
+     * 槽位的点击坐标（CoordinateCell 打包值）：脚本任务使用脚本中的坐标；
+     * 图像触发的任务点击找到的图像中心；指定了界面元素时从节点索引查找，找不到时退回布置时的坐标；
+     * 界面任务在拖拽标记显示时跟随标记，一次原子读取得到一致的 x、y；否则使用布置时的坐标
+     */
+    private long slotPoint(int slot) {
+        if (timeline.hasPoints()) {
+            return CoordinateCell.pack(timeline.xAt(slot), timeline.yAt(slot));
+        }
+        long image = imagePoint;
+        if (image != CoordinateCell.UNSET) return image;
+        if (nodeTarget != null) {
+            long located = AutoClickService.locate(nodeTarget);
+            if (located != CoordinateCell.UNSET) return located;
+            targetMisses++;
+            ClickLog.d(LOG_TARGET_MISS, id, targetMisses);
+            return CoordinateCell.pack(clickX, clickY);
+        }
+        if (fromUi) {
+            long marker = DraggableMarkerService.getMarkerPosition().get();
+            if (marker != CoordinateCell.UNSET) return marker;
+        }
+        return CoordinateCell.pack(clickX, clickY);
+    }
+
+    /**
+     * 按下一个槽位的绝对时刻安排点击，迟到不会累积到后续点击
+     */
+    private void scheduleNextSlot() {
+        if (slotIndex >= timeline.size()) {
+            // 时间线已执行完
+            finishTask(SystemClock.elapsedRealtimeNanos());
+            return;
+        }
+        long deadlineNanos = timeline.deadlineAt(slotIndex);
+        if (isBursting()) {
+            // 新手势会取消仍在进行的手势，连发时等上一批结束
+            deadlineNanos = Math.max(deadlineNanos, gestureEndNanos);
+        }
+        // 向上取整到毫秒，避免提前触发
+        long delayMs = TimeBase.delayMillisCeil(deadlineNanos, SystemClock.elapsedRealtimeNanos());
+        if (delayMs <= 0) {
+            handler.post(clickLoopRunnable);
+        } else {
+            handler.postAtTime(clickLoopRunnable, SystemClock.uptimeMillis() + delayMs);
+        }
+    }
+
+    /**
+     * 时间线执行完毕，等最后一个手势回调后再汇总投递结果
+     */
+    private void finishTask(long now) {
+        state = State.FINISHING;
+        if (gcAtStart != null) {
+            gcDuringClicks = GcStats.snapshot().since(gcAtStart);
+        }
+        service.onTaskTimelineFinished(this);
+        ClickLog.text(ClickLog.INFO, "任务 " + id + " 点击完成, 实际持续: "
+                + (now - timeline.startNanos()) / 1_000_000 + "ms, 跳过槽位: " + skippedSlots);
+        long lastGestureMs = macroPlayer != null ? macroPlayer.lastDurationMs() + 100
+                : Math.max(BurstPlanner.MIN_TAP_DURATION_MS, tapDurationMs) + 100;
+        handler.postDelayed(reportRunnable, Math.max(500, lastGestureMs));
+    }
+
+    /**
+     * 把本任务的结果写入完成广播
+     */
+    void putResultExtras(Intent broadcastIntent) {
+        broadcastIntent.putExtra("taskId", id);
+        broadcastIntent.putExtra("state", state.name());
+        broadcastIntent.putExtra("fromUi", fromUi);
+        broadcastIntent.putExtra("wokenByAlarm", wokenByAlarm);
+        broadcastIntent.putExtra("alarmLateMs", alarmLateMs);
+        broadcastIntent.putExtra("wheelLateMs", wheelLateMs);
+        broadcastIntent.putExtra("wakeSummary", wakeSummary());
+        long fireErrorNanos = precisionTimer.getLastFireErrorNanos();
+        if (fireErrorNanos != PrecisionClickTimer.NO_MEASUREMENT) {
+            broadcastIntent.putExtra("firstClickErrorMicros", fireErrorNanos / 1000);
+        }
+        if (triggerLatencyNanos >= 0) {
+            broadcastIntent.putExtra("triggerLatencyMicros", triggerLatencyNanos / 1000);
+        }
+        broadcastIntent.putExtra("leadMicros", leadNanos / 1000);
+        broadcastIntent.putExtra("inputLatencySummary", InputLatency.summary());
+        if (nodeTarget != null) {
+            broadcastIntent.putExtra("targetMisses", targetMisses);
+        }
+        if (firstClickCostNanos >= 0) {
+            broadcastIntent.putExtra("firstClickCostMicros", firstClickCostNanos / 1000);
+        }
+        broadcastIntent.putExtra("clickCostSummary", clickCostHistogram.summary());
+        broadcastIntent.putExtra("engineProcess", EngineChannel.processName());
+        if (gcDuringClicks != null) {
+            broadcastIntent.putExtra("gcCount", gcDuringClicks.count);
+            broadcastIntent.putExtra("blockingGcCount", gcDuringClicks.blockingCount);
+            broadcastIntent.putExtra("gcSummary", gcDuringClicks.toString());
+        }
+        ClickPipeline current = pipeline;
+        if (macroPlayer != null) {
+            broadcastIntent.putExtra("delivered", macroPlayer.getDelivered());
+            broadcastIntent.putExtra("cancelled", macroPlayer.getCancelled());
+            broadcastIntent.putExtra("macroSummary", macroPlayer.summary());
+        } else if (current != null) {
+            broadcastIntent.putExtra("delivered", current.getDelivered());
+            broadcastIntent.putExtra("cancelled", current.getCancelled());
+            broadcastIntent.putExtra("retried", current.getRetried());
+            broadcastIntent.putExtra("dropped", current.getDropped());
+        }
+        broadcastIntent.putExtra("scheduleErrorSummary", scheduleErrorHistogram.summary());
+        broadcastIntent.putExtra("completionLatencySummary", completionLatencyHistogram.summary());
+    }
+
+    void logSummary() {
+        ClickPipeline current = pipeline;
+        if (macroPlayer != null) {
+            ClickLog.text(ClickLog.INFO, "任务 " + id + " 回放统计: " + macroPlayer.summary());
+        } else if (current != null) {
+            ClickLog.text(ClickLog.INFO, "任务 " + id + " 投递统计: " + current.summary());
+        }
+        ClickLog.text(ClickLog.INFO, "任务 " + id + " 计划误差: " + scheduleErrorHistogram.summary());
+        ClickLog.text(ClickLog.INFO, "任务 " + id + " 完成延迟: " + completionLatencyHistogram.summary());
+        if (firstClickCostNanos >= 0) {
+            ClickLog.text(ClickLog.INFO, "任务 " + id + " 首次点击耗时 " + firstClickCostNanos / 1000
+                    + "us (预热 " + warmupMs + "ms), 稳态: " + clickCostHistogram.summary());
+        }
+        ClickLog.text(ClickLog.INFO, "任务 " + id + " 输入延迟补偿 " + leadNanos / 1000 + "us, 当前估计: "
+                + InputLatency.summary());
+        if (gcDuringClicks != null) {
+            ClickLog.text(ClickLog.INFO, "任务 " + id + " 点击期间 " + gcDuringClicks
+                    + " (进程 " + EngineChannel.processName() + ")");
+        }
+    }
+
+    /**
+     * 通知栏展示用的统计文本
+     */
+    String statsText() {
+        return "计划误差 " + scheduleErrorHistogram.summary()
+                + "\n完成延迟 " + completionLatencyHistogram.summary();
+    }
+
+    String pipelineSummary() {
+        ClickPipeline current = pipeline;
+        return current == null ? "" : current.summary();
+    }
+}
@@ -11,11 +11,36 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.TextView;
+import com.example.autoclick.engine.ClickLog;
+import com.example.autoclick.engine.LatencyHistogram;
+import com.example.autoclick.engine.MacroWriter;
+import com.example.autoclick.engine.TouchMacro;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
+/**
+ * 全屏悬浮层捕获触摸：默认捕获一次按下的坐标后返回应用；
+ * Intent 带 macroFile 时进入录制模式，把完整的触摸序列（多指的按下、移动、抬起及时刻）
+ * 写成触摸宏文件，点击右上角的按钮结束录制。悬浮层会拦截触摸，录制期间下层应用收不到操作。
+ * 录制时同时统计多指触摸中第一根到最后一根手指按下的间隔，用来观察多指点击送达时的手指间偏差。
+ */
 public class CoordinateCaptureService extends Service {
 
     private WindowManager windowManager;
     private View overlayView;
+    private View stopView;
+
+    // 录制模式
+    private MacroWriter macroWriter;
+    private File macroFile;
+    private long recordStartMs = -1;
+    // 当前触摸中第一根和最后一根手指按下的时刻、按下过的手指数
+    private long firstDownNanos;
+    private long lastDownNanos;
+    private int downCount;
+    private final LatencyHistogram downSpreadHistogram = new LatencyHistogram();
+    private static final int LOG_DOWN_SPREAD = ClickLog.event("{} 指按下间隔 {}us");
 
     @Override
     public IBinder onBind(Intent intent) {
@@ -26,8 +51,19 @@ public class CoordinateCaptureService extends Service {
     public void onCreate() {
         super.onCreate();
         windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
-        createOverlayView();
-        
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (overlayView == null) {
+            String path = intent == null ? null : intent.getStringExtra("macroFile");
+            if (path != null) {
+                startRecording(new File(path));
+            } else {
+                createOverlayView();
+            }
+        }
+        return START_NOT_STICKY;
     }
 
     private void createOverlayView() {
@@ -71,23 +107,7 @@ public class CoordinateCaptureService extends Service {
                 }
             });
 
-            WindowManager.LayoutParams params;
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                params = new WindowManager.LayoutParams(
-                        WindowManager.LayoutParams.MATCH_PARENT,
-                        WindowManager.LayoutParams.MATCH_PARENT,
-                        WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
-                        WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
-                        PixelFormat.TRANSLUCENT);
-            } else {
-                params = new WindowManager.LayoutParams(
-                        WindowManager.LayoutParams.MATCH_PARENT,
-                        WindowManager.LayoutParams.MATCH_PARENT,
-                        WindowManager.LayoutParams.TYPE_PHONE,
-                        WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
-                        PixelFormat.TRANSLUCENT);
-            }
-            
+            WindowManager.LayoutParams params = overlayParams(WindowManager.LayoutParams.MATCH_PARENT);
             params.gravity = Gravity.TOP | Gravity.LEFT;
             windowManager.addView(overlayView, params);
             
@@ -99,18 +119,214 @@ public class CoordinateCaptureService extends Service {
         }
     }
 
+    private static WindowManager.LayoutParams overlayParams(int size) {
+        int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
+                : WindowManager.LayoutParams.TYPE_PHONE;
+        return new WindowManager.LayoutParams(size, size, type,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE, PixelFormat.TRANSLUCENT);
+    }
+
+    private void startRecording(File file) {
+        if (!checkOverlayPermission()) {
+            stopSelf();
+            return;
+        }
+
+        try {
+            File dir = file.getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("无法创建目录: " + dir);
+            }
+            macroWriter = new MacroWriter(new FileOutputStream(file));
+            macroFile = file;
+
+            TextView recordView = new TextView(this);
+            recordView.setText("正在录制手势\n在屏幕上操作即可，支持多指\n点击右上角按钮结束录制");
+            recordView.setTextColor(0xFFFFFFFF);
+            recordView.setBackgroundColor(0x40000000);
+            recordView.setGravity(Gravity.CENTER);
+            recordView.setOnTouchListener(new View.OnTouchListener() {
+                @Override
+                public boolean onTouch(View v, MotionEvent event) {
+                    recordTouch(event);
+                    return true;
+                }
+            });
+            overlayView = recordView;
+            WindowManager.LayoutParams params = overlayParams(WindowManager.LayoutParams.MATCH_PARENT);
+            params.gravity = Gravity.TOP | Gravity.LEFT;
+            windowManager.addView(overlayView, params);
+
+            TextView stopButton = new TextView(this);
+            stopButton.setText("结束录制");
+            stopButton.setTextColor(0xFFFFFFFF);
+            stopButton.setBackgroundColor(0xFFFF5722);
+            stopButton.setPadding(40, 24, 40, 24);
+            stopButton.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    finishRecording();
+                }
+            });
+            stopView = stopButton;
+            WindowManager.LayoutParams stopParams = overlayParams(WindowManager.LayoutParams.WRAP_CONTENT);
+            stopParams.gravity = Gravity.TOP | Gravity.RIGHT;
+            windowManager.addView(stopView, stopParams);
+        } catch (Exception e) {
+            ClickLog.text(ClickLog.ERROR, "开始录制手势失败: " + e.getMessage());
+            closeWriter();
+            stopSelf();
+        }
+    }
+
+    /**
+     * 把一个触摸事件（含合并在其中的历史采样）按手指拆开写入宏文件，坐标换算到屏幕坐标
+     */
+    private void recordTouch(MotionEvent event) {
+        if (macroWriter == null) return;
+        if (recordStartMs < 0) {
+            recordStartMs = event.getEventTime();
+        }
+        // 悬浮层在屏幕上的偏移，对所有手指相同
+        float offsetX = event.getRawX() - event.getX();
+        float offsetY = event.getRawY() - event.getY();
+        try {
+            switch (event.getActionMasked()) {
+                case MotionEvent.ACTION_DOWN:
+                case MotionEvent.ACTION_POINTER_DOWN:
+                    onPointerDown(event);
+                    writePointer(event, event.getActionIndex(), TouchMacro.ACTION_DOWN,
+                            event.getEventTime(), offsetX, offsetY);
+                    break;
+                case MotionEvent.ACTION_MOVE:
+                    for (int h = 0; h < event.getHistorySize(); h++) {
+                        long time = event.getHistoricalEventTime(h) - recordStartMs;
+                        for (int i = 0; i < event.getPointerCount(); i++) {
+                            int pointerId = event.getPointerId(i);
+                            if (pointerId >= TouchMacro.MAX_POINTERS) continue;
+                            macroWriter.add(time, TouchMacro.ACTION_MOVE, pointerId,
+                                    Math.round(event.getHistoricalX(i, h) + offsetX),
+                                    Math.round(event.getHistoricalY(i, h) + offsetY));
+                        }
+                    }
+                    for (int i = 0; i < event.getPointerCount(); i++) {
+                        writePointer(event, i, TouchMacro.ACTION_MOVE, event.getEventTime(), offsetX, offsetY);
+                    }
+                    break;
+                case MotionEvent.ACTION_UP:
+                case MotionEvent.ACTION_POINTER_UP:
+                    writePointer(event, event.getActionIndex(), TouchMacro.ACTION_UP,
+                            event.getEventTime(), offsetX, offsetY);
+                    if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+                        onTouchEnded();
+                    }
+                    break;
+                case MotionEvent.ACTION_CANCEL:
+                    for (int i = 0; i < event.getPointerCount(); i++) {
+                        writePointer(event, i, TouchMacro.ACTION_UP, event.getEventTime(), offsetX, offsetY);
+                    }
+                    onTouchEnded();
+                    break;
+                default:
+                    break;
+            }
+        } catch (IOException e) {
+            ClickLog.text(ClickLog.ERROR, "写入触摸宏失败: " + e.getMessage());
+            finishRecording();
+        }
+    }
+
+    private void onPointerDown(MotionEvent event) {
+        // Android 14 起事件时间有纳秒精度，之前只有毫秒
+        long nanos = Build.VERSION.SDK_INT >= 34
+                ? event.getEventTimeNanos() : event.getEventTime() * 1_000_000L;
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            firstDownNanos = nanos;
+            downCount = 0;
+        }
+        lastDownNanos = nanos;
+        downCount++;
+    }
+
+    private void onTouchEnded() {
+        if (downCount < 2) return;
+        long spread = lastDownNanos - firstDownNanos;
+        downSpreadHistogram.record(spread);
+        ClickLog.d(LOG_DOWN_SPREAD, downCount, spread / 1000);
+        downCount = 0;
+    }
+
+    private void writePointer(MotionEvent event, int index, int action, long eventTime,
+                              float offsetX, float offsetY) throws IOException {
+        int pointerId = event.getPointerId(index);
+        if (pointerId >= TouchMacro.MAX_POINTERS) return;
+        macroWriter.add(eventTime - recordStartMs, action, pointerId,
+                Math.round(event.getX(index) + offsetX), Math.round(event.getY(index) + offsetY));
+    }
+
+    /**
+     * 结束录制：写完文件，把文件路径和统计广播给界面后返回应用
+     */
+    private void finishRecording() {
+        if (macroWriter == null) return;
+        MacroWriter writer = macroWriter;
+        boolean saved = closeWriter();
+
+        Intent broadcastIntent = new Intent("macro_recorded");
+        if (saved && writer.getEventCount() > 0) {
+            broadcastIntent.putExtra("path", macroFile.getAbsolutePath());
+            broadcastIntent.putExtra("events", writer.getEventCount());
+            broadcastIntent.putExtra("bytes", writer.getSize());
+            broadcastIntent.putExtra("durationMs", writer.getDurationMs());
+            if (downSpreadHistogram.getCount() > 0) {
+                broadcastIntent.putExtra("downSpreadSummary", downSpreadHistogram.summary());
+                ClickLog.text(ClickLog.INFO, "多指按下间隔: " + downSpreadHistogram.summary());
+            }
+            ClickLog.text(ClickLog.INFO, "手势录制完成: " + writer.getEventCount() + " 个事件, "
+                    + writer.getSize() + " 字节, 时长 " + writer.getDurationMs() + "ms");
+        } else if (macroFile != null) {
+            macroFile.delete();
+        }
+        sendBroadcast(broadcastIntent);
+
+        Intent backIntent = new Intent(getApplicationContext(), MainActivity.class);
+        backIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        startActivity(backIntent);
+        stopSelf();
+    }
+
+    private boolean closeWriter() {
+        if (macroWriter == null) return false;
+        try {
+            macroWriter.close();
+            return true;
+        } catch (IOException e) {
+            ClickLog.text(ClickLog.ERROR, "保存触摸宏失败: " + e.getMessage());
+            return false;
+        } finally {
+            macroWriter = null;
+        }
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (overlayView != null && windowManager != null) {
-            try {
-                windowManager.removeView(overlayView);
-                
-            } catch (Exception e) {
-                
-            }
+        // 被外部停止时保留已录制的部分
+        closeWriter();
+        if (windowManager != null) {
+            removeView(overlayView);
+            removeView(stopView);
+        }
+    }
+
+    private void removeView(View view) {
+        if (view == null) return;
+        try {
+            windowManager.removeView(view);
+        } catch (Exception e) {
+            // 视图已移除
         }
-        
     }
 
     private boolean checkOverlayPermission() {
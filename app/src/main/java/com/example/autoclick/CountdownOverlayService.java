@@ -7,21 +7,27 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.WindowManager;
-import android.widget.TextView;
-import java.util.Locale;
+import com.example.autoclick.engine.ClickLog;
+import com.example.autoclick.engine.LatencyHistogram;
 
 public class CountdownOverlayService extends Service {
+    // 预热窗口内暂停刷新，显示停在当前数字，到目标时刻照常关闭
+    static final String ACTION_PAUSE = "com.example.autoclick.PAUSE_COUNTDOWN";
+
     private WindowManager windowManager;
     private View overlayView;
-    private TextView tvCountdown;
+    private CountdownView countdownView;
     private Handler handler;
     private Runnable countdownRunnable;
     private long targetTime;
+    // 每次刷新（格式化 + 比较 + invalidate）在主线程上的耗时
+    private final LatencyHistogram tickTimeHistogram = new LatencyHistogram();
 
     @Override
     public void onCreate() {
@@ -33,7 +39,9 @@ public class CountdownOverlayService extends Service {
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        if (intent != null) {
+        if (intent != null && ACTION_PAUSE.equals(intent.getAction())) {
+            pauseCountdown();
+        } else if (intent != null) {
             targetTime = intent.getLongExtra("target_time", 0);
             if (targetTime > 0) {
                 createOverlayView();
@@ -47,6 +55,7 @@ public class CountdownOverlayService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        logRenderStats();
         removeOverlayView();
         if (handler != null && countdownRunnable != null) {
             handler.removeCallbacks(countdownRunnable);
@@ -72,7 +81,8 @@ public class CountdownOverlayService extends Service {
             // 使用布局文件创建倒计时视图
             LayoutInflater inflater = LayoutInflater.from(this);
             overlayView = inflater.inflate(R.layout.overlay_countdown, null);
-            tvCountdown = overlayView.findViewById(R.id.tv_overlay_countdown);
+            countdownView = overlayView.findViewById(R.id.countdown_view);
+            overlayView.measure(View.MeasureSpec.UNSPECIFIED, View.MeasureSpec.UNSPECIFIED);
 
             // 设置窗口参数
             WindowManager.LayoutParams params;
@@ -96,6 +106,10 @@ public class CountdownOverlayService extends Service {
                 );
             }
 
+            // 窗口尺寸固定为视图的测量尺寸，倒计时文本变化不会引起窗口重新布局
+            params.width = overlayView.getMeasuredWidth();
+            params.height = overlayView.getMeasuredHeight();
+
             // 设置为顶部正中
             params.gravity = Gravity.TOP | Gravity.CENTER_HORIZONTAL;
             params.y = 50; // 距离顶部50像素
@@ -134,38 +148,37 @@ public class CountdownOverlayService extends Service {
         handler.post(countdownRunnable);
     }
 
-    private void updateCountdownDisplay(long remainingTime) {
-        if (tvCountdown == null) return;
-
-        // 根据剩余时间设置颜色
-        int textColor;
-        if (remainingTime > 60000) { // 大于1分钟 - 绿色
-            textColor = 0xFF00FF00;
-        } else if (remainingTime > 10000) { // 大于10秒小于1分钟 - 黄色
-            textColor = 0xFFFFFF00;
-        } else { // 10秒内 - 红色
-            textColor = 0xFFFF0000;
-        }
-        tvCountdown.setTextColor(textColor);
-
-        long hours = remainingTime / (1000 * 60 * 60);
-        long minutes = (remainingTime % (1000 * 60 * 60)) / (1000 * 60);
-        long seconds = (remainingTime % (1000 * 60)) / 1000;
-        long milliseconds = remainingTime % 1000;
-
-        String countdownText;
-        if (hours > 0) {
-            countdownText = String.format(Locale.getDefault(),
-                    "%02d:%02d:%02d.%03d", hours, minutes, seconds, milliseconds);
-        } else if (minutes > 0) {
-            countdownText = String.format(Locale.getDefault(),
-                    "%02d:%02d.%03d", minutes, seconds, milliseconds);
-        } else {
-            countdownText = String.format(Locale.getDefault(),
-                    "%02d.%03d", seconds, milliseconds);
+    /**
+     * 停止逐帧刷新，只留一次到目标时刻的关闭；预热和首次点击期间主线程不再绘制
+     */
+    private void pauseCountdown() {
+        if (countdownRunnable == null) {
+            // 倒计时没有在显示，不必为暂停指令保留服务
+            stopSelf();
+            return;
         }
+        handler.removeCallbacks(countdownRunnable);
+        long remainingTime = targetTime - System.currentTimeMillis();
+        handler.postDelayed(countdownRunnable, Math.max(0, remainingTime));
+    }
+
+    private void updateCountdownDisplay(long remainingTime) {
+        if (countdownView == null) return;
+
+        // 只有显示的数字或颜色变化时才会重绘
+        long start = SystemClock.elapsedRealtimeNanos();
+        countdownView.setRemaining(remainingTime);
+        tickTimeHistogram.record(SystemClock.elapsedRealtimeNanos() - start);
+    }
 
-        tvCountdown.setText(countdownText);
+    /**
+     * 输出倒计时渲染耗时统计
+     */
+    private void logRenderStats() {
+        if (countdownView == null) return;
+        ClickLog.text(ClickLog.INFO, "倒计时刷新耗时: " + tickTimeHistogram.summary());
+        ClickLog.text(ClickLog.INFO, "倒计时绘制耗时: " + countdownView.getDrawTimeHistogram().summary()
+                + ", 重绘 " + countdownView.getInvalidateCount() + " 次, 跳过 " + countdownView.getSkippedCount() + " 次");
     }
 
     private void removeOverlayView() {
@@ -177,7 +190,7 @@ public class CountdownOverlayService extends Service {
                 
             }
             overlayView = null;
-            tvCountdown = null;
+            countdownView = null;
         }
     }
 
@@ -0,0 +1,112 @@
+package com.example.autoclick;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+import com.example.autoclick.engine.CountdownFormatter;
+import com.example.autoclick.engine.LatencyHistogram;
+
+/**
+ * 倒计时视图：尺寸按最宽文本一次性固定，文本格式化进复用的 char 数组后直接绘制。
+ * 只有显示内容或颜色真正变化时才 invalidate，且从不 requestLayout，不会触发悬浮窗重新布局。
+ */
+public class CountdownView extends View {
+    // 按最宽的显示格式确定尺寸，等宽字体下所有数字宽度一致
+    private static final String WIDEST_TEXT = "00:00:00.000";
+    private static final float TEXT_SIZE_SP = 16;
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final char[] displayed = new char[CountdownFormatter.MAX_LENGTH];
+    private final char[] scratch = new char[CountdownFormatter.MAX_LENGTH];
+    private int displayedLength;
+    private int displayedColor;
+
+    private final int textWidth;
+    private final int textHeight;
+
+    // 绘制耗时与刷新统计
+    private final LatencyHistogram drawTimeHistogram = new LatencyHistogram();
+    private long invalidateCount;
+    private long skippedCount;
+
+    public CountdownView(Context context) {
+        this(context, null);
+    }
+
+    public CountdownView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        paint.setTypeface(Typeface.create(Typeface.MONOSPACE, Typeface.BOLD));
+        paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP,
+                getResources().getDisplayMetrics()));
+        paint.setTextAlign(Paint.Align.CENTER);
+        displayedColor = CountdownFormatter.COLOR_GREEN;
+        paint.setColor(displayedColor);
+
+        textWidth = (int) Math.ceil(paint.measureText(WIDEST_TEXT));
+        textHeight = (int) Math.ceil(paint.descent() - paint.ascent());
+    }
+
+    /**
+     * 更新剩余时间，显示内容不变时不做任何重绘
+     *
+     * @return 是否触发了重绘
+     */
+    public boolean setRemaining(long remainingMs) {
+        int length = CountdownFormatter.format(remainingMs, scratch);
+        int color = CountdownFormatter.colorFor(remainingMs);
+
+        if (color == displayedColor && length == displayedLength && sameText(length)) {
+            skippedCount++;
+            return false;
+        }
+
+        System.arraycopy(scratch, 0, displayed, 0, length);
+        displayedLength = length;
+        if (color != displayedColor) {
+            displayedColor = color;
+            paint.setColor(color);
+        }
+        invalidateCount++;
+        invalidate();
+        return true;
+    }
+
+    public LatencyHistogram getDrawTimeHistogram() {
+        return drawTimeHistogram;
+    }
+
+    public long getInvalidateCount() {
+        return invalidateCount;
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(getPaddingLeft() + textWidth + getPaddingRight(),
+                getPaddingTop() + textHeight + getPaddingBottom());
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        long start = System.nanoTime();
+        super.onDraw(canvas);
+        float x = getPaddingLeft() + textWidth / 2f;
+        float y = getPaddingTop() - paint.ascent();
+        canvas.drawText(displayed, 0, displayedLength, x, y, paint);
+        drawTimeHistogram.record(System.nanoTime() - start);
+    }
+
+    private boolean sameText(int length) {
+        for (int i = 0; i < length; i++) {
+            if (scratch[i] != displayed[i]) return false;
+        }
+        return true;
+    }
+}
@@ -7,14 +7,25 @@ import android.os.Build;
 import android.os.IBinder;
 import android.provider.Settings;
 import android.util.DisplayMetrics;
+import android.view.Choreographer;
 import android.view.Display;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowManager;
+import com.example.autoclick.engine.ClickLog;
+import com.example.autoclick.engine.CoordinateCell;
+import java.io.File;
 
 public class DraggableMarkerService extends Service {
+    private static final int LOG_PUBLISH = ClickLog.event("发布绝对坐标: ({}, {})");
+    private static final int LOG_COALESCED = ClickLog.event("拖动事件 {} 个, 合并为 {} 次更新");
+
+    // 标记的绝对屏幕坐标，同进程的点击循环直接读取，不经过广播；引擎进程中由 EngineChannel 写入
+    private static final CoordinateCell markerPosition = new CoordinateCell();
+
+    private final EngineChannel.Client engineChannel = new EngineChannel.Client();
     private WindowManager windowManager;
     private View markerView;
     private WindowManager.LayoutParams params;
@@ -23,11 +34,33 @@ public class DraggableMarkerService extends Service {
     private int absoluteClickX = 0;
     private int absoluteClickY = 0;
 
+    // 拖动时的移动事件先记下，每个显示帧最多更新一次窗口位置和坐标
+    private boolean framePending;
+    private long moveEvents;
+    private long frameUpdates;
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            framePending = false;
+            applyPosition();
+        }
+    };
+
+    /**
+     * 拖拽标记的当前坐标，未显示标记时为 CoordinateCell.UNSET
+     */
+    public static CoordinateCell getMarkerPosition() {
+        return markerPosition;
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
         windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
-        System.out.println("DraggableMarkerService 创建");
+        ClickLog.start(new File(getFilesDir(), "logs"));
+        ClickLog.text(ClickLog.INFO, "DraggableMarkerService 创建");
+        // 点击引擎可能在另一个进程，坐标经消息通道同步过去
+        engineChannel.bind(this);
     }
 
     @Override
@@ -39,8 +72,12 @@ public class DraggableMarkerService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        cancelFrame();
         removeMarker();
-        System.out.println("DraggableMarkerService 销毁");
+        markerPosition.clear();
+        engineChannel.sendMarkerCleared();
+        engineChannel.unbind(this);
+        ClickLog.text(ClickLog.INFO, "DraggableMarkerService 销毁");
     }
 
     @Override
@@ -48,7 +85,7 @@ public class DraggableMarkerService extends Service {
 
     private void createDraggableMarker() {
         if (!checkOverlayPermission()) {
-            System.out.println("没有悬浮窗权限，无法显示拖拽标记");
+            ClickLog.text(ClickLog.INFO, "没有悬浮窗权限，无法显示拖拽标记");
             return;
         }
 
@@ -69,7 +106,7 @@ public class DraggableMarkerService extends Service {
             int screenWidth = realMetrics.widthPixels;
             int screenHeight = realMetrics.heightPixels;
 
-            System.out.println("真实屏幕尺寸: " + screenWidth + "x" + screenHeight);
+            ClickLog.text(ClickLog.INFO, "真实屏幕尺寸: " + screenWidth + "x" + screenHeight);
 
             // 悬浮窗参数：使用最宽松的布局标志，完全不受系统UI影响
             int flags = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
@@ -118,7 +155,7 @@ public class DraggableMarkerService extends Service {
                             // 立即使用绝对屏幕坐标
                             absoluteClickX = Math.round(downRawX);
                             absoluteClickY = Math.round(downRawY);
-                            broadcastAbsoluteCoordinate();
+                            publishAbsoluteCoordinate();
                             return true;
 
                         case MotionEvent.ACTION_MOVE:
@@ -132,23 +169,31 @@ public class DraggableMarkerService extends Service {
                             if (dragging) {
                                 params.x = initialX + Math.round(dx);
                                 params.y = initialY + Math.round(dy);
-                                windowManager.updateViewLayout(markerView, params);
 
                                 // 实时使用绝对屏幕坐标，完全不考虑标记位置
                                 absoluteClickX = Math.round(event.getRawX());
                                 absoluteClickY = Math.round(event.getRawY());
-                                broadcastAbsoluteCoordinate();
+                                moveEvents++;
+                                requestFrame();
                             }
                             return true;
 
                         case MotionEvent.ACTION_UP:
                         case MotionEvent.ACTION_CANCEL:
-                            // 最终确认绝对坐标
+                            // 最终确认绝对坐标，不等下一帧
                             absoluteClickX = Math.round(event.getRawX());
                             absoluteClickY = Math.round(event.getRawY());
-                            broadcastAbsoluteCoordinate();
+                            cancelFrame();
+                            if (dragging) {
+                                applyPosition();
+                            } else {
+                                publishAbsoluteCoordinate();
+                            }
 
-                            System.out.println("最终绝对坐标: (" + absoluteClickX + ", " + absoluteClickY + ")");
+                            ClickLog.text(ClickLog.INFO, "最终绝对坐标: (" + absoluteClickX + ", " + absoluteClickY + ")");
+                            ClickLog.i(LOG_COALESCED, moveEvents, frameUpdates);
+                            moveEvents = 0;
+                            frameUpdates = 0;
                             dragging = false;
                             return true;
                     }
@@ -162,35 +207,55 @@ public class DraggableMarkerService extends Service {
             markerView.post(() -> {
                 absoluteClickX = params.x + markerView.getWidth() / 2;
                 absoluteClickY = params.y + markerView.getHeight() / 2;
-                broadcastAbsoluteCoordinate();
-                System.out.println("初始绝对坐标: (" + absoluteClickX + ", " + absoluteClickY + ")");
+                publishAbsoluteCoordinate();
+                ClickLog.text(ClickLog.INFO, "初始绝对坐标: (" + absoluteClickX + ", " + absoluteClickY + ")");
             });
 
-            System.out.println("拖拽标记已显示");
+            ClickLog.text(ClickLog.INFO, "拖拽标记已显示");
         } catch (Exception e) {
-            System.out.println("显示拖拽标记失败: " + e.getMessage());
+            ClickLog.text(ClickLog.WARN, "显示拖拽标记失败: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
     /**
-     * 广播绝对屏幕坐标，不受任何UI状态影响
+     * 发布绝对屏幕坐标，不受任何UI状态影响
+     */
+    private void publishAbsoluteCoordinate() {
+        markerPosition.publish(absoluteClickX, absoluteClickY);
+        engineChannel.sendMarker(absoluteClickX, absoluteClickY);
+        ClickLog.d(LOG_PUBLISH, absoluteClickX, absoluteClickY);
+    }
+
+    private void requestFrame() {
+        if (framePending) return;
+        framePending = true;
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+
+    private void cancelFrame() {
+        if (!framePending) return;
+        framePending = false;
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+
+    /**
+     * 把最近一次移动事件的位置应用到窗口并发布坐标
      */
-    private void broadcastAbsoluteCoordinate() {
-        Intent intent = new Intent("coordinate_updated");
-        intent.putExtra("x", absoluteClickX);
-        intent.putExtra("y", absoluteClickY);
-        sendBroadcast(intent);
-        System.out.println("广播绝对坐标: (" + absoluteClickX + ", " + absoluteClickY + ")");
+    private void applyPosition() {
+        if (markerView == null) return;
+        frameUpdates++;
+        windowManager.updateViewLayout(markerView, params);
+        publishAbsoluteCoordinate();
     }
 
     private void removeMarker() {
         if (markerView != null && windowManager != null) {
             try {
                 windowManager.removeView(markerView);
-                System.out.println("拖拽标记已移除");
+                ClickLog.text(ClickLog.INFO, "拖拽标记已移除");
             } catch (Exception e) {
-                System.out.println("移除拖拽标记失败: " + e.getMessage());
+                ClickLog.text(ClickLog.WARN, "移除拖拽标记失败: " + e.getMessage());
             }
             markerView = null;
         }
@@ -0,0 +1,167 @@
+package com.example.autoclick;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import com.example.autoclick.engine.ClickLog;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * 界面进程与点击引擎进程之间的消息通道。ScheduleKeepAliveService 和 AutoClickService 运行在
+ * build.gradle 中 engineProcess 指定的进程里，默认与界面分开，界面的视图和垃圾不会在点击期间引起引擎进程的 GC；
+ * 手势派发与调度在同一进程，点击热路径上没有跨进程调用。
+ *
+ * <p>布置、取消任务仍通过 Intent，结果仍通过广播；只有界面上的实时状态（拖拽标记坐标、调试日志开关）经由这里的
+ * Messenger 直接送到点击线程。两个组件在同一进程时通道照常工作，只是不跨进程。
+ */
+final class EngineChannel {
+    // 拖拽标记移动，arg1、arg2 为绝对屏幕坐标
+    static final int MSG_MARKER = 1;
+    // 拖拽标记已隐藏
+    static final int MSG_MARKER_CLEARED = 2;
+    // 日志级别，arg1 为 ClickLog 的级别常量
+    static final int MSG_LOG_LEVEL = 3;
+
+    private static final String LOG_DIR = "logs";
+
+    private static String processName;
+
+    private EngineChannel() {
+    }
+
+    /**
+     * 引擎一侧的消息处理，交给以点击线程 Looper 创建的 Handler。
+     * 拖拽标记坐标写入本进程的 DraggableMarkerService.getMarkerPosition()，点击循环照旧从那里读取；
+     * 日志级别设置到本进程的 ClickLog，界面切换调试日志时引擎进程一同生效
+     */
+    static Handler.Callback engineCallback() {
+        return new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message message) {
+                switch (message.what) {
+                    case MSG_MARKER:
+                        DraggableMarkerService.getMarkerPosition().publish(message.arg1, message.arg2);
+                        return true;
+                    case MSG_MARKER_CLEARED:
+                        DraggableMarkerService.getMarkerPosition().clear();
+                        return true;
+                    case MSG_LOG_LEVEL:
+                        ClickLog.setLevel(message.arg1);
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+        };
+    }
+
+    /**
+     * 当前进程名，读取 /proc/self/cmdline，失败时返回空字符串
+     */
+    static synchronized String processName() {
+        if (processName != null) return processName;
+        byte[] buffer = new byte[256];
+        int length = 0;
+        try (FileInputStream in = new FileInputStream("/proc/self/cmdline")) {
+            int read;
+            while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+        } catch (IOException e) {
+            length = 0;
+        }
+        int end = 0;
+        while (end < length && buffer[end] != 0) end++;
+        processName = new String(buffer, 0, end);
+        return processName;
+    }
+
+    /**
+     * 日志目录：界面进程写 logs，独立的引擎进程写 logs 下以进程名后缀命名的子目录，两个进程不会轮转同一个文件
+     */
+    static File logDir(Context context) {
+        File dir = new File(context.getFilesDir(), LOG_DIR);
+        String name = processName();
+        int colon = name.indexOf(':');
+        return colon < 0 ? dir : new File(dir, name.substring(colon + 1));
+    }
+
+    /**
+     * 界面一侧：绑定到引擎服务（不负责启动它），引擎启动或重启后连接建立时补发最近的状态。
+     * 只能在主线程调用
+     */
+    static final class Client implements ServiceConnection {
+        private Messenger engine;
+        private boolean bound;
+        private boolean hasMarker;
+        private int markerX, markerY;
+        private boolean hasLogLevel;
+        private int logLevel;
+
+        void bind(Context context) {
+            if (bound) return;
+            // 不带 BIND_AUTO_CREATE：引擎服务由任务启动，启动后自动连接
+            bound = context.bindService(new Intent(context, ScheduleKeepAliveService.class), this, 0);
+        }
+
+        void unbind(Context context) {
+            if (!bound) return;
+            bound = false;
+            engine = null;
+            context.unbindService(this);
+        }
+
+        void sendMarker(int x, int y) {
+            hasMarker = true;
+            markerX = x;
+            markerY = y;
+            send(MSG_MARKER, x, y);
+        }
+
+        void sendMarkerCleared() {
+            hasMarker = false;
+            send(MSG_MARKER_CLEARED, 0, 0);
+        }
+
+        void sendLogLevel(int level) {
+            hasLogLevel = true;
+            logLevel = level;
+            send(MSG_LOG_LEVEL, level, 0);
+        }
+
+        private void send(int what, int arg1, int arg2) {
+            if (engine == null) return;
+            try {
+                engine.send(Message.obtain(null, what, arg1, arg2));
+            } catch (RemoteException e) {
+                // 引擎进程已退出，重新启动后会再次连接
+                engine = null;
+            }
+        }
+
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            engine = new Messenger(service);
+            ClickLog.text(ClickLog.INFO, "已连接点击引擎");
+            if (hasMarker) {
+                send(MSG_MARKER, markerX, markerY);
+            }
+            if (hasLogLevel) {
+                send(MSG_LOG_LEVEL, logLevel, 0);
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            engine = null;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.autoclick;
+
+import android.os.Debug;
+
+/**
+ * 本进程 ART 的 GC 累计统计快照（Debug.getRuntimeStat），两次快照相减得到一段时间内的 GC 次数和耗时。
+ * 阻塞式 GC 会暂停包括点击线程在内的所有线程。只在点击窗口的开始和结束各取一次。
+ */
+final class GcStats {
+    final long count;
+    final long timeMs;
+    final long blockingCount;
+    final long blockingTimeMs;
+
+    private GcStats(long count, long timeMs, long blockingCount, long blockingTimeMs) {
+        this.count = count;
+        this.timeMs = timeMs;
+        this.blockingCount = blockingCount;
+        this.blockingTimeMs = blockingTimeMs;
+    }
+
+    static GcStats snapshot() {
+        return new GcStats(stat("art.gc.gc-count"), stat("art.gc.gc-time"),
+                stat("art.gc.blocking-gc-count"), stat("art.gc.blocking-gc-time"));
+    }
+
+    /**
+     * 从 start 到本快照之间的增量
+     */
+    GcStats since(GcStats start) {
+        return new GcStats(count - start.count, timeMs - start.timeMs,
+                blockingCount - start.blockingCount, blockingTimeMs - start.blockingTimeMs);
+    }
+
+    private static long stat(String name) {
+        String value = Debug.getRuntimeStat(name);
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GC " + count + " 次 / " + timeMs + "ms, 阻塞 " + blockingCount + " 次 / " + blockingTimeMs + "ms";
+    }
+}
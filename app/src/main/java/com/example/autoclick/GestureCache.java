@@ -0,0 +1,38 @@
+package com.example.autoclick;
+
+import android.accessibilityservice.GestureDescription;
+import android.graphics.Path;
+import com.example.autoclick.engine.TapCache;
+
+/**
+ * 单点点击手势缓存：命中规则与计数在 engine 的 TapCache 中，这里只负责构建 GestureDescription
+ */
+final class GestureCache {
+    private final TapCache<GestureDescription> cache = new TapCache<>(
+            new TapCache.Factory<GestureDescription>() {
+                @Override
+                public GestureDescription build(int x, int y, long durationMs) {
+                    Path path = new Path();
+                    path.moveTo(x, y);
+                    return new GestureDescription.Builder()
+                            .addStroke(new GestureDescription.StrokeDescription(path, 0, durationMs))
+                            .build();
+                }
+            });
+
+    GestureDescription obtainTap(int x, int y, long durationMs) {
+        return cache.obtain(x, y, durationMs);
+    }
+
+    long getHits() {
+        return cache.getHits();
+    }
+
+    long getBuilds() {
+        return cache.getBuilds();
+    }
+
+    void clear() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.autoclick;
+
+import android.graphics.Bitmap;
+import android.graphics.HardwareRenderer;
+import android.graphics.PixelFormat;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.hardware.HardwareBuffer;
+import android.media.Image;
+import android.media.ImageReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 截屏得到的硬件位图不能直接读像素。这里把位图中的一块矩形用 HardwareRenderer 绘制到 CPU 可读的
+ * ImageReader，再从 Image 的像素平面按需读取。读回目标按矩形尺寸创建一次，尺寸不变时每帧复用，
+ * 不必像 Bitmap.copy 那样每帧分配一张整屏的软件位图。
+ * 需要 Android 10（API 29）。非线程安全，read 与 getPixels、release 必须在同一线程调用。
+ */
+final class HardwareReadback {
+    private final RenderNode node = new RenderNode("ScreenProbe");
+    private HardwareRenderer renderer;
+    private ImageReader reader;
+    private int width;
+    private int height;
+
+    // 最近一次 read 得到的帧，release 前有效
+    private Image image;
+    private ByteBuffer pixels;
+    private int rowStride;
+
+    /**
+     * 把 bitmap 中左上角为 (left, top)、尺寸为 width × height 的区域读回，之后可用 getPixels 读取。
+     * 渲染或取帧失败时返回 false
+     */
+    boolean read(Bitmap bitmap, int left, int top, int width, int height) {
+        release();
+        if (width <= 0 || height <= 0) return false;
+        ensureTarget(width, height);
+
+        RecordingCanvas canvas = node.beginRecording();
+        try {
+            canvas.drawBitmap(bitmap, -left, -top, null);
+        } finally {
+            node.endRecording();
+        }
+        // 等待帧送达 ImageReader 后再取
+        int result = renderer.createRenderRequest().setWaitForPresent(true).syncAndDraw();
+        if (result != HardwareRenderer.SYNC_OK) return false;
+        image = reader.acquireLatestImage();
+        if (image == null) return false;
+
+        Image.Plane plane = image.getPlanes()[0];
+        pixels = plane.getBuffer();
+        // RGBA_8888 按字节依次为 R、G、B、A，小端读取后只需交换 R 与 B
+        pixels.order(ByteOrder.LITTLE_ENDIAN);
+        rowStride = plane.getRowStride();
+        return true;
+    }
+
+    /**
+     * 与 Bitmap.getPixels 相同的参数，坐标相对 read 的区域左上角，输出 ARGB
+     */
+    void getPixels(int[] out, int offset, int stride, int x, int y, int width, int height) {
+        for (int row = 0; row < height; row++) {
+            int source = (y + row) * rowStride + x * 4;
+            int target = offset + row * stride;
+            for (int col = 0; col < width; col++) {
+                int rgba = pixels.getInt(source + col * 4);
+                out[target + col] = (rgba & 0xFF00FF00) | ((rgba & 0xFF) << 16) | ((rgba >> 16) & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * 归还最近一次读取的帧，ImageReader 只有一个缓冲区，下次 read 前必须调用
+     */
+    void release() {
+        if (image != null) {
+            image.close();
+            image = null;
+            pixels = null;
+        }
+    }
+
+    void close() {
+        release();
+        if (renderer != null) {
+            renderer.destroy();
+            renderer = null;
+        }
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+        node.discardDisplayList();
+        width = 0;
+        height = 0;
+    }
+
+    private void ensureTarget(int width, int height) {
+        if (reader != null && this.width == width && this.height == height) return;
+        close();
+        reader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, 1,
+                HardwareBuffer.USAGE_CPU_READ_OFTEN | HardwareBuffer.USAGE_GPU_COLOR_OUTPUT);
+        renderer = new HardwareRenderer();
+        renderer.setSurface(reader.getSurface());
+        renderer.setContentRoot(node);
+        node.setPosition(0, 0, width, height);
+        this.width = width;
+        this.height = height;
+    }
+}
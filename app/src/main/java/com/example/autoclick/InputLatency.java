@@ -0,0 +1,160 @@
+package com.example.autoclick;
+
+import android.content.Context;
+import com.example.autoclick.engine.ClickLog;
+import com.example.autoclick.engine.LeadEstimator;
+import com.example.autoclick.engine.TimeBase;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * 输入延迟自校准：学习派发手势到目标应用收到触摸之间的提前量，任务据此提前派发，让按下落在目标毫秒上。
+ * 样本有两路，都扣除按压时长：
+ * 目标窗口的点击事件（TYPE_VIEW_CLICKED，在抬起时产生）相对派发时刻的延迟，最接近应用实际收到触摸；
+ * 手势完成回调相对派发时刻的延迟，目标应用不报告点击事件时使用。点击事件样本足够时优先。
+ * 样本保存在文件中，进程重启后继续累积；界面进程在布置任务前读取同一文件显示估计值。
+ */
+final class InputLatency {
+    private static final String FILE_NAME = "input_latency.bin";
+    // 超出此范围的样本视为配错的事件，直接丢弃；也是补偿量的上限
+    static final long MAX_LEAD_NANOS = 200_000_000L;
+
+    private static final LeadEstimator eventEstimator = new LeadEstimator();
+    private static final LeadEstimator callbackEstimator = new LeadEstimator();
+    private static boolean loaded;
+
+    // 最近一次单点派发，等待目标窗口的点击事件配对，0 表示没有待配对的派发
+    private static volatile long pendingDispatchNanos;
+    private static volatile long pendingTapNanos;
+
+    private InputLatency() {
+    }
+
+    /**
+     * 单点手势派发成功，在点击线程调用
+     */
+    static void onTapDispatched(long dispatchNanos, long tapMs) {
+        pendingTapNanos = tapMs * TimeBase.NANOS_PER_MILLI;
+        pendingDispatchNanos = dispatchNanos;
+    }
+
+    /**
+     * 目标窗口报告了点击，与最近一次派发配对，在主线程调用
+     *
+     * @return 配对成功且样本有效时返回 true
+     */
+    static boolean onClickEvent(long eventNanos) {
+        long dispatchNanos = pendingDispatchNanos;
+        if (dispatchNanos == 0) return false;
+        pendingDispatchNanos = 0;
+        return addSample(eventEstimator, eventNanos - dispatchNanos - pendingTapNanos);
+    }
+
+    /**
+     * 单点或多指点击手势完成，latencyNanos 为派发到完成回调的耗时
+     */
+    static void onTapCompleted(long latencyNanos, long tapMs) {
+        addSample(callbackEstimator, latencyNanos - tapMs * TimeBase.NANOS_PER_MILLI);
+    }
+
+    private static boolean addSample(LeadEstimator estimator, long sampleNanos) {
+        if (sampleNanos < 0 || sampleNanos > MAX_LEAD_NANOS) return false;
+        estimator.add(sampleNanos);
+        return true;
+    }
+
+    /**
+     * 当前应提前的时间（纳秒），样本不足时为 0
+     */
+    static long leadNanos() {
+        return lead(eventEstimator, callbackEstimator);
+    }
+
+    private static long lead(LeadEstimator events, LeadEstimator callbacks) {
+        if (events.isReady()) return Math.min(events.median(), MAX_LEAD_NANOS);
+        if (callbacks.isReady()) return Math.min(callbacks.median(), MAX_LEAD_NANOS);
+        return 0;
+    }
+
+    static String summary() {
+        return summary(eventEstimator, callbackEstimator);
+    }
+
+    private static String summary(LeadEstimator events, LeadEstimator callbacks) {
+        LeadEstimator used = events.isReady() ? events : callbacks.isReady() ? callbacks : null;
+        if (used == null) {
+            return "样本不足 (点击事件 " + events.size() + ", 完成回调 " + callbacks.size()
+                    + ", 需要 " + LeadEstimator.MIN_SAMPLES + "), 不补偿";
+        }
+        return String.format(Locale.getDefault(), "提前 %.1fms ± %.1fms (%s, 样本 %d)",
+                used.median() / 1e6, used.confidenceNanos() / 1e6,
+                used == events ? "点击事件" : "完成回调", used.size());
+    }
+
+    /**
+     * 进程内首次使用前读取保存的样本，已有样本时不覆盖
+     */
+    static synchronized void load(Context context) {
+        if (loaded) return;
+        loaded = true;
+        if (eventEstimator.total() > 0 || callbackEstimator.total() > 0) return;
+        try {
+            readFile(context, eventEstimator, callbackEstimator);
+        } catch (IOException e) {
+            ClickLog.text(ClickLog.WARN, "读取输入延迟样本失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 保存当前样本，先写临时文件再替换
+     */
+    static synchronized void save(Context context) {
+        byte[] events = eventEstimator.toBytes();
+        byte[] callbacks = callbackEstimator.toBytes();
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        File temp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(events);
+            out.write(callbacks);
+            out.getFD().sync();
+        } catch (IOException e) {
+            ClickLog.text(ClickLog.WARN, "保存输入延迟样本失败: " + e.getMessage());
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            ClickLog.text(ClickLog.WARN, "保存输入延迟样本失败: 无法替换 " + file);
+        }
+    }
+
+    /**
+     * 从保存的文件读取估计值描述，不影响本进程正在使用的样本；供界面进程在布置前显示
+     */
+    static String readSummary(Context context) {
+        LeadEstimator events = new LeadEstimator();
+        LeadEstimator callbacks = new LeadEstimator();
+        try {
+            readFile(context, events, callbacks);
+        } catch (IOException e) {
+            // 没有保存过样本
+        }
+        return summary(events, callbacks);
+    }
+
+    private static void readFile(Context context, LeadEstimator events, LeadEstimator callbacks)
+            throws IOException {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) return;
+        byte[] bytes;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        events.read(in);
+        callbacks.read(in);
+    }
+}
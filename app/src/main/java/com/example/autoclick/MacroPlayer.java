@@ -0,0 +1,206 @@
+package com.example.autoclick;
+
+import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.GestureDescription;
+import android.os.Handler;
+import android.os.SystemClock;
+import com.example.autoclick.engine.ClickLog;
+import com.example.autoclick.engine.LatencyHistogram;
+import com.example.autoclick.engine.MacroBatcher;
+import com.example.autoclick.engine.MacroReader;
+import com.example.autoclick.engine.StrokeBatch;
+import com.example.autoclick.engine.TimeBase;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 触摸宏回放：把录制文件映射到内存，在播放头前方按需解码，每次只解码并构建下一个手势，
+ * 堆上只保留当前一批的笔画和下一个手势，占用与宏的长短无关。
+ * 各批按相对第一批的录制时刻派发，同一批内各笔画的时刻由系统按毫秒排布；批与批之间只在
+ * 所有手指都抬起的空档切开，由点击线程按绝对时刻派发，且不早于上一批结束，以免新手势取消仍在进行的手势。
+ * 首批在打开时就已构建好，可以由高精度定时线程派发；其余方法只能在点击线程调用。
+ */
+final class MacroPlayer {
+    private static final int LOG_BATCH = ClickLog.event("回放第 {} 批, 迟到 {}us");
+
+    private final Handler handler;
+    private final LatencyHistogram scheduleErrorHistogram;
+    private final Runnable onFinished;
+    private final File file;
+    private final MacroBatcher batcher;
+    private final StrokeBatch batch = new StrokeBatch();
+    private final long firstMs;
+
+    // 已解码、等待派发的下一批，没有时为 null
+    private GestureDescription pending;
+    private long pendingOffsetMs;     // 相对第一批的起点
+    private long pendingDurationMs;
+    private long lastDurationMs;
+
+    private long startNanos;
+    private int dispatched;
+    private long gestureEndNanos;
+    private int delivered;
+    private int cancelled;
+    private int failed;
+    // 解码下一批（含构建手势）的耗时
+    private final LatencyHistogram decodeHistogram = new LatencyHistogram();
+
+    private final AccessibilityService.GestureResultCallback gestureCallback =
+            AutoClickService.newGestureCallback(new AutoClickService.GestureListener() {
+                @Override
+                public void onGestureCompleted() {
+                    delivered++;
+                }
+
+                @Override
+                public void onGestureCancelled() {
+                    cancelled++;
+                }
+            });
+
+    private final Runnable batchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dispatchNext(SystemClock.elapsedRealtimeNanos());
+            scheduleNext();
+        }
+    };
+
+    private MacroPlayer(Handler handler, LatencyHistogram scheduleErrorHistogram, Runnable onFinished,
+                        File file, MacroBatcher batcher) throws IOException {
+        this.handler = handler;
+        this.scheduleErrorHistogram = scheduleErrorHistogram;
+        this.onFinished = onFinished;
+        this.file = file;
+        this.batcher = batcher;
+        if (!batcher.next(batch)) {
+            throw new IOException("触摸宏中没有笔画: " + file);
+        }
+        firstMs = batch.startMs();
+        prepare();
+    }
+
+    /**
+     * 映射录制文件，按系统的笔画数和时长上限切批，预先构建第一个手势
+     *
+     * @throws IOException 文件无法读取、格式错误或没有任何笔画
+     */
+    static MacroPlayer open(File file, Handler handler, LatencyHistogram scheduleErrorHistogram,
+                            Runnable onFinished) throws IOException {
+        MappedByteBuffer mapped;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // 关闭通道后映射仍然有效，由 GC 回收
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        MacroBatcher batcher = new MacroBatcher(new MacroReader(mapped),
+                AutoClickService.getMaxStrokeCount(), AutoClickService.getMaxGestureDurationMs());
+        return new MacroPlayer(handler, scheduleErrorHistogram, onFinished, file, batcher);
+    }
+
+    /**
+     * 把 batch 中已解码的一批构建成待派发的手势
+     */
+    private void prepare() {
+        pending = AutoClickService.buildGesture(batch);
+        pendingOffsetMs = batch.startMs() - firstMs;
+        pendingDurationMs = batch.durationMs();
+    }
+
+    /**
+     * 解码下一批，宏已结束或读取出错时 pending 为 null
+     */
+    private void decodeNext() {
+        long start = SystemClock.elapsedRealtimeNanos();
+        try {
+            if (batcher.next(batch)) {
+                prepare();
+            }
+        } catch (IOException e) {
+            ClickLog.text(ClickLog.ERROR, "触摸宏读取失败, 停止回放: " + e.getMessage());
+        }
+        decodeHistogram.record(SystemClock.elapsedRealtimeNanos() - start);
+    }
+
+    /**
+     * 设定第一批的派发时刻（elapsedRealtimeNanos 时基），在回放开始前调用
+     */
+    void reset(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * 派发已准备好的下一批；首批可在高精度定时线程调用
+     */
+    void dispatchNext(long now) {
+        GestureDescription gesture = pending;
+        if (gesture == null) return;
+        pending = null;
+        long lateNanos = now - deadlineNanos(pendingOffsetMs);
+        scheduleErrorHistogram.record(lateNanos);
+        ClickLog.d(LOG_BATCH, dispatched, lateNanos / 1000);
+        dispatched++;
+        lastDurationMs = pendingDurationMs;
+        if (AutoClickService.dispatch(gesture, gestureCallback)) {
+            gestureEndNanos = now + pendingDurationMs * TimeBase.NANOS_PER_MILLI;
+        } else {
+            failed++;
+        }
+    }
+
+    /**
+     * 解码下一批并按时刻安排派发；宏已放完时回调 onFinished。
+     * 下一批的起点不早于上一批结束，解码在上一批进行期间完成。
+     */
+    void scheduleNext() {
+        if (pending == null) {
+            decodeNext();
+        }
+        if (pending == null) {
+            onFinished.run();
+            return;
+        }
+        long deadlineNanos = Math.max(deadlineNanos(pendingOffsetMs), gestureEndNanos);
+        long delayMs = TimeBase.delayMillisCeil(deadlineNanos, SystemClock.elapsedRealtimeNanos());
+        if (delayMs <= 0) {
+            handler.post(batchRunnable);
+        } else {
+            handler.postAtTime(batchRunnable, SystemClock.uptimeMillis() + delayMs);
+        }
+    }
+
+    void stop() {
+        handler.removeCallbacks(batchRunnable);
+        pending = null;
+    }
+
+    private long deadlineNanos(long offsetMs) {
+        return startNanos + offsetMs * TimeBase.NANOS_PER_MILLI;
+    }
+
+    long fileSize() {
+        return file.length();
+    }
+
+    long lastDurationMs() {
+        return lastDurationMs;
+    }
+
+    String summary() {
+        return dispatched + " 批, 送达 " + delivered + " / 取消 " + cancelled + " / 派发失败 " + failed
+                + (batcher.getTruncated() > 0 ? ", 截掉 " + batcher.getTruncated() + " 处" : "")
+                + ", 解码 " + decodeHistogram.summary();
+    }
+
+    int getDelivered() {
+        return delivered;
+    }
+
+    int getCancelled() {
+        return cancelled;
+    }
+}
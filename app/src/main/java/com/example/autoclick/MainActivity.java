@@ -16,6 +16,9 @@ import android.text.TextWatcher;
 import android.view.View;
 import android.widget.*;
 import androidx.appcompat.app.AppCompatActivity;
+import com.example.autoclick.engine.ClickLog;
+import com.example.autoclick.engine.ClickScript;
+import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
@@ -25,8 +28,10 @@ import java.util.Random;
 public class MainActivity extends AppCompatActivity {
     private EditText etHour, etMinute, etSecond, etMillisecond;
     private EditText etClickCount, etClickInterval, etRandomRange;
+    private EditText etScript;
     private TextView tvCoordinates, tvStatus;
-    private Button btnGetCoordinates, btnScheduleClick, btnOpenSettings, btnStopClick, btnClearMarker;
+    private Button btnGetCoordinates, btnScheduleClick, btnOpenSettings, btnStopClick, btnClearMarker,
+            btnRecordMacro;
     private LinearLayout layoutInterval;
 
     private int clickX = 0, clickY = 0;
@@ -37,11 +42,15 @@ public class MainActivity extends AppCompatActivity {
     private double clickDurationSeconds = 5.0;  // 改为持续时间（秒）
     private int baseInterval = 200;
     private int randomRange = 100;
+    private String scriptText;  // 多步点击脚本，为空时使用单点持续点击
+    private String macroPath;   // 录制的触摸宏文件，设置后到点回放手势代替点击
     private Random random = new Random();
 
     // Handler 用于定时任务
     private Handler mainHandler;
     private Runnable scheduleRunnable;
+    // 把调试日志开关同步到引擎进程
+    private final EngineChannel.Client engineChannel = new EngineChannel.Client();
 
     // 广播接收器，用于接收坐标
     private BroadcastReceiver coordinateReceiver = new BroadcastReceiver() {
@@ -50,6 +59,7 @@ public class MainActivity extends AppCompatActivity {
             if ("coordinate_captured".equals(intent.getAction())) {
                 clickX = intent.getIntExtra("x", 0);
                 clickY = intent.getIntExtra("y", 0);
+                macroPath = null;
                 tvCoordinates.setText("坐标: (" + clickX + ", " + clickY + ")");
                 updateStatus("坐标已获取");
 
@@ -61,6 +71,19 @@ public class MainActivity extends AppCompatActivity {
                 markerIntent.putExtra("clickX", clickX);
                 markerIntent.putExtra("clickY", clickY);
                 startService(markerIntent);
+            } else if ("macro_recorded".equals(intent.getAction())) {
+                stopService(new Intent(MainActivity.this, CoordinateCaptureService.class));
+                String path = intent.getStringExtra("path");
+                if (path == null) {
+                    updateStatus("没有录制到手势");
+                    return;
+                }
+                macroPath = path;
+                tvCoordinates.setText(String.format(Locale.getDefault(), "手势: %d 个事件, %.1fs, %d 字节",
+                        intent.getLongExtra("events", 0), intent.getLongExtra("durationMs", 0) / 1000.0,
+                        intent.getLongExtra("bytes", 0)));
+                String spread = intent.getStringExtra("downSpreadSummary");
+                updateStatus(spread == null ? "手势已录制，到点将回放" : "手势已录制，到点将回放\n多指按下间隔 " + spread);
             }
         }
     };
@@ -69,8 +92,47 @@ public class MainActivity extends AppCompatActivity {
     private BroadcastReceiver taskCompletedReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            if ("com.example.autoclick.TASK_COMPLETED".equals(intent.getAction())) {
-                updateStatus("所有点击已完成");
+            if ("com.example.autoclick.TASK_COMPLETED".equals(intent.getAction())
+                    && intent.getBooleanExtra("fromUi", true)) {
+                String status = "所有点击已完成";
+                long errorMicros = intent.getLongExtra("firstClickErrorMicros", Long.MIN_VALUE);
+                if (errorMicros != Long.MIN_VALUE) {
+                    status += String.format(Locale.getDefault(), "，首次点击误差 %.3fms", errorMicros / 1000.0);
+                }
+                status += "\n送达 " + intent.getIntExtra("delivered", 0)
+                        + " / 取消 " + intent.getIntExtra("cancelled", 0)
+                        + " / 重试 " + intent.getIntExtra("retried", 0)
+                        + " / 丢弃 " + intent.getIntExtra("dropped", 0);
+                String wakeSummary = intent.getStringExtra("wakeSummary");
+                if (wakeSummary != null) {
+                    status += "\n唤醒 " + wakeSummary;
+                }
+                String scheduleErrorSummary = intent.getStringExtra("scheduleErrorSummary");
+                if (scheduleErrorSummary != null) {
+                    status += "\n计划误差 " + scheduleErrorSummary;
+                }
+                String completionLatencySummary = intent.getStringExtra("completionLatencySummary");
+                if (completionLatencySummary != null) {
+                    status += "\n完成延迟 " + completionLatencySummary;
+                }
+                String mainLagSummary = intent.getStringExtra("mainLagSummary");
+                if (mainLagSummary != null) {
+                    status += "\n主线程延迟 " + mainLagSummary;
+                }
+                long leadMicros = intent.getLongExtra("leadMicros", 0);
+                if (leadMicros > 0) {
+                    status += String.format(Locale.getDefault(), "\n已提前 %.1fms, 当前估计 %s",
+                            leadMicros / 1000.0, intent.getStringExtra("inputLatencySummary"));
+                }
+                String gcSummary = intent.getStringExtra("gcSummary");
+                if (gcSummary != null) {
+                    status += "\n点击期间 " + gcSummary + " (" + intent.getStringExtra("engineProcess") + ")";
+                }
+                long costMicros = intent.getLongExtra("firstClickCostMicros", -1);
+                if (costMicros >= 0) {
+                    status += "\n首次点击耗时 " + costMicros + "us, 稳态 " + intent.getStringExtra("clickCostSummary");
+                }
+                updateStatus(status);
                 btnStopClick.setVisibility(View.GONE);
                 btnScheduleClick.setEnabled(true);
                 btnGetCoordinates.setEnabled(true);
@@ -86,6 +148,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        ClickLog.start(new File(getFilesDir(), "logs"));
         setContentView(R.layout.activity_main);
 
         initViews();
@@ -93,6 +156,7 @@ public class MainActivity extends AppCompatActivity {
         registerReceivers();
         setupListeners();
         checkServiceStatus();
+        engineChannel.bind(this);
 
         // 初始化默认值
         setDefaultValues();
@@ -103,6 +167,7 @@ public class MainActivity extends AppCompatActivity {
         super.onDestroy();
         unregisterReceivers();
         stopAllOperations();
+        engineChannel.unbind(this);
     }
 
     @Override
@@ -123,6 +188,7 @@ public class MainActivity extends AppCompatActivity {
         etClickInterval = findViewById(R.id.et_click_interval);
         etRandomRange = findViewById(R.id.et_random_range);
         layoutInterval = findViewById(R.id.layout_interval);
+        etScript = findViewById(R.id.et_script);
 
         // 状态显示
         tvCoordinates = findViewById(R.id.tv_coordinates);
@@ -134,6 +200,7 @@ public class MainActivity extends AppCompatActivity {
         btnOpenSettings = findViewById(R.id.btn_open_settings);
         btnStopClick = findViewById(R.id.btn_stop_click);
         btnClearMarker = findViewById(R.id.btn_clear_marker);
+        btnRecordMacro = findViewById(R.id.btn_record_macro);
     }
 
     private void initHandlers() {
@@ -142,14 +209,20 @@ public class MainActivity extends AppCompatActivity {
 
     private void registerReceivers() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            registerReceiver(coordinateReceiver, new IntentFilter("coordinate_captured"), Context.RECEIVER_NOT_EXPORTED);
+            registerReceiver(coordinateReceiver, captureFilter(), Context.RECEIVER_NOT_EXPORTED);
             registerReceiver(taskCompletedReceiver, new IntentFilter("com.example.autoclick.TASK_COMPLETED"), Context.RECEIVER_NOT_EXPORTED);
         } else {
-            registerReceiver(coordinateReceiver, new IntentFilter("coordinate_captured"));
+            registerReceiver(coordinateReceiver, captureFilter());
             registerReceiver(taskCompletedReceiver, new IntentFilter("com.example.autoclick.TASK_COMPLETED"));
         }
     }
 
+    private static IntentFilter captureFilter() {
+        IntentFilter filter = new IntentFilter("coordinate_captured");
+        filter.addAction("macro_recorded");
+        return filter;
+    }
+
     private void unregisterReceivers() {
         try {
             if (coordinateReceiver != null) {
@@ -159,7 +232,7 @@ public class MainActivity extends AppCompatActivity {
                 unregisterReceiver(taskCompletedReceiver);
             }
         } catch (Exception e) {
-            System.out.println("注销广播接收器失败: " + e.getMessage());
+            ClickLog.text(ClickLog.WARN, "注销广播接收器失败: " + e.getMessage());
         }
     }
 
@@ -169,6 +242,18 @@ public class MainActivity extends AppCompatActivity {
         btnOpenSettings.setOnClickListener(this::onOpenSettingsClick);
         btnStopClick.setOnClickListener(this::onStopClickClick);
         btnClearMarker.setOnClickListener(this::onClearMarkerClick);
+        btnRecordMacro.setOnClickListener(this::onRecordMacroClick);
+
+        // 长按状态栏切换调试日志，无需重新编译
+        tvStatus.setOnLongClickListener(v -> {
+            boolean debug = !ClickLog.isDebugEnabled();
+            int level = debug ? ClickLog.DEBUG : ClickLog.INFO;
+            ClickLog.setLevel(level);
+            // 引擎进程单独运行时也要切换，引擎之后才启动的话连接建立时补发
+            engineChannel.sendLogLevel(level);
+            showToast(debug ? "已开启调试日志" : "已关闭调试日志");
+            return true;
+        });
 
         // 持续时间变化监听
         etClickCount.addTextChangedListener(new TextWatcher() {
@@ -213,7 +298,9 @@ public class MainActivity extends AppCompatActivity {
             double duration = Double.parseDouble(durationText);
             // 持续时间大于0就显示间隔设置
             layoutInterval.setVisibility(duration > 0 ? View.VISIBLE : View.GONE);
-            System.out.println("持续时间: " + duration + "秒, 间隔设置可见性: " + (duration > 0));
+            if (ClickLog.isDebugEnabled()) {
+                ClickLog.text(ClickLog.DEBUG, "持续时间: " + duration + "秒, 间隔设置可见性: " + (duration > 0));
+            }
         } catch (NumberFormatException e) {
             layoutInterval.setVisibility(View.GONE);
         }
@@ -230,7 +317,7 @@ public class MainActivity extends AppCompatActivity {
             updateStatus("需要悬浮窗权限");
             btnOpenSettings.setVisibility(View.GONE);
         } else {
-            updateStatus("服务已就绪");
+            updateStatus("服务已就绪\n输入延迟补偿: " + InputLatency.readSummary(this));
             btnOpenSettings.setVisibility(View.GONE);
         }
     }
@@ -299,6 +386,30 @@ public class MainActivity extends AppCompatActivity {
         stopService(new Intent(this, CountdownOverlayService.class));
     }
 
+    private void onRecordMacroClick(View view) {
+        if (isTaskRunning) {
+            showToast("任务进行中，无法录制手势");
+            return;
+        }
+
+        if (!checkOverlayPermission()) {
+            requestOverlayPermission();
+            return;
+        }
+
+        stopService(new Intent(this, ClickMarkerService.class));
+        moveTaskToBack(true);
+
+        File file = new File(new File(getFilesDir(), "macros"), "macro-" + System.currentTimeMillis() + ".acm");
+        mainHandler.postDelayed(() -> {
+            Intent recordIntent = new Intent(this, CoordinateCaptureService.class);
+            recordIntent.putExtra("macroFile", file.getAbsolutePath());
+            startService(recordIntent);
+        }, 500);
+
+        updateStatus("请在屏幕上操作，结束后点击右上角按钮");
+    }
+
     private void onClearMarkerClick(View view) {
         if (isTaskRunning) {
             showToast("任务进行中，无法清除标记");
@@ -311,6 +422,7 @@ public class MainActivity extends AppCompatActivity {
         stopService(new Intent(this, CountdownOverlayService.class));
         clickX = 0;
         clickY = 0;
+        macroPath = null;
         tvCoordinates.setText("坐标: 未设置");
         updateStatus("已清除所有标记");
     }
@@ -343,7 +455,19 @@ public class MainActivity extends AppCompatActivity {
                 }
             }
 
-            if (clickX == 0 && clickY == 0) {
+            String script = etScript.getText().toString().trim();
+            if (!script.isEmpty()) {
+                // 脚本自带坐标，提前编译一遍以便立即提示格式错误
+                try {
+                    if (ClickScript.parse(script).compile().size() == 0) {
+                        showToast("脚本中没有点击步骤");
+                        return false;
+                    }
+                } catch (IllegalArgumentException e) {
+                    showToast(e.getMessage());
+                    return false;
+                }
+            } else if (clickX == 0 && clickY == 0 && macroPath == null) {
                 showToast("请先获取坐标");
                 return false;
             }
@@ -364,6 +488,8 @@ public class MainActivity extends AppCompatActivity {
             baseInterval = 300;
             randomRange = 0;
         }
+        String script = etScript.getText().toString().trim();
+        scriptText = script.isEmpty() ? null : script;
     }
 
     private void calculateTargetTime() {
@@ -383,8 +509,13 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void startScheduledClick() {
-        // 停止之前的任务
-        stopAllOperations();
+        // 停止之前的悬浮窗，保活服务中的其他任务不受影响，上一个界面任务会被新任务替换
+        if (scheduleRunnable != null) {
+            mainHandler.removeCallbacks(scheduleRunnable);
+            scheduleRunnable = null;
+        }
+        stopService(new Intent(this, CountdownOverlayService.class));
+        stopService(new Intent(this, CoordinateCaptureService.class));
         
         isTaskRunning = true;
         btnGetCoordinates.setEnabled(false);
@@ -405,15 +536,23 @@ public class MainActivity extends AppCompatActivity {
         // 启动保活服务
         Intent keepAliveIntent = new Intent(this, ScheduleKeepAliveService.class);
         keepAliveIntent.putExtra("targetTime", targetTimeMillis);
+        keepAliveIntent.putExtra("fromUi", true);
         keepAliveIntent.putExtra("clickX", clickX);
         keepAliveIntent.putExtra("clickY", clickY);
         keepAliveIntent.putExtra("clickDurationSeconds", clickDurationSeconds);  // 改为持续时间
         keepAliveIntent.putExtra("baseInterval", baseInterval);
         keepAliveIntent.putExtra("randomRange", randomRange);
+        if (scriptText != null) {
+            keepAliveIntent.putExtra("script", scriptText);
+        }
+        if (macroPath != null) {
+            keepAliveIntent.putExtra("macro", macroPath);
+        }
         startService(keepAliveIntent);
 
         SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss.SSS", Locale.getDefault());
-        updateStatus("已安排 " + sdf.format(new Date(targetTimeMillis)) + " 执行点击");
+        updateStatus("已安排 " + sdf.format(new Date(targetTimeMillis)) + " 执行点击\n输入延迟补偿: "
+                + InputLatency.readSummary(this));
         
         btnStopClick.setVisibility(View.VISIBLE);
         btnScheduleClick.setEnabled(false);
@@ -421,7 +560,7 @@ public class MainActivity extends AppCompatActivity {
         // 最小化应用
         moveTaskToBack(true);
 
-        System.out.println("安排点击任务，延迟: " + delay + "ms，目标时间: " + targetTimeMillis);
+        ClickLog.text(ClickLog.INFO, "安排点击任务，延迟: " + delay + "ms，目标时间: " + targetTimeMillis);
     }
 
     private void stopAllOperations() {
@@ -435,7 +574,7 @@ public class MainActivity extends AppCompatActivity {
         stopService(new Intent(this, CoordinateCaptureService.class));
         stopService(new Intent(this, ScheduleKeepAliveService.class));
 
-        System.out.println("所有操作已停止");
+        ClickLog.text(ClickLog.INFO, "所有操作已停止");
     }
 
     private boolean checkAccessibilityService() {
@@ -472,7 +611,7 @@ public class MainActivity extends AppCompatActivity {
     private void updateStatus(String status) {
         runOnUiThread(() -> {
             tvStatus.setText("状态: " + status);
-            System.out.println("状态更新: " + status);
+            ClickLog.text(ClickLog.INFO, "状态更新: " + status);
         });
     }
 
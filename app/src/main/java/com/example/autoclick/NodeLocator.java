@@ -0,0 +1,125 @@
+package com.example.autoclick;
+
+import android.accessibilityservice.AccessibilityService;
+import android.graphics.Rect;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import com.example.autoclick.engine.ClickLog;
+import com.example.autoclick.engine.CoordinateCell;
+import com.example.autoclick.engine.NodeIndex;
+import com.example.autoclick.engine.NodeTarget;
+import java.util.ArrayList;
+
+/**
+ * 活动窗口节点树的缓存定位器：第一次查找时遍历整棵树建立索引，之后窗口切换才整体重建，
+ * 内容变化只重新遍历变化的子树，且推迟到下一次查找时进行。
+ * 索引持有的节点不回收，由 GC 处理。事件在主线程送达，查找在点击线程进行，各方法以本对象为锁串行执行。
+ */
+final class NodeLocator {
+    private static final int LOG_REFRESH = ClickLog.event("节点索引刷新子树 {} 个, 节点 {}");
+    private static final int LOG_REBUILD = ClickLog.event("节点索引重建, 遍历节点 {}, 索引节点 {}");
+
+    private final NodeIndex<AccessibilityNodeInfo> index = new NodeIndex<>();
+    private boolean built;
+    private final Rect bounds = new Rect();
+    private final ArrayList<AccessibilityNodeInfo> stack = new ArrayList<>();
+    private final ArrayList<AccessibilityNodeInfo> parents = new ArrayList<>();
+
+    /**
+     * 目标当前的点击点，找不到可见的匹配节点时返回 CoordinateCell.UNSET
+     */
+    synchronized long locate(AccessibilityService service, NodeTarget target) {
+        if (!built) {
+            rebuild(service);
+        } else if (index.dirtyCount() > 0) {
+            refreshDirty();
+        }
+        return index.find(target);
+    }
+
+    /**
+     * 窗口切换整体失效；内容变化只失效来源节点的子树，来源不在索引中时整体失效
+     */
+    synchronized void onEvent(AccessibilityEvent event) {
+        if (!built) return;
+        int type = event.getEventType();
+        if (type == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            invalidateAll();
+        } else if (type == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
+            AccessibilityNodeInfo source = event.getSource();
+            if (source == null || !index.invalidate(source)) {
+                invalidateAll();
+            }
+        }
+    }
+
+    synchronized void invalidateAll() {
+        built = false;
+        index.clear();
+    }
+
+    synchronized String summary() {
+        return "节点 " + index.size() + ", 累计遍历 " + index.getIndexedNodes()
+                + ", 累计失效 " + index.getInvalidatedNodes();
+    }
+
+    private void rebuild(AccessibilityService service) {
+        index.clear();
+        AccessibilityNodeInfo root = service.getRootInActiveWindow();
+        if (root == null) return;
+        long before = index.getIndexedNodes();
+        walk(null, root);
+        built = true;
+        ClickLog.d(LOG_REBUILD, index.getIndexedNodes() - before, index.size());
+    }
+
+    private void refreshDirty() {
+        long before = index.getIndexedNodes();
+        int count = index.dirtyCount();
+        for (int i = 0; i < count; i++) {
+            AccessibilityNodeInfo root = index.dirtyRootAt(i);
+            AccessibilityNodeInfo parent = index.dirtyParentAt(i);
+            // 祖先子树也失效时由祖先的遍历覆盖
+            if (index.contains(root)) continue;
+            if (parent != null && !index.contains(parent)) continue;
+            if (!root.refresh()) continue;
+            walk(parent, root);
+        }
+        index.clearDirty();
+        ClickLog.d(LOG_REFRESH, count, index.getIndexedNodes() - before);
+    }
+
+    /**
+     * 用显式栈遍历 node 的子树并加入索引，点击点取边界中心
+     */
+    private void walk(AccessibilityNodeInfo parent, AccessibilityNodeInfo node) {
+        stack.add(node);
+        parents.add(parent);
+        while (!stack.isEmpty()) {
+            int last = stack.size() - 1;
+            AccessibilityNodeInfo current = stack.remove(last);
+            AccessibilityNodeInfo currentParent = parents.remove(last);
+            if (index.contains(current)) continue;
+
+            long point = CoordinateCell.UNSET;
+            if (current.isVisibleToUser()) {
+                current.getBoundsInScreen(bounds);
+                if (!bounds.isEmpty()) {
+                    point = CoordinateCell.pack(bounds.centerX(), bounds.centerY());
+                }
+            }
+            CharSequence text = current.getText();
+            CharSequence desc = current.getContentDescription();
+            index.add(currentParent, current, current.getViewIdResourceName(),
+                    text == null ? null : text.toString(), desc == null ? null : desc.toString(), point);
+
+            for (int i = current.getChildCount() - 1; i >= 0; i--) {
+                AccessibilityNodeInfo child = current.getChild(i);
+                if (child != null) {
+                    stack.add(child);
+                    parents.add(current);
+                }
+            }
+        }
+    }
+}
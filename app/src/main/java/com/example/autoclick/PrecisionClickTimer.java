@@ -0,0 +1,104 @@
+package com.example.autoclick;
+
+import android.os.Process;
+import android.os.SystemClock;
+import com.example.autoclick.engine.TimeBase;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 高精度定时器：在独立线程上先粗粒度休眠，
+ * 最后几毫秒对 SystemClock.elapsedRealtimeNanos 自旋等待，到点立即执行动作。
+ * 每次触发都会记录实际触发时刻与目标时刻的误差。
+ */
+public class PrecisionClickTimer {
+    // 默认提前进入自旋的时间窗口
+    public static final long DEFAULT_SPIN_WINDOW_NANOS = 3_000_000L;
+    // 单次休眠上限，便于及时响应取消
+    private static final long MAX_PARK_NANOS = 200_000_000L;
+
+    public static final long NO_MEASUREMENT = Long.MIN_VALUE;
+
+    private final long spinWindowNanos;
+    private volatile Thread timerThread;
+    private volatile long lastFireErrorNanos = NO_MEASUREMENT;
+
+    public PrecisionClickTimer() {
+        this(DEFAULT_SPIN_WINDOW_NANOS);
+    }
+
+    public PrecisionClickTimer(long spinWindowNanos) {
+        this.spinWindowNanos = spinWindowNanos;
+    }
+
+    /**
+     * 将墙上时间（System.currentTimeMillis 时基）换算为 elapsedRealtimeNanos 时基
+     */
+    public static long toElapsedRealtimeNanos(long wallClockMillis) {
+        return TimeBase.wallClockToMonotonicNanos(wallClockMillis,
+                System.currentTimeMillis(), SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * 在 targetElapsedNanos 时刻执行 action，重复调用会取消上一次未触发的任务
+     */
+    public synchronized void arm(final long targetElapsedNanos, final Runnable action) {
+        cancel();
+        lastFireErrorNanos = NO_MEASUREMENT;
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                waitAndFire(targetElapsedNanos, action);
+            }
+        }, "PrecisionClickTimer");
+        timerThread = thread;
+        thread.start();
+    }
+
+    public synchronized void cancel() {
+        Thread thread = timerThread;
+        timerThread = null;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public boolean isArmed() {
+        return timerThread != null;
+    }
+
+    /**
+     * 最近一次触发的误差（实际 - 目标，纳秒），未触发时返回 NO_MEASUREMENT
+     */
+    public long getLastFireErrorNanos() {
+        return lastFireErrorNanos;
+    }
+
+    private void waitAndFire(long targetElapsedNanos, Runnable action) {
+        Thread self = Thread.currentThread();
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_DISPLAY);
+
+        // 粗粒度休眠，直到进入自旋窗口
+        while (true) {
+            if (timerThread != self) return;
+            long remaining = targetElapsedNanos - SystemClock.elapsedRealtimeNanos();
+            if (remaining <= spinWindowNanos) break;
+            LockSupport.parkNanos(Math.min(remaining - spinWindowNanos, MAX_PARK_NANOS));
+        }
+
+        // 自旋等待目标时刻
+        long now;
+        while ((now = SystemClock.elapsedRealtimeNanos()) < targetElapsedNanos) {
+            if (timerThread != self) return;
+        }
+
+        lastFireErrorNanos = now - targetElapsedNanos;
+        action.run();
+
+        synchronized (this) {
+            if (timerThread == self) {
+                timerThread = null;
+            }
+        }
+    }
+}
@@ -1,190 +1,661 @@
 package com.example.autoclick;
 
+import android.app.AlarmManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.Messenger;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
+import java.io.File;
+import java.io.IOException;
 import androidx.core.app.NotificationCompat;
+import com.example.autoclick.engine.ClickLog;
+import com.example.autoclick.engine.LatencyHistogram;
+import com.example.autoclick.engine.TaskJournal;
+import com.example.autoclick.engine.TaskSpec;
+import com.example.autoclick.engine.TimeBase;
+import com.example.autoclick.engine.TimerWheel;
+import java.util.LinkedHashMap;
 import java.util.Locale;
-import java.util.Random;
-
+import java.util.Map;
+
+/**
+ * 定时点击的调度服务。线程归属：定时轮、任务表和各任务的全部状态只在点击线程上访问，
+ * 点击线程以 THREAD_PRIORITY_URGENT_DISPLAY 运行，手势回调也投递到这里；
+ * 任务日志的写入（fsync、压缩）和输入延迟样本的保存交给低优先级的 IO 线程，不阻塞点击线程；
+ * 主线程只负责服务生命周期，把收到的指令转交给点击线程。无障碍服务中的触发条件、截屏探测和
+ * 节点定位器订阅仍属于主线程，由任务投递过去。
+ */
 public class ScheduleKeepAliveService extends Service {
     private static final String CHANNEL_ID = "ScheduleKeepAliveChannel";
     private static final int NOTIFICATION_ID = 2001;
 
+    public static final String ACTION_CANCEL_TASK = "com.example.autoclick.CANCEL_TASK";
+    public static final String ACTION_LIST_TASKS = "com.example.autoclick.LIST_TASKS";
+    public static final String ACTION_TASK_STATE = "com.example.autoclick.TASK_STATE";
+    public static final String ACTION_TASK_LIST = "com.example.autoclick.TASK_LIST";
+    public static final String ACTION_TASK_COMPLETED = "com.example.autoclick.TASK_COMPLETED";
+    private static final String ACTION_ALARM_WAKEUP = "com.example.autoclick.ALARM_WAKEUP";
+
+    // 定时轮在目标时刻前多久把任务交给高精度定时器
+    private static final long APPROACH_LEAD_MS = 100;
+    // 重启恢复任务的耗时预算，超出时记录警告
+    private static final long RESTORE_BUDGET_MS = 20;
+    // 分级唤醒：距下一个任务超过该时间时只留一个允许在 Doze 中触发的精确闹钟，
+    // 进入该时间窗口后持有部分唤醒锁，直到高精度定时器完成首次点击
+    private static final long ALARM_LEAD_MS = 5000;
+    // 唤醒锁超时余量，异常情况下也不会一直持有
+    private static final long WAKE_LOCK_SLACK_MS = 2000;
+
+    // 点击线程及其 Handler，调度和点击都在这里执行
+    private HandlerThread engineThread;
     private Handler handler;
-    private Runnable scheduleRunnable;
-    private long targetTime;
-    private int clickX, clickY; // 实时更新的坐标
-    private double clickDurationSeconds;  // 改为持续时间（秒）
-    private int baseInterval;
-    private int randomRange;
-    private Random random;
-    private long clickingStartTime;  // 点击开始时间
-    private long clickingEndTime;    // 点击结束时间
-
-    // 坐标更新接收器
-    private BroadcastReceiver coordinateReceiver = new BroadcastReceiver() {
+    private Handler mainHandler;
+    // 落盘线程：任务日志和输入延迟样本按投递顺序写入，点击线程只投递不等待
+    private HandlerThread ioThread;
+    private Handler ioHandler;
+    // 界面进程发来的实时状态，在点击线程上处理
+    private Messenger engineMessenger;
+    private int lastStartId;               // 最近一次 onStartCommand 的 startId，停止服务时只在没有更新的指令时生效
+    // 所有已布置的任务共用一个定时轮，点击线程上只保留一个唤醒消息
+    private TimerWheel timerWheel;
+    private long wheelWakeupTick = TimerWheel.NO_DEADLINE;
+    private final Map<Integer, ClickTask> tasks = new LinkedHashMap<>();
+    private int nextTaskId = 1;
+    // 已布置任务的持久化日志，进程被杀后重启时据此恢复；启动时在点击线程读取，之后只在 IO 线程写入
+    private TaskJournal journal;
+    private boolean restoring;
+
+    private AlarmManager alarmManager;
+    private PendingIntent alarmIntent;
+    private long alarmTriggerElapsed;      // 已设置的闹钟触发时刻（elapsedRealtime），0 表示没有
+    private long alarmFiredElapsed;        // 最近一次闹钟实际到达的时刻
+    private long alarmLateMs = -1;         // 最近一次闹钟的迟到时间
+    private PowerManager.WakeLock wakeLock;
+    private int approachingTasks;          // 已交给高精度定时器、尚未首次点击的任务数
+    // 从界面布置的任务，拖拽标记和倒计时悬浮窗属于它，同一时刻最多一个
+    private ClickTask overlayTask;
+    private boolean statsNotificationPosted;
+
+    private static final long STATS_NOTIFICATION_INTERVAL_MS = 1000;
+    // 主线程负载探测的心跳间隔，约一帧
+    private static final long MAIN_LAG_INTERVAL_MS = 16;
+
+    // 主线程负载：点击期间定时向主线程投递心跳，记录实际执行比预定晚多少，与任务的计划误差对照
+    private final LatencyHistogram mainLagHistogram = new LatencyHistogram();
+    private volatile boolean mainLagProbing;
+    private long mainLagDueNanos;          // 只在主线程访问（首次由投递建立先后关系）
+
+    private final Runnable mainLagRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long now = SystemClock.elapsedRealtimeNanos();
+            mainLagHistogram.record(now - mainLagDueNanos);
+            if (!mainLagProbing) return;
+            mainLagDueNanos = now + MAIN_LAG_INTERVAL_MS * TimeBase.NANOS_PER_MILLI;
+            mainHandler.postDelayed(this, MAIN_LAG_INTERVAL_MS);
+        }
+    };
+
+    // 点击期间定时把延迟统计刷新到前台通知
+    private final Runnable statsNotificationRunnable = new Runnable() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            if ("coordinate_updated".equals(intent.getAction())) {
-                clickX = intent.getIntExtra("x", clickX);
-                clickY = intent.getIntExtra("y", clickY);
-                
+        public void run() {
+            updateStatsNotification();
+            if (countTasks(ClickTask.State.RUNNING) > 0) {
+                handler.postDelayed(this, STATS_NOTIFICATION_INTERVAL_MS);
+            } else {
+                statsNotificationPosted = false;
+                mainLagProbing = false;
             }
         }
     };
 
+    // 推进定时轮，执行所有到期的任务，再安排下一次唤醒
+    private final Runnable wheelRunnable = new Runnable() {
+        @Override
+        public void run() {
+            wheelWakeupTick = TimerWheel.NO_DEADLINE;
+            timerWheel.advance(SystemClock.elapsedRealtime());
+            scheduleWheelWakeup();
+        }
+    };
+
     @Override
     public void onCreate() {
         super.onCreate();
+        ClickLog.start(EngineChannel.logDir(this));
         createNotificationChannel();
-        handler = new Handler(Looper.getMainLooper());
-        random = new Random();
-
-        // 注册坐标更新广播接收器
-        IntentFilter filter = new IntentFilter("coordinate_updated");
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            registerReceiver(coordinateReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
-        } else {
-            registerReceiver(coordinateReceiver, filter);
-        }
+        mainHandler = new Handler(Looper.getMainLooper());
+        engineThread = new HandlerThread("ClickEngine", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+        engineThread.start();
+        handler = new Handler(engineThread.getLooper());
+        engineMessenger = new Messenger(new Handler(engineThread.getLooper(), EngineChannel.engineCallback()));
+        ioThread = new HandlerThread("ClickEngineIO", Process.THREAD_PRIORITY_BACKGROUND);
+        ioThread.start();
+        ioHandler = new Handler(ioThread.getLooper());
+        ClickLog.text(ClickLog.INFO, "点击引擎进程: " + EngineChannel.processName() + ", pid " + Process.myPid());
+        AutoClickService.setGestureHandler(handler);
+        timerWheel = new TimerWheel(SystemClock.elapsedRealtime());
+        AutoClickService.getDispatchCallHistogram().reset();
+        alarmManager = getSystemService(AlarmManager.class);
+        PowerManager powerManager = getSystemService(PowerManager.class);
+        wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "AutoClick:approach");
+        wakeLock.setReferenceCounted(false);
+        journal = new TaskJournal(new File(getFilesDir(), "tasks.journal"));
+        InputLatency.load(this);
+        handler.post(() -> restoreTasks());
 
         
     }
 
     @Override
-    public int onStartCommand(Intent intent, int flags, int startId) {
-        if (intent != null) {
-            targetTime = intent.getLongExtra("targetTime", 0);
-            clickX = intent.getIntExtra("clickX", 0);
-            clickY = intent.getIntExtra("clickY", 0);
-            clickDurationSeconds = intent.getDoubleExtra("clickDurationSeconds", 5.0);  // 改为持续时间
-            baseInterval = intent.getIntExtra("baseInterval", 300);
-            randomRange = intent.getIntExtra("randomRange", 0);
-
-            
+    public int onStartCommand(final Intent intent, int flags, final int startId) {
+        // 任务状态归点击线程所有，主线程只转交指令
+        handler.post(() -> handleCommand(intent, startId));
+        return START_STICKY;
+    }
 
-            if (targetTime > 0) {
+    private void handleCommand(Intent intent, int startId) {
+        lastStartId = startId;
+        if (intent != null) {
+            String action = intent.getAction();
+            if (ACTION_CANCEL_TASK.equals(action)) {
+                cancelTask(intent.getIntExtra("taskId", 0), true);
+            } else if (ACTION_LIST_TASKS.equals(action)) {
+                broadcastTaskList();
+            } else if (ACTION_ALARM_WAKEUP.equals(action)) {
+                // 以前台服务方式启动，即使没有剩余任务也要先进入前台再停止
                 startForegroundService();
-                scheduleExecution();
+                onAlarmWakeup(intent.getLongExtra("triggerElapsed", 0));
+            } else if (intent.getLongExtra("targetTime", 0) > 0 || intent.hasExtra("trigger")) {
+                addTask(intent);
             }
         }
 
-        return START_STICKY;
+        stopIfIdle();
     }
 
-    private void startForegroundService() {
-        Intent notificationIntent = new Intent(this, MainActivity.class);
-        PendingIntent pendingIntent;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            pendingIntent = PendingIntent.getActivity(this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
-        } else {
-            pendingIntent = PendingIntent.getActivity(this, 0, notificationIntent, 0);
+    /**
+     * 进程被杀后重启：从任务日志恢复仍在未来的任务和仍在等待触发的任务，已过期的任务直接丢弃。
+     * 这是点击线程上的第一条消息，此时还没有已布置的任务，同步读取日志不会耽误点击
+     */
+    private void restoreTasks() {
+        long start = SystemClock.elapsedRealtimeNanos();
+        restoring = true;
+        Map<Integer, TaskSpec> stored;
+        try {
+            stored = journal.load();
+        } catch (IOException e) {
+            ClickLog.text(ClickLog.WARN, "读取任务日志失败: " + e.getMessage());
+            restoring = false;
+            return;
         }
 
-        long remaining = targetTime - System.currentTimeMillis();
-        String timeText = String.format(Locale.getDefault(), "剩余 %.1f 秒", remaining / 1000.0);
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        int expired = 0;
+        for (Map.Entry<Integer, TaskSpec> entry : stored.entrySet()) {
+            int id = entry.getKey();
+            nextTaskId = Math.max(nextTaskId, id + 1);
+            TaskSpec spec = entry.getValue();
+            if ((spec.targetTime > now || spec.trigger != null) && armTask(id, spec, false)) {
+                restored++;
+            } else {
+                expired++;
+                forgetTask(id, false);
+            }
+        }
+        restoring = false;
+        if (restored > 0) {
+            startForegroundService();
+            scheduleWheelWakeup();
+        }
 
-        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle("定时点击服务运行中")
-                .setContentText(timeText + " | 坐标:(" + clickX + "," + clickY + ")")
-                .setSmallIcon(android.R.drawable.ic_menu_recent_history)
-                .setContentIntent(pendingIntent)
-                .setOngoing(true)
-                .build();
+        long elapsedMs = (SystemClock.elapsedRealtimeNanos() - start) / TimeBase.NANOS_PER_MILLI;
+        if (restored + expired > 0) {
+            ClickLog.text(elapsedMs > RESTORE_BUDGET_MS ? ClickLog.WARN : ClickLog.INFO,
+                    "恢复任务 " + restored + " 个, 丢弃已过期 " + expired + " 个, 耗时 " + elapsedMs + "ms");
+        }
+    }
 
-        startForeground(NOTIFICATION_ID, notification);
-        
+    /**
+     * 新增一个任务，不影响已布置的其他任务；指定了已存在的 taskId 时替换旧任务，
+     * 界面布置的新任务替换上一个界面任务
+     */
+    private void addTask(Intent intent) {
+        int id = intent.getIntExtra("taskId", 0);
+        if (id <= 0) {
+            id = nextTaskId++;
+        } else {
+            nextTaskId = Math.max(nextTaskId, id + 1);
+            cancelTask(id, false);
+        }
+
+        TaskSpec spec = ClickTask.specFromIntent(intent);
+        if (spec.fromUi && overlayTask != null) {
+            // 界面已为新任务打开悬浮窗，替换时不能关闭
+            cancelTask(overlayTask.id, false);
+        }
+        armTask(id, spec, true);
     }
 
-    private void scheduleExecution() {
-        long delay = targetTime - System.currentTimeMillis();
+    /**
+     * 生成任务时间线并放入定时轮；persist 为 true 时交给 IO 线程写入任务日志并落盘
+     *
+     * @return 参数无效时返回 false
+     */
+    private boolean armTask(int id, TaskSpec spec, boolean persist) {
+        ClickTask task = new ClickTask(this, handler, mainHandler, id, spec);
+        long delay = task.targetTime - System.currentTimeMillis();
+        long startNanos = delay <= 0
+                ? SystemClock.elapsedRealtimeNanos()
+                : PrecisionClickTimer.toElapsedRealtimeNanos(task.targetTime);
+        if (!task.prepare(startNanos)) {
+            return false;
+        }
+        if (persist) {
+            final int armedId = id;
+            final TaskSpec armedSpec = spec;
+            ioHandler.post(() -> {
+                try {
+                    journal.append(armedId, armedSpec);
+                } catch (IOException e) {
+                    // 持久化失败不影响本次执行，只是进程被杀后无法恢复
+                    ClickLog.text(ClickLog.WARN, "任务 " + armedId + " 写入任务日志失败: " + e.getMessage());
+                }
+            });
+        }
 
-        if (delay <= 0) {
-            executeClick();
-            return;
+        tasks.put(id, task);
+        if (task.fromUi) {
+            overlayTask = task;
         }
 
-        scheduleRunnable = new Runnable() {
+        // 提前 APPROACH_LEAD_MS 从定时轮取出，交给任务自己的高精度定时器；
+        // 带触发条件的任务到目标时间才开始监听。时间线可能已按输入延迟提前，以它为准
+        final ClickTask armed = task;
+        long fireMs = task.startNanos() / TimeBase.NANOS_PER_MILLI;
+        long wheelTick = fireMs - (task.hasTrigger() ? 0 : APPROACH_LEAD_MS);
+        task.wheelTimeout = timerWheel.schedule(wheelTick, new Runnable() {
             @Override
             public void run() {
-                executeClick();
+                armed.onWheelExpired(alarmLateForWakeup());
             }
-        };
+        });
+        // 预热单独安排一次，窗口再短也在交接给高精度定时器之前执行
+        if (task.warmupMs > 0) {
+            task.warmupTimeout = timerWheel.schedule(Math.min(fireMs - task.warmupMs, wheelTick - 1),
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            armed.warmUp();
+                        }
+                    });
+        }
+        if (restoring) {
+            // 恢复结束后统一启动前台服务和安排唤醒
+            return true;
+        }
+        startForegroundService();
+        scheduleWheelWakeup();
+        ClickLog.text(ClickLog.INFO, "已布置任务 " + id + ", 提前 " + task.leadNanos() / 1000
+                + "us, 当前共 " + tasks.size() + " 个");
+        broadcastTaskState(task);
+        return true;
+    }
 
-        handler.postDelayed(scheduleRunnable, delay);
+    /**
+     * 在 IO 线程上从任务日志中移除；取消的任务必须落盘，否则重启后会复活
+     */
+    private void forgetTask(final int id, final boolean durable) {
+        ioHandler.post(() -> {
+            try {
+                journal.remove(id, durable);
+            } catch (IOException e) {
+                ClickLog.text(ClickLog.WARN, "任务 " + id + " 移出任务日志失败: " + e.getMessage());
+            }
+        });
     }
 
-    private void executeClick() {
-        if (!AutoClickService.isServiceEnabled(this)) {
-            stopSelf();
-            return;
+    private void cancelTask(int id, boolean closeOverlays) {
+        ClickTask task = tasks.remove(id);
+        if (task == null) return;
+        task.cancel();
+        forgetTask(id, true);
+        scheduleWheelWakeup();
+        ClickLog.text(ClickLog.INFO, "已取消任务 " + id);
+        broadcastTaskState(task);
+        if (task == overlayTask) {
+            overlayTask = null;
+            if (closeOverlays) {
+                stopOverlays();
+            }
         }
+    }
 
-        // 记录开始时间
-        clickingStartTime = System.currentTimeMillis();
-        clickingEndTime = clickingStartTime + (long)(clickDurationSeconds * 1000);  // 转换为毫秒
-        
-        System.out.println("开始持续点击: " + clickDurationSeconds + "秒, 结束时间: " + clickingEndTime);
-        
-        // 开始点击循环
-        executeClickLoop();
+    /**
+     * 按定时轮最近的非空槽位安排唤醒，已安排的唤醒时刻不变时不重复投递消息
+     */
+    private void scheduleWheelWakeup() {
+        long next = timerWheel.nextTick();
+        updateWakeupTiers(next);
+        if (next == wheelWakeupTick) return;
+        handler.removeCallbacks(wheelRunnable);
+        wheelWakeupTick = next;
+        if (next == TimerWheel.NO_DEADLINE) return;
+        long delayMs = next - SystemClock.elapsedRealtime();
+        handler.postAtTime(wheelRunnable, SystemClock.uptimeMillis() + Math.max(0, delayMs));
     }
 
-    private void executeClickLoop() {
-        long currentTime = System.currentTimeMillis();
-        
-        // 执行一次点击
-        boolean success = AutoClickService.performClickAt(clickX, clickY);
-        System.out.println("执行点击在 (" + clickX + ", " + clickY + "), 结果: " + success);
-        
-        // 检查是否已经超过持续时间
-        if (currentTime >= clickingEndTime) {
-            // 持续时间结束，关闭悬浮窗和服务
-            System.out.println("点击完成, 实际持续: " + (currentTime - clickingStartTime) + "ms");
-            
-            // 发送关闭悬浮窗的指令
-            Intent closeCountdownIntent = new Intent(this, CountdownOverlayService.class);
-            stopService(closeCountdownIntent);
-
-            Intent closeMarkerIntent = new Intent(this, ClickMarkerService.class);
-            stopService(closeMarkerIntent);
-
-            Intent closeDragMarkerIntent = new Intent(this, DraggableMarkerService.class);
-            stopService(closeDragMarkerIntent);
-
-            // 发送完成广播
-            Intent broadcastIntent = new Intent("com.example.autoclick.TASK_COMPLETED");
-            sendBroadcast(broadcastIntent);
-
-            // 延迟一下再停止服务，确保悬浮窗关闭完成
-            handler.postDelayed(() -> {
-                stopSelf();
-            }, 500);
-            return;
+    /**
+     * 分级唤醒：远期只保留闹钟，设备可以进入 Doze；进入最后 ALARM_LEAD_MS 或有任务
+     * 正在等待首次点击时持有部分唤醒锁，保证点击线程消息和高精度定时器按时运行
+     */
+    private void updateWakeupTiers(long nextTick) {
+        long now = SystemClock.elapsedRealtime();
+        long remaining = nextTick == TimerWheel.NO_DEADLINE ? Long.MAX_VALUE : nextTick - now;
+
+        if (remaining != Long.MAX_VALUE && remaining > ALARM_LEAD_MS) {
+            setAlarm(nextTick - ALARM_LEAD_MS);
+        } else {
+            cancelAlarm();
+        }
+
+        if (remaining <= ALARM_LEAD_MS || approachingTasks > 0) {
+            // 非引用计数的唤醒锁，重复 acquire 只会刷新超时
+            long holdMs = Math.max(0, Math.min(remaining, ALARM_LEAD_MS)) + APPROACH_LEAD_MS + WAKE_LOCK_SLACK_MS;
+            wakeLock.acquire(holdMs);
+        } else if (wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+    }
+
+    private void setAlarm(long triggerElapsed) {
+        if (triggerElapsed == alarmTriggerElapsed) return;
+        alarmTriggerElapsed = triggerElapsed;
+
+        Intent intent = new Intent(this, ScheduleKeepAliveService.class);
+        intent.setAction(ACTION_ALARM_WAKEUP);
+        intent.putExtra("triggerElapsed", triggerElapsed);
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            alarmIntent = PendingIntent.getForegroundService(this, 0, intent, flags);
+        } else {
+            alarmIntent = PendingIntent.getService(this, 0, intent, flags);
+        }
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerElapsed, alarmIntent);
+        } else {
+            // 没有精确闹钟权限时退化为非精确闹钟，迟到时间会体现在唤醒统计中
+            alarmManager.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerElapsed, alarmIntent);
+            ClickLog.text(ClickLog.WARN, "没有精确闹钟权限，使用非精确闹钟");
+        }
+    }
+
+    private void cancelAlarm() {
+        if (alarmTriggerElapsed == 0) return;
+        alarmTriggerElapsed = 0;
+        if (alarmIntent != null) {
+            alarmManager.cancel(alarmIntent);
+        }
+    }
+
+    /**
+     * 闹钟到达：记录迟到时间，并按当前时间重新安排点击线程消息。
+     * 设备休眠期间 uptimeMillis 不前进，之前投递的消息会比预期更晚执行。
+     */
+    private void onAlarmWakeup(long triggerElapsed) {
+        long now = SystemClock.elapsedRealtime();
+        alarmFiredElapsed = now;
+        alarmLateMs = triggerElapsed > 0 ? now - triggerElapsed : -1;
+        alarmTriggerElapsed = 0;
+        ClickLog.text(ClickLog.INFO, "闹钟唤醒, 迟到 " + alarmLateMs + "ms");
+
+        wheelWakeupTick = TimerWheel.NO_DEADLINE;
+        timerWheel.advance(now);
+        scheduleWheelWakeup();
+    }
+
+    /**
+     * 当前这次唤醒若来自闹钟，返回闹钟的迟到时间，否则返回 -1
+     */
+    private long alarmLateForWakeup() {
+        if (alarmFiredElapsed == 0) return -1;
+        long sinceAlarm = SystemClock.elapsedRealtime() - alarmFiredElapsed;
+        return sinceAlarm <= ALARM_LEAD_MS + WAKE_LOCK_SLACK_MS ? alarmLateMs : -1;
+    }
+
+    /**
+     * 任务进入最后阶段，等待高精度定时器首次点击
+     */
+    void onApproachStarted() {
+        approachingTasks++;
+        updateWakeupTiers(timerWheel.nextTick());
+    }
+
+    /**
+     * 任务已首次点击或被取消，不再需要为它保持唤醒
+     */
+    void onApproachFinished() {
+        approachingTasks = Math.max(0, approachingTasks - 1);
+        updateWakeupTiers(timerWheel.nextTick());
+    }
+
+    /**
+     * 任务进入预热窗口：界面任务的倒计时停止刷新，首次点击前后不再与逐帧绘制争抢 CPU
+     */
+    void onWarmupStarted(ClickTask task) {
+        if (task == overlayTask) {
+            Intent pauseIntent = new Intent(this, CountdownOverlayService.class);
+            pauseIntent.setAction(CountdownOverlayService.ACTION_PAUSE);
+            startService(pauseIntent);
+        }
+    }
+
+    /**
+     * 任务开始等待事件触发
+     */
+    void onTaskWaitingTrigger(ClickTask task) {
+        broadcastTaskState(task);
+    }
+
+    /**
+     * 任务开始按时间线点击
+     */
+    void onTaskStarted(ClickTask task) {
+        broadcastTaskState(task);
+        if (!statsNotificationPosted) {
+            statsNotificationPosted = true;
+            handler.post(statsNotificationRunnable);
+            if (!mainLagProbing) {
+                mainLagProbing = true;
+                mainLagHistogram.reset();
+                mainLagDueNanos = SystemClock.elapsedRealtimeNanos();
+                mainHandler.post(mainLagRunnable);
+            }
+        }
+    }
+
+    /**
+     * 任务的时间线已执行完，属于界面的悬浮窗随之关闭
+     */
+    void onTaskTimelineFinished(ClickTask task) {
+        if (task == overlayTask) {
+            stopOverlays();
+        }
+    }
+
+    /**
+     * 任务结束：汇总投递结果，发送完成广播，没有剩余任务时停止服务
+     */
+    void onTaskFinished(ClickTask task) {
+        tasks.remove(task.id);
+        forgetTask(task.id, false);
+        task.logSummary();
+        ioHandler.post(() -> InputLatency.save(this));
+        if (task.targetSource != null) {
+            ClickLog.text(ClickLog.INFO, "目标查找: " + AutoClickService.getLocateHistogram().summary()
+                    + ", " + AutoClickService.getLocatorSummary());
+        }
+        ClickLog.text(ClickLog.INFO, "手势缓存命中: " + AutoClickService.getGestureCacheHitCount()
+                + ", 构建: " + AutoClickService.getGestureBuildCount()
+                + ", 派发调用: " + AutoClickService.getDispatchCallHistogram().summary());
+
+        ClickLog.text(ClickLog.INFO, "主线程心跳延迟: " + mainLagHistogram.summary());
+
+        Intent broadcastIntent = new Intent(ACTION_TASK_COMPLETED);
+        task.putResultExtras(broadcastIntent);
+        broadcastIntent.putExtra("mainLagSummary", mainLagHistogram.summary());
+        sendBroadcast(broadcastIntent);
+
+        if (task == overlayTask) {
+            overlayTask = null;
+        }
+        stopIfIdle();
+    }
+
+    /**
+     * 任务无法执行（例如无障碍服务未开启），直接丢弃
+     */
+    void onTaskFailed(ClickTask task) {
+        ClickLog.text(ClickLog.WARN, "任务 " + task.id + " 无法执行，无障碍服务未开启");
+        cancelTask(task.id, true);
+        stopIfIdle();
+    }
+
+    private void stopIfIdle() {
+        if (tasks.isEmpty()) {
+            stopSelf(lastStartId);
+        }
+    }
+
+    private void stopOverlays() {
+        // 发送关闭悬浮窗的指令
+        Intent closeCountdownIntent = new Intent(this, CountdownOverlayService.class);
+        stopService(closeCountdownIntent);
+
+        Intent closeMarkerIntent = new Intent(this, ClickMarkerService.class);
+        stopService(closeMarkerIntent);
+
+        Intent closeDragMarkerIntent = new Intent(this, DraggableMarkerService.class);
+        stopService(closeDragMarkerIntent);
+    }
+
+    private int countTasks(ClickTask.State state) {
+        int count = 0;
+        for (ClickTask task : tasks.values()) {
+            if (task.getState() == state) count++;
+        }
+        return count;
+    }
+
+    private void broadcastTaskState(ClickTask task) {
+        Intent intent = new Intent(ACTION_TASK_STATE);
+        intent.putExtra("taskId", task.id);
+        intent.putExtra("state", task.getState().name());
+        intent.putExtra("targetTime", task.targetTime);
+        sendBroadcast(intent);
+    }
+
+    /**
+     * 广播所有任务的编号、状态和目标时间
+     */
+    private void broadcastTaskList() {
+        int size = tasks.size();
+        int[] ids = new int[size];
+        String[] states = new String[size];
+        long[] targetTimes = new long[size];
+        int i = 0;
+        for (ClickTask task : tasks.values()) {
+            ids[i] = task.id;
+            states[i] = task.getState().name();
+            targetTimes[i] = task.targetTime;
+            i++;
         }
+        Intent intent = new Intent(ACTION_TASK_LIST);
+        intent.putExtra("taskIds", ids);
+        intent.putExtra("states", states);
+        intent.putExtra("targetTimes", targetTimes);
+        sendBroadcast(intent);
+    }
 
-        // 计算下次点击的延迟时间
-        int nextDelay = baseInterval;
-        if (randomRange > 0) {
-            // 在基础间隔基础上增加随机时间
-            nextDelay += random.nextInt(randomRange + 1);
+    private PendingIntent createContentIntent() {
+        Intent notificationIntent = new Intent(this, MainActivity.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return PendingIntent.getActivity(this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
+        } else {
+            return PendingIntent.getActivity(this, 0, notificationIntent, 0);
         }
+    }
+
+    private void startForegroundService() {
+        PendingIntent pendingIntent = createContentIntent();
+
+        long remaining = overlayTask == null ? 0 : overlayTask.targetTime - System.currentTimeMillis();
+        String timeText = String.format(Locale.getDefault(), "剩余 %.1f 秒", remaining / 1000.0);
+
+        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentTitle("定时点击服务运行中")
+                .setContentText(timeText + " | 已布置 " + tasks.size() + " 个任务")
+                .setSmallIcon(android.R.drawable.ic_menu_recent_history)
+                .setContentIntent(pendingIntent)
+                .setOngoing(true)
+                .build();
 
-        System.out.println("下次点击延迟: " + nextDelay + "ms");
+        startForeground(NOTIFICATION_ID, notification);
         
-        // 延迟后继续下一次点击
-        handler.postDelayed(this::executeClickLoop, nextDelay);
+    }
+
+    /**
+     * 把任务数量和当前界面任务的延迟统计刷新到前台通知
+     */
+    private void updateStatsNotification() {
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager == null) return;
+
+        String contentText = "等待 " + (countTasks(ClickTask.State.ARMED) + countTasks(ClickTask.State.APPROACHING)
+                + countTasks(ClickTask.State.WAITING_TRIGGER))
+                + " / 运行 " + countTasks(ClickTask.State.RUNNING) + " 个任务";
+        String statsText = contentText;
+        if (overlayTask != null) {
+            contentText += " | " + overlayTask.pipelineSummary();
+            statsText += "\n任务 " + overlayTask.id + ": " + overlayTask.pipelineSummary()
+                    + "\n" + overlayTask.statsText();
+        }
+        statsText += "\n派发调用 " + AutoClickService.getDispatchCallHistogram().summary();
+        statsText += "\n主线程延迟 " + mainLagHistogram.summary();
+        if (AutoClickService.getTriggerLatencyHistogram().getCount() > 0) {
+            statsText += "\n事件触发 " + AutoClickService.getTriggerLatencyHistogram().summary();
+        }
+        if (AutoClickService.getProbeSampleHistogram().getCount() > 0) {
+            statsText += "\n截屏探测 " + AutoClickService.getProbeSampleHistogram().summary();
+        }
+        if (AutoClickService.getLocateHistogram().getCount() > 0) {
+            statsText += "\n目标查找 " + AutoClickService.getLocateHistogram().summary();
+        }
+
+        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentTitle("定时点击执行中")
+                .setContentText(contentText)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(statsText))
+                .setSmallIcon(android.R.drawable.ic_menu_recent_history)
+                .setContentIntent(createContentIntent())
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .build();
+        manager.notify(NOTIFICATION_ID, notification);
     }
 
     private void createNotificationChannel() {
@@ -204,22 +675,40 @@ public class ScheduleKeepAliveService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (scheduleRunnable != null && handler != null) {
-            handler.removeCallbacks(scheduleRunnable);
-        }
+        mainLagProbing = false;
+        mainHandler.removeCallbacks(mainLagRunnable);
+        AutoClickService.setGestureHandler(null);
+        // 清理在点击线程上执行，之后点击线程处理完已到期的消息即退出
+        handler.post(() -> shutdown());
+        engineThread.quitSafely();
+    }
 
-        // 取消注册广播接收器
-        try {
-            unregisterReceiver(coordinateReceiver);
-        } catch (Exception e) {
-            // 忽略
+    private void shutdown() {
+        for (ClickTask task : tasks.values()) {
+            task.cancel();
         }
-
-        
+        tasks.clear();
+        AutoClickService.unwatchServiceEnabled(this);
+        cancelAlarm();
+        if (wakeLock != null && wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+        // 只有主动停止服务才会走到这里，进程被杀不会调用 onDestroy；
+        // 排在已投递的写入之后清空，IO 线程处理完即退出
+        ioHandler.post(() -> {
+            try {
+                journal.clear();
+            } catch (IOException e) {
+                ClickLog.text(ClickLog.WARN, "清空任务日志失败: " + e.getMessage());
+            }
+            journal.close();
+        });
+        ioThread.quitSafely();
+        handler.removeCallbacksAndMessages(null);
     }
 
     @Override
     public IBinder onBind(Intent intent) {
-        return null;
+        return engineMessenger.getBinder();
     }
 }
@@ -0,0 +1,416 @@
+package com.example.autoclick;
+
+import android.accessibilityservice.AccessibilityService;
+import android.graphics.Bitmap;
+import android.hardware.HardwareBuffer;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Display;
+import com.example.autoclick.engine.ClickLog;
+import com.example.autoclick.engine.CoordinateCell;
+import com.example.autoclick.engine.ImageTrigger;
+import com.example.autoclick.engine.LatencyHistogram;
+import com.example.autoclick.engine.PixelProbe;
+import com.example.autoclick.engine.ProbeRate;
+import com.example.autoclick.engine.TemplateMatcher;
+import com.example.autoclick.engine.TimeBase;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 截屏探测：有像素探针或图像模板时循环截屏。截屏结果是硬件位图，不能直接读像素，由 HardwareReadback
+ * 在 GPU 上读回到按尺寸复用的缓冲区。只有像素探针时只读回包含各探针区域的最小矩形，
+ * 各区域再读进一个复用的紧凑缓冲区；有图像模板时才读回整帧，建立一次金字塔后依次匹配各模板，
+ * 匹配在 ForkJoinPool 中分块并行。
+ * 所有探针共用一个截屏循环，间隔由 ProbeRate 按实际耗时自适应调整。
+ *
+ * <p>截屏回调、读回和匹配都在专用的截屏线程上执行，不占用主线程：主线程还要分发无障碍事件，
+ * 整帧匹配期间事件触发不能跟着等待。探针的增删在主线程进行，每次变更后发布一份数组快照给截屏线程；
+ * 命中结果投递回主线程，确认探针仍在注册中再回调。
+ * 截屏需要 Android 11（API 30）。除 getSampleHistogram 外只能在主线程调用。
+ */
+final class ScreenProbe {
+    // 平台限制的最小截屏间隔
+    private static final long MIN_INTERVAL_MS = 333;
+    private static final long MAX_INTERVAL_MS = 5000;
+    // 截屏处理最多占用截屏线程时间的比例
+    private static final double BUDGET_FRACTION = 0.25;
+
+    private static final int LOG_SAMPLE = ClickLog.event("截屏探测耗时 {}us, 下次间隔 {}ms");
+
+    private static final Entry[] NO_PROBES = new Entry[0];
+    private static final TemplateEntry[] NO_TEMPLATES = new TemplateEntry[0];
+
+    private static final class Entry {
+        final int key;
+        final PixelProbe probe;
+        final AutoClickService.TriggerListener listener;
+
+        Entry(int key, PixelProbe probe, AutoClickService.TriggerListener listener) {
+            this.key = key;
+            this.probe = probe;
+            this.listener = listener;
+        }
+    }
+
+    private static final class TemplateEntry {
+        final int key;
+        final TemplateMatcher.Template template;
+        final ImageTrigger trigger;
+        final AutoClickService.ImageListener listener;
+
+        TemplateEntry(int key, TemplateMatcher.Template template, ImageTrigger trigger,
+                      AutoClickService.ImageListener listener) {
+            this.key = key;
+            this.template = template;
+            this.trigger = trigger;
+            this.listener = listener;
+        }
+    }
+
+    // 以下在主线程访问
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<Integer, Entry> probes = new LinkedHashMap<>();
+    private final Map<Integer, TemplateEntry> templates = new LinkedHashMap<>();
+    private HandlerThread thread;
+
+    // 主线程发布、截屏线程读取
+    private volatile AccessibilityService service;
+    private volatile Entry[] probeList = NO_PROBES;
+    private volatile TemplateEntry[] templateList = NO_TEMPLATES;
+    private Handler handler;
+    private Executor executor;
+
+    // 以下只在截屏线程访问
+    private final TemplateMatcher matcher = new TemplateMatcher(ForkJoinPool.commonPool());
+    private final TemplateMatcher.Match match = new TemplateMatcher.Match();
+    private final ArrayList<TemplateEntry> found = new ArrayList<>();
+    // 与 found 一一对应的命中中心点
+    private long[] foundPoints = new long[4];
+    // 整帧像素，截图尺寸不变时复用
+    private int[] frame = new int[0];
+    private final ProbeRate rate = new ProbeRate(MIN_INTERVAL_MS * TimeBase.NANOS_PER_MILLI,
+            MAX_INTERVAL_MS * TimeBase.NANOS_PER_MILLI, BUDGET_FRACTION);
+    // 截屏回调到匹配完成的耗时
+    private final LatencyHistogram sampleHistogram = new LatencyHistogram();
+    private final ArrayList<Entry> matched = new ArrayList<>();
+    private int[] buffer = new int[0];
+    private final HardwareReadback readback = new HardwareReadback();
+    private boolean readbackFailed;
+    // 本帧读回区域的左上角；GPU 读回不可用时为本帧复制的软件位图
+    private int readLeft;
+    private int readTop;
+    private Bitmap software;
+
+    private boolean requestPending;
+    private long lastRequestNanos;
+
+    private final Runnable captureRunnable = new Runnable() {
+        @Override
+        public void run() {
+            requestScreenshot();
+        }
+    };
+
+    private final Runnable scheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scheduleNext();
+        }
+    };
+
+    // 不再探测：停止循环，释放读回缓冲区，探测重新开始时按新尺寸创建
+    private final Runnable stopRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (service != null && !isIdle()) return;
+            handler.removeCallbacks(captureRunnable);
+            if (service == null) {
+                requestPending = false;
+            }
+            readback.close();
+        }
+    };
+
+    private final AccessibilityService.TakeScreenshotCallback screenshotCallback =
+            new AccessibilityService.TakeScreenshotCallback() {
+                @Override
+                public void onSuccess(AccessibilityService.ScreenshotResult result) {
+                    requestPending = false;
+                    onScreenshot(result);
+                    scheduleNext();
+                }
+
+                @Override
+                public void onFailure(int errorCode) {
+                    requestPending = false;
+                    if (errorCode == AccessibilityService.ERROR_TAKE_SCREENSHOT_INTERVAL_TIME_SHORT) {
+                        rate.onRateLimited();
+                    } else {
+                        ClickLog.text(ClickLog.WARN, "截屏失败: " + errorCode);
+                    }
+                    scheduleNext();
+                }
+            };
+
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+    }
+
+    /**
+     * 服务连接或断开时更新截屏使用的服务实例
+     */
+    void attach(AccessibilityService service) {
+        this.service = service;
+        if (service == null) {
+            if (handler != null) {
+                handler.post(stopRunnable);
+            }
+        } else {
+            startThread();
+            handler.post(scheduleRunnable);
+        }
+    }
+
+    void add(int key, PixelProbe probe, AutoClickService.TriggerListener listener) {
+        probes.put(key, new Entry(key, probe, listener));
+        publish();
+    }
+
+    void addTemplate(int key, TemplateMatcher.Template template, ImageTrigger trigger,
+                     AutoClickService.ImageListener listener) {
+        templates.put(key, new TemplateEntry(key, template, trigger, listener));
+        publish();
+    }
+
+    void remove(int key) {
+        boolean removed = probes.remove(key) != null;
+        removed |= templates.remove(key) != null;
+        if (removed) {
+            publish();
+        }
+    }
+
+    /**
+     * 截屏线程随服务第一次连接创建，之后常驻
+     */
+    private void startThread() {
+        if (thread != null) return;
+        thread = new HandlerThread("ScreenProbe");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        final Handler target = handler;
+        executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                target.post(command);
+            }
+        };
+    }
+
+    /**
+     * 把当前探针发布给截屏线程，并通知它开始或停止循环
+     */
+    private void publish() {
+        probeList = probes.values().toArray(NO_PROBES);
+        templateList = templates.values().toArray(NO_TEMPLATES);
+        if (handler == null) return;
+        handler.post(isIdle() ? stopRunnable : scheduleRunnable);
+    }
+
+    private boolean isIdle() {
+        return probeList.length == 0 && templateList.length == 0;
+    }
+
+    LatencyHistogram getSampleHistogram() {
+        return sampleHistogram;
+    }
+
+    private void scheduleNext() {
+        if (service == null || isIdle() || requestPending || !isSupported()) return;
+        handler.removeCallbacks(captureRunnable);
+        long sinceStart = SystemClock.elapsedRealtimeNanos() - lastRequestNanos;
+        long delayMs = rate.nextDelayNanos(sinceStart) / TimeBase.NANOS_PER_MILLI;
+        handler.postDelayed(captureRunnable, delayMs);
+    }
+
+    private void requestScreenshot() {
+        AccessibilityService service = this.service;
+        if (service == null || isIdle() || requestPending) return;
+        requestPending = true;
+        lastRequestNanos = SystemClock.elapsedRealtimeNanos();
+        service.takeScreenshot(Display.DEFAULT_DISPLAY, executor, screenshotCallback);
+    }
+
+    private void onScreenshot(AccessibilityService.ScreenshotResult result) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        HardwareBuffer hardwareBuffer = result.getHardwareBuffer();
+        Bitmap hardware = Bitmap.wrapHardwareBuffer(hardwareBuffer, result.getColorSpace());
+        if (hardware == null) {
+            hardwareBuffer.close();
+            return;
+        }
+
+        Entry[] probes = probeList;
+        TemplateEntry[] templates = templateList;
+        matched.clear();
+        found.clear();
+        try {
+            int width = hardware.getWidth();
+            int height = hardware.getHeight();
+            for (Entry entry : probes) {
+                entry.probe.clip(width, height);
+            }
+            if (templates.length > 0) {
+                // 模板需要整帧，探针直接在同一帧上匹配
+                if (!readBack(hardware, 0, 0, width, height)) return;
+                if (frame.length != width * height) {
+                    frame = new int[width * height];
+                }
+                getPixels(frame, 0, width, 0, 0, width, height);
+                for (Entry entry : probes) {
+                    if (entry.probe.matchesFrame(frame, width)) {
+                        matched.add(entry);
+                    }
+                }
+                matchTemplates(templates, width, height);
+            } else if (readProbeBounds(probes, hardware)) {
+                for (Entry entry : probes) {
+                    PixelProbe probe = entry.probe;
+                    if (buffer.length < probe.bufferSize()) {
+                        buffer = new int[probe.bufferSize()];
+                    }
+                    for (int i = 0; i < probe.size(); i++) {
+                        if (probe.regionWidth(i) == 0 || probe.regionHeight(i) == 0) continue;
+                        getPixels(buffer, probe.regionOffset(i), probe.regionWidth(i),
+                                probe.regionLeft(i), probe.regionTop(i), probe.regionWidth(i), probe.regionHeight(i));
+                    }
+                    if (probe.matchesBuffer(buffer)) {
+                        matched.add(entry);
+                    }
+                }
+            }
+        } finally {
+            readback.release();
+            if (software != null) {
+                software.recycle();
+                software = null;
+            }
+            hardware.recycle();
+            hardwareBuffer.close();
+        }
+
+        long cost = SystemClock.elapsedRealtimeNanos() - start;
+        rate.onSample(cost);
+        sampleHistogram.record(cost);
+        ClickLog.d(LOG_SAMPLE, cost / 1000, rate.intervalNanos() / TimeBase.NANOS_PER_MILLI);
+
+        if (!matched.isEmpty() || !found.isEmpty()) {
+            // 截图时间戳为 uptime 纳秒
+            final long frameUptimeMs = result.getTimestamp() / TimeBase.NANOS_PER_MILLI;
+            final Entry[] hits = matched.toArray(NO_PROBES);
+            final TemplateEntry[] images = found.toArray(NO_TEMPLATES);
+            final long[] points = Arrays.copyOf(foundPoints, images.length);
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(frameUptimeMs, hits, images, points);
+                }
+            });
+        }
+        matched.clear();
+        found.clear();
+    }
+
+    /**
+     * 在主线程回调命中结果；截屏期间已移除的探针不再回调
+     */
+    private void deliver(long frameUptimeMs, Entry[] hits, TemplateEntry[] images, long[] points) {
+        for (Entry entry : hits) {
+            if (probes.get(entry.key) == entry) {
+                entry.listener.onTriggered(frameUptimeMs);
+            }
+        }
+        for (int i = 0; i < images.length; i++) {
+            TemplateEntry entry = images[i];
+            if (templates.get(entry.key) == entry) {
+                entry.listener.onImageFound(frameUptimeMs, CoordinateCell.x(points[i]), CoordinateCell.y(points[i]));
+            }
+        }
+    }
+
+    /**
+     * 只有像素探针时，读回包含所有探针区域的最小矩形；所有区域都在屏幕外时返回 false
+     */
+    private boolean readProbeBounds(Entry[] probes, Bitmap hardware) {
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = 0;
+        int bottom = 0;
+        for (Entry entry : probes) {
+            PixelProbe probe = entry.probe;
+            for (int i = 0; i < probe.size(); i++) {
+                if (probe.regionWidth(i) == 0 || probe.regionHeight(i) == 0) continue;
+                left = Math.min(left, probe.regionLeft(i));
+                top = Math.min(top, probe.regionTop(i));
+                right = Math.max(right, probe.regionLeft(i) + probe.regionWidth(i));
+                bottom = Math.max(bottom, probe.regionTop(i) + probe.regionHeight(i));
+            }
+        }
+        return left < right && top < bottom && readBack(hardware, left, top, right - left, bottom - top);
+    }
+
+    /**
+     * 把硬件位图的一块区域读回，之后用 getPixels 按屏幕坐标读取。
+     * GPU 读回失败时（个别设备不支持 CPU 可读的渲染目标）之后都退回为每帧复制一张软件位图
+     */
+    private boolean readBack(Bitmap hardware, int left, int top, int width, int height) {
+        readLeft = left;
+        readTop = top;
+        if (!readbackFailed) {
+            try {
+                if (readback.read(hardware, left, top, width, height)) return true;
+            } catch (RuntimeException e) {
+                ClickLog.text(ClickLog.WARN, "截屏读回失败: " + e);
+            }
+            readbackFailed = true;
+            readback.close();
+            ClickLog.text(ClickLog.WARN, "截屏改为复制整帧软件位图");
+        }
+        software = hardware.copy(Bitmap.Config.ARGB_8888, false);
+        return software != null;
+    }
+
+    /**
+     * 与 Bitmap.getPixels 相同的参数，x、y 为屏幕坐标，必须落在 readBack 的区域内
+     */
+    private void getPixels(int[] out, int offset, int stride, int x, int y, int width, int height) {
+        if (software != null) {
+            software.getPixels(out, offset, stride, x, y, width, height);
+        } else {
+            readback.getPixels(out, offset, stride, x - readLeft, y - readTop, width, height);
+        }
+    }
+
+    private void matchTemplates(TemplateEntry[] templates, int width, int height) {
+        matcher.setFrame(frame, width, height, width);
+        for (TemplateEntry entry : templates) {
+            ImageTrigger trigger = entry.trigger;
+            if (matcher.find(entry.template, trigger.roiLeft(), trigger.roiTop(), trigger.roiRight(),
+                    trigger.roiBottom(), trigger.maxScore(), match)) {
+                if (found.size() == foundPoints.length) {
+                    foundPoints = Arrays.copyOf(foundPoints, foundPoints.length * 2);
+                }
+                foundPoints[found.size()] = CoordinateCell.pack(match.centerX, match.centerY);
+                found.add(entry);
+            }
+        }
+    }
+}
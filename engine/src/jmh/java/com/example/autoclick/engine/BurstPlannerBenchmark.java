@@ -0,0 +1,50 @@
+package com.example.autoclick.engine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 连发规划：把整条时间线切分成手势批次的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BurstPlannerBenchmark {
+    private static final int MAX_STROKES = 20;
+    private static final long MAX_GESTURE_DURATION_MS = 60_000;
+
+    @Param({"5", "20"})
+    public int baseIntervalMs;
+
+    @Param({"1", "4"})
+    public long tapDurationMs;
+
+    private ClickTimeline timeline;
+    private final long[] offsets = new long[MAX_STROKES];
+
+    @Setup
+    public void setUp() {
+        timeline = ClickTimeline.build(0, 60 * 1_000_000_000L, baseIntervalMs, 3, new Random(42));
+    }
+
+    @Benchmark
+    public int planWholeTimeline() {
+        int index = 0;
+        int batches = 0;
+        while (index < timeline.size()) {
+            int count = BurstPlanner.planBatch(timeline, index, tapDurationMs,
+                    MAX_STROKES, MAX_GESTURE_DURATION_MS, 500, offsets);
+            index += Math.max(count, 1);
+            batches++;
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.autoclick.engine;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 投递管线与延迟直方图在单次点击上的固定开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ClickPipelineBenchmark {
+
+    private ClickPipeline pipeline;
+    private LatencyHistogram histogram;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        histogram = new LatencyHistogram();
+        pipeline = new ClickPipeline(new ClickPipeline.Dispatcher() {
+            @Override
+            public boolean dispatchTap(int x, int y) {
+                return true;
+            }
+        }, 2, 50_000_000L, histogram);
+    }
+
+    @Benchmark
+    public int submitAndComplete() {
+        now += 5_000_000L;
+        pipeline.submitTap(540, 1200, now, now);
+        pipeline.onGestureCompleted(now + 3_000_000L);
+        return pipeline.getInFlight();
+    }
+
+    @Benchmark
+    public long recordLatency() {
+        now += 12_345L;
+        histogram.record(now & 0xFFFFFFFL);
+        return histogram.getCount();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.autoclick.engine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 时间线生成与按槽位推进的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClickTimelineBenchmark {
+
+    @Param({"5", "300"})
+    public int durationSeconds;
+
+    @Param({"5", "180"})
+    public int baseIntervalMs;
+
+    private ClickTimeline timeline;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        random = new Random(42);
+        timeline = build();
+    }
+
+    private ClickTimeline build() {
+        return ClickTimeline.build(0, durationSeconds * 1_000_000_000L, baseIntervalMs, 100, random);
+    }
+
+    @Benchmark
+    public ClickTimeline buildTimeline() {
+        return build();
+    }
+
+    /**
+     * 模拟点击循环：每次都比计划晚 1ms，按 SKIP 策略走完整条时间线
+     */
+    @Benchmark
+    public int walkSkip() {
+        return walk(ClickTimeline.MissedSlotPolicy.SKIP);
+    }
+
+    @Benchmark
+    public int walkCompress() {
+        return walk(ClickTimeline.MissedSlotPolicy.COMPRESS);
+    }
+
+    private int walk(ClickTimeline.MissedSlotPolicy policy) {
+        int index = 0;
+        int fired = 0;
+        while (index < timeline.size()) {
+            long now = timeline.deadlineAt(index) + 1_000_000L;
+            index = timeline.nextSlot(index, now, policy) + 1;
+            fired++;
+        }
+        return fired;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.autoclick.engine;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 倒计时格式化：写入复用缓冲区与 String.format 的对比
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CountdownFormatterBenchmark {
+
+    @Param({"5432", "754321", "37754321"})
+    public long remainingMs;
+
+    private final char[] buffer = new char[CountdownFormatter.MAX_LENGTH];
+
+    @Benchmark
+    public int formatIntoBuffer() {
+        return CountdownFormatter.format(remainingMs, buffer);
+    }
+
+    /**
+     * 原来的实现方式，作为对照
+     */
+    @Benchmark
+    public String stringFormat() {
+        long hours = remainingMs / (1000 * 60 * 60);
+        long minutes = (remainingMs % (1000 * 60 * 60)) / (1000 * 60);
+        long seconds = (remainingMs % (1000 * 60)) / 1000;
+        long milliseconds = remainingMs % 1000;
+        if (hours > 0) {
+            return String.format(Locale.getDefault(), "%02d:%02d:%02d.%03d", hours, minutes, seconds, milliseconds);
+        } else if (minutes > 0) {
+            return String.format(Locale.getDefault(), "%02d:%02d.%03d", minutes, seconds, milliseconds);
+        }
+        return String.format(Locale.getDefault(), "%02d.%03d", seconds, milliseconds);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.autoclick.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * 内存映射的触摸宏顺序解码：只解码事件，以及解码后切成手势批次（回放时的完整解码路径）。
+ * 宏为随机生成的一到三指拖动，每次触摸 0 到 60 次移动，8ms 一个采样。
+ * 配合 -prof gc 查看每次完整解码的分配量，应与宏长短无关。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MacroDecodeBenchmark {
+    @Param({"1000000"})
+    public int events;
+
+    private File file;
+    private MappedByteBuffer mapped;
+    private final StrokeBatch batch = new StrokeBatch();
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("macro", ".acm");
+        try (MacroWriter writer = new MacroWriter(new FileOutputStream(file))) {
+            write(writer, events, new Random(42));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    static void write(MacroWriter writer, int events, Random random) throws IOException {
+        long t = 0;
+        int written = 0;
+        while (written < events) {
+            t += 50 + random.nextInt(3000);
+            int fingers = 1 + random.nextInt(3);
+            int x = random.nextInt(1080);
+            int y = 600 + random.nextInt(1800);
+            for (int f = 0; f < fingers; f++) {
+                writer.add(t, TouchMacro.ACTION_DOWN, f, x + f * 100, y);
+            }
+            int moves = random.nextInt(60);
+            for (int m = 0; m < moves; m++) {
+                t += 8;
+                for (int f = 0; f < fingers; f++) {
+                    writer.add(t, TouchMacro.ACTION_MOVE, f, x + f * 100 + m * 3, y - m * 2);
+                }
+            }
+            t += 5;
+            for (int f = 0; f < fingers; f++) {
+                writer.add(t, TouchMacro.ACTION_UP, f, x + f * 100 + moves * 3, y - moves * 2);
+            }
+            written += fingers * (moves + 2);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long decodeEvents() throws IOException {
+        MacroReader reader = new MacroReader(mapped.duplicate());
+        long sum = 0;
+        while (reader.next()) {
+            sum += reader.x() + reader.y();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long decodeBatches() throws IOException {
+        MacroBatcher batcher = new MacroBatcher(new MacroReader(mapped.duplicate()), 10, 60_000);
+        long points = 0;
+        while (batcher.next(batch)) {
+            points += batch.totalPoints();
+        }
+        return points;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.autoclick.engine;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 节点索引在不同树深度下的查找开销，以及一个叶子子树失效后增量刷新的开销。
+ * 树为 depth 层、每层 4 个子节点中只有第一个继续向下展开，目标在最深处。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NodeIndexBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    private NodeIndex<Integer> index;
+    private NodeTarget byId;
+    private NodeTarget byText;
+    private Integer leaf;
+
+    @Setup
+    public void setUp() {
+        index = new NodeIndex<>();
+        int next = 0;
+        Integer parent = null;
+        for (int level = 0; level < depth; level++) {
+            Integer first = null;
+            for (int i = 0; i < 4; i++) {
+                Integer handle = next++;
+                index.add(parent, handle, "com.foo:id/item_" + i, "第 " + level + " 层 " + i, null,
+                        CoordinateCell.pack(i * 100, level));
+                if (i == 0) first = handle;
+            }
+            parent = first;
+        }
+        leaf = parent;
+        byId = NodeTarget.parse("id:com.foo:id/item_3");
+        byText = NodeTarget.parse("text:第 " + (depth - 1) + " 层 2");
+    }
+
+    @Benchmark
+    public long findById() {
+        return index.find(byId);
+    }
+
+    @Benchmark
+    public long findByText() {
+        return index.find(byText);
+    }
+
+    @Benchmark
+    public long invalidateAndRefreshLeaf() {
+        index.invalidate(leaf);
+        index.add(index.dirtyParentAt(0), leaf, "com.foo:id/item_0", "第 " + (depth - 1) + " 层 0", null,
+                CoordinateCell.pack(0, depth - 1));
+        index.clearDirty();
+        return index.find(byText);
+    }
+}
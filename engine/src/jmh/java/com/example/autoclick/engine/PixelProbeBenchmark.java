@@ -0,0 +1,70 @@
+package com.example.autoclick.engine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 1080x2400 整帧上的像素探针匹配，与只读探针区域的紧凑缓冲区匹配对比；
+ * 全部探针命中是最坏情况（每个区域都要采样完）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PixelProbeBenchmark {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 2400;
+
+    @Param({"0", "8", "32"})
+    public int radius;
+
+    private int[] frame;
+    private int[] buffer;
+    private PixelProbe probe;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        frame = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        StringBuilder spec = new StringBuilder(PixelProbe.PREFIX);
+        int[][] points = {{100, 200}, {540, 1200}, {980, 2200}, {540, 2300}};
+        for (int[] point : points) {
+            // 探测区域涂成目标颜色
+            for (int y = point[1] - radius; y <= point[1] + radius; y++) {
+                for (int x = point[0] - radius; x <= point[0] + radius; x++) {
+                    frame[y * WIDTH + x] = 0xFF33AA55;
+                }
+            }
+            spec.append(point[0]).append(',').append(point[1]).append(",#33AA55,8,").append(radius).append(';');
+        }
+        probe = PixelProbe.parse(spec.toString());
+        probe.clip(WIDTH, HEIGHT);
+        buffer = new int[probe.bufferSize()];
+        for (int i = 0; i < probe.size(); i++) {
+            for (int row = 0; row < probe.regionHeight(i); row++) {
+                System.arraycopy(frame, (probe.regionTop(i) + row) * WIDTH + probe.regionLeft(i),
+                        buffer, probe.regionOffset(i) + row * probe.regionWidth(i), probe.regionWidth(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean matchFrame() {
+        return probe.matchesFrame(frame, WIDTH);
+    }
+
+    @Benchmark
+    public boolean matchBuffer() {
+        return probe.matchesBuffer(buffer);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.autoclick.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * 服务重启时从任务日志恢复的耗时：日志中有 tasks 个有效任务，另有三成已结束的任务记录
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TaskJournalBenchmark {
+
+    @Param({"10000"})
+    public int tasks;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("tasks", ".journal");
+        file.delete();
+        TaskJournal journal = new TaskJournal(file);
+        journal.load();
+        int removed = tasks * 3 / 10;
+        for (int id = 1; id <= tasks + removed; id++) {
+            TaskSpec spec = new TaskSpec();
+            spec.targetTime = 1_700_000_000_000L + id * 1000L;
+            spec.clickX = id % 1080;
+            spec.clickY = id % 2400;
+            if (id % 10 == 0) {
+                spec.script = "tap 540 1200; wait 80; repeat 5 { tap 300 400; wait 120 }";
+            }
+            journal.append(id, spec);
+        }
+        for (int id = 1; id <= removed; id++) {
+            journal.remove(id, false);
+        }
+        journal.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public int restore() throws IOException {
+        TaskJournal journal = new TaskJournal(file);
+        Map<Integer, TaskSpec> restored = journal.load();
+        journal.close();
+        return restored.size();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.autoclick.engine;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 1080x2400 截图上的模板匹配：建立截图金字塔的开销，整帧搜索和感兴趣区域搜索的开销。
+ * 背景为平滑起伏加噪声，模板为带噪声的 4x4 色块图案，贴在固定位置。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TemplateMatcherBenchmark {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 2400;
+
+    @Param({"32", "64", "128", "256"})
+    public int size;
+
+    private int[] frame;
+    private TemplateMatcher matcher;
+    private TemplateMatcher.Template template;
+    private final TemplateMatcher.Match match = new TemplateMatcher.Match();
+    private int targetX;
+    private int targetY;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        frame = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int v = (int) (128 + 60 * Math.sin(x / 37.0) * Math.cos(y / 53.0)) + random.nextInt(20);
+                frame[y * WIDTH + x] = gray(v);
+            }
+        }
+
+        int[] pixels = new int[size * size];
+        int[] blocks = new int[16];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = random.nextInt(256);
+        }
+        int blockSize = size / 4;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int v = blocks[(y / blockSize) * 4 + x / blockSize] + random.nextInt(30) - 15;
+                pixels[y * size + x] = gray(Math.min(255, Math.max(0, v)));
+            }
+        }
+        targetX = 700;
+        targetY = 1700;
+        for (int y = 0; y < size; y++) {
+            System.arraycopy(pixels, y * size, frame, (targetY + y) * WIDTH + targetX, size);
+        }
+
+        matcher = new TemplateMatcher(ForkJoinPool.commonPool());
+        template = new TemplateMatcher.Template(pixels, size, size);
+        matcher.setFrame(frame, WIDTH, HEIGHT, WIDTH);
+        if (!matcher.find(template, 0, 0, WIDTH, HEIGHT, 20, match)
+                || match.left != targetX || match.top != targetY) {
+            throw new IllegalStateException("模板未找到");
+        }
+    }
+
+    private static int gray(int v) {
+        return 0xFF000000 | (v << 16) | (v << 8) | v;
+    }
+
+    @Benchmark
+    public TemplateMatcher setFrame() {
+        matcher.setFrame(frame, WIDTH, HEIGHT, WIDTH);
+        return matcher;
+    }
+
+    @Benchmark
+    public boolean findFullFrame() {
+        return matcher.find(template, 0, 0, WIDTH, HEIGHT, 20, match);
+    }
+
+    @Benchmark
+    public boolean findRoi() {
+        // 目标周围三倍大小的区域
+        return matcher.find(template, targetX - size, targetY - size, targetX + 2 * size, targetY + 2 * size,
+                20, match);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.autoclick.engine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 定时轮在已有大量任务时的插入/取消开销，以及执行完所有任务的总开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimerWheelBenchmark {
+
+    @Param({"100", "10000"})
+    public int tasks;
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private TimerWheel wheel;
+    private long[] deadlines;
+    private int cursor;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Random random = new Random(42);
+        wheel = new TimerWheel(0);
+        // 任务分布在未来一天内
+        deadlines = new long[tasks];
+        for (int i = 0; i < tasks; i++) {
+            deadlines[i] = 1 + random.nextInt(24 * 3600 * 1000);
+            wheel.schedule(deadlines[i], NOOP);
+        }
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel() {
+        long deadline = deadlines[cursor++ % deadlines.length];
+        return wheel.schedule(deadline, NOOP).cancel();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int drainAll() {
+        TimerWheel drained = new TimerWheel(0);
+        for (long deadline : deadlines) {
+            drained.schedule(deadline, NOOP);
+        }
+        // 与服务中一样，每次只推进到下一个非空槽位
+        int fired = 0;
+        while (drained.size() > 0) {
+            fired += drained.advance(drained.nextTick());
+        }
+        return fired;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.autoclick.engine;
+
+/**
+ * 连发规划：把时间线上相邻的若干次点击打包进同一个手势，
+ * 每次点击对应一个笔画，按各自的相对时刻错开起点。
+ */
+public final class BurstPlanner {
+    public static final long MIN_TAP_DURATION_MS = 1;
+
+    private BurstPlanner() {
+    }
+
+    /**
+     * 从 timeline 的 from 槽位开始规划一批点击，把各笔画相对首次点击的起始偏移（毫秒）写入 outOffsetsMs。
+     * 一批内的点击需同时满足：数量不超过 maxStrokes、手势总时长不超过 maxGestureDurationMs、
+     * 起点不超出 windowMs、点击位置相同、且前后两次按下不重叠。
+     *
+     * @return 本批包含的点击数，from 越界时返回 0
+     */
+    public static int planBatch(ClickTimeline timeline, int from, long tapDurationMs,
+                                int maxStrokes, long maxGestureDurationMs, long windowMs,
+                                long[] outOffsetsMs) {
+        if (from >= timeline.size()) {
+            return 0;
+        }
+
+        long tapMs = Math.max(MIN_TAP_DURATION_MS, tapDurationMs);
+        int limit = Math.min(maxStrokes, outOffsetsMs.length);
+        long firstNanos = timeline.deadlineAt(from);
+
+        int count = 0;
+        long previousEndMs = Long.MIN_VALUE;
+        for (int i = from; i < timeline.size() && count < limit; i++) {
+            long offsetMs = (timeline.deadlineAt(i) - firstNanos) / 1_000_000L;
+            if (count > 0) {
+                if (offsetMs > windowMs) break;
+                if (offsetMs + tapMs > maxGestureDurationMs) break;
+                if (offsetMs < previousEndMs) break;
+                if (!timeline.samePoint(from, i)) break;
+            }
+            outOffsetsMs[count++] = offsetMs;
+            previousEndMs = offsetMs + tapMs;
+        }
+        return count;
+    }
+}
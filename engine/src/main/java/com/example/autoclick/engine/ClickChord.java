@@ -0,0 +1,74 @@
+package com.example.autoclick.engine;
+
+import java.util.Arrays;
+
+/**
+ * 多指同时点击：一组点放进同一个手势，每个点一个笔画，起点相同，由系统在同一次注入中一起按下。
+ *
+ * <p>文本格式：{@code x,y;x,y;...}，至少两个点。
+ */
+public final class ClickChord {
+    private final int[] xs;
+    private final int[] ys;
+
+    private ClickChord(int[] xs, int[] ys) {
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    /**
+     * 解析文本格式的多指点击，格式错误时抛出 IllegalArgumentException
+     */
+    public static ClickChord parse(String source) {
+        if (source == null) {
+            throw new IllegalArgumentException("多指点击为空");
+        }
+        String[] points = source.split(";");
+        int[] xs = new int[points.length];
+        int[] ys = new int[points.length];
+        int size = 0;
+        for (String point : points) {
+            if (point.trim().isEmpty()) continue;
+            String[] parts = point.split(",");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("无法识别的点击点: " + point.trim());
+            }
+            try {
+                xs[size] = Integer.parseInt(parts[0].trim());
+                ys[size] = Integer.parseInt(parts[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无法识别的点击点: " + point.trim());
+            }
+            if (xs[size] < 0 || ys[size] < 0) {
+                throw new IllegalArgumentException("点击坐标不能为负: " + point.trim());
+            }
+            size++;
+        }
+        if (size < 2) {
+            throw new IllegalArgumentException("多指点击至少需要两个点: " + source);
+        }
+        return new ClickChord(Arrays.copyOf(xs, size), Arrays.copyOf(ys, size));
+    }
+
+    public int size() {
+        return xs.length;
+    }
+
+    public int x(int index) {
+        return xs[index];
+    }
+
+    public int y(int index) {
+        return ys[index];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < xs.length; i++) {
+            if (i > 0) text.append(';');
+            text.append(xs[i]).append(',').append(ys[i]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.autoclick.engine;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步环形缓冲日志：热路径只把事件编号和两个 long 参数写进预分配的基本类型数组，
+ * 由后台线程格式化后写入按大小滚动的日志文件。
+ * 事件模板通过 {@link #event(String)} 预先注册，模板里的 "{}" 依次替换为两个参数。
+ * 缓冲区写满时覆盖最旧的记录，后台线程会统计丢失条数。
+ */
+public final class ClickLog {
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+
+    private static final String[] LEVEL_NAMES = {"D", "I", "W", "E"};
+
+    // 必须是 2 的幂
+    private static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+    private static final long WRITING = -1;
+
+    private static final long DRAIN_INTERVAL_NANOS = 200_000_000L;
+    private static final long MAX_FILE_BYTES = 1024 * 1024;
+    private static final int MAX_FILES = 3;
+    private static final String FILE_NAME = "click.log";
+
+    // 文本事件：参数存放在 texts 中，仅用于冷路径
+    private static final int TEXT_EVENT = -1;
+
+    private static final ArrayList<String> templates = new ArrayList<>();
+
+    private static final AtomicLong writeSequence = new AtomicLong();
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private static final long[] timestamps = new long[CAPACITY];
+    private static final int[] levels = new int[CAPACITY];
+    private static final int[] events = new int[CAPACITY];
+    private static final long[] args0 = new long[CAPACITY];
+    private static final long[] args1 = new long[CAPACITY];
+    private static final String[] texts = new String[CAPACITY];
+
+    private static volatile int minLevel = INFO;
+    private static volatile boolean echoToConsole = true;
+    private static volatile Thread writerThread;
+    private static File logDir;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, WRITING);
+        }
+    }
+
+    private ClickLog() {
+    }
+
+    /**
+     * 注册一个事件模板，返回事件编号；应在类初始化时调用并保存为常量
+     */
+    public static synchronized int event(String template) {
+        templates.add(template);
+        return templates.size() - 1;
+    }
+
+    /**
+     * 启动后台写入线程，日志写入 dir/click.log；重复调用无副作用
+     */
+    public static synchronized void start(File dir) {
+        if (writerThread != null) return;
+        logDir = dir;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "ClickLog-writer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        writerThread = thread;
+        thread.start();
+    }
+
+    public static void setLevel(int level) {
+        minLevel = level;
+    }
+
+    public static int getLevel() {
+        return minLevel;
+    }
+
+    public static boolean isDebugEnabled() {
+        return minLevel <= DEBUG;
+    }
+
+    /**
+     * 是否同时输出到标准输出（在 Android 上即 logcat），由后台线程输出
+     */
+    public static void setEchoToConsole(boolean echo) {
+        echoToConsole = echo;
+    }
+
+    public static File getLogFile() {
+        return logDir == null ? null : new File(logDir, FILE_NAME);
+    }
+
+    public static void d(int event, long arg0, long arg1) {
+        if (DEBUG >= minLevel) append(DEBUG, event, arg0, arg1, null);
+    }
+
+    public static void i(int event, long arg0, long arg1) {
+        if (INFO >= minLevel) append(INFO, event, arg0, arg1, null);
+    }
+
+    public static void w(int event, long arg0, long arg1) {
+        if (WARN >= minLevel) append(WARN, event, arg0, arg1, null);
+    }
+
+    public static void e(int event, long arg0, long arg1) {
+        if (ERROR >= minLevel) append(ERROR, event, arg0, arg1, null);
+    }
+
+    /**
+     * 文本日志，调用方已经拼好字符串，只应在冷路径使用
+     */
+    public static void text(int level, String message) {
+        if (level >= minLevel) append(level, TEXT_EVENT, 0, 0, message);
+    }
+
+    private static void append(int level, int event, long arg0, long arg1, String text) {
+        long sequence = writeSequence.getAndIncrement();
+        int index = (int) sequence & MASK;
+        published.set(index, WRITING);
+        timestamps[index] = System.currentTimeMillis();
+        levels[index] = level;
+        events[index] = event;
+        args0[index] = arg0;
+        args1[index] = arg1;
+        texts[index] = text;
+        published.lazySet(index, sequence);
+    }
+
+    private static void drainLoop() {
+        long readSequence = 0;
+        long lost = 0;
+        StringBuilder line = new StringBuilder(128);
+        Writer writer = null;
+        long fileBytes = 0;
+
+        while (true) {
+            LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+            long end = writeSequence.get();
+            if (end == readSequence) continue;
+
+            if (end - readSequence > CAPACITY) {
+                // 被生产者整圈超越，跳到仍在缓冲区中的最旧记录
+                lost += end - CAPACITY - readSequence;
+                readSequence = end - CAPACITY;
+            }
+
+            try {
+                if (writer == null) {
+                    File file = getLogFile();
+                    fileBytes = file.exists() ? file.length() : 0;
+                    writer = openWriter(file);
+                }
+
+                while (readSequence < end) {
+                    int index = (int) readSequence & MASK;
+                    long before = published.get(index);
+                    if (before < readSequence) {
+                        // 尚未写完，下一轮再读
+                        break;
+                    }
+                    line.setLength(0);
+                    if (before == readSequence) {
+                        format(line, timestamps[index], levels[index], events[index],
+                                args0[index], args1[index], texts[index]);
+                    }
+                    if (before != readSequence || published.get(index) != readSequence) {
+                        // 读取过程中被覆盖
+                        lost++;
+                        readSequence++;
+                        continue;
+                    }
+                    readSequence++;
+
+                    if (lost > 0) {
+                        String notice = "日志缓冲区溢出，丢失 " + lost + " 条\n";
+                        writer.write(notice);
+                        fileBytes += notice.length();
+                        lost = 0;
+                    }
+                    line.append('\n');
+                    writer.append(line);
+                    fileBytes += line.length();
+                    if (echoToConsole) {
+                        System.out.print(line);
+                    }
+                }
+                writer.flush();
+
+                if (fileBytes > MAX_FILE_BYTES) {
+                    writer.close();
+                    writer = null;
+                    rotate();
+                }
+            } catch (IOException e) {
+                // 写文件失败时丢弃本轮日志，避免阻塞
+                readSequence = end;
+                closeQuietly(writer);
+                writer = null;
+            }
+        }
+    }
+
+    private static void format(StringBuilder out, long timestamp, int level, int event,
+                               long arg0, long arg1, String text) {
+        out.append(timestamp).append(' ').append(LEVEL_NAMES[level]).append(' ');
+        if (event == TEXT_EVENT) {
+            out.append(text);
+            return;
+        }
+
+        String template;
+        synchronized (ClickLog.class) {
+            template = event < templates.size() ? templates.get(event) : null;
+        }
+        if (template == null) {
+            out.append("event#").append(event).append(' ').append(arg0).append(' ').append(arg1);
+            return;
+        }
+
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while ((placeholder = template.indexOf("{}", start)) >= 0) {
+            out.append(template, start, placeholder);
+            out.append(argIndex == 0 ? arg0 : arg1);
+            argIndex++;
+            start = placeholder + 2;
+        }
+        out.append(template, start, template.length());
+    }
+
+    private static Writer openWriter(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        return new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true), Charset.forName("UTF-8")));
+    }
+
+    /**
+     * click.log -> click.log.1 -> click.log.2，超出 MAX_FILES 的最旧文件被删除
+     */
+    private static void rotate() {
+        File current = getLogFile();
+        for (int i = MAX_FILES - 1; i >= 1; i--) {
+            File from = i == 1 ? current : new File(logDir, FILE_NAME + "." + (i - 1));
+            File to = new File(logDir, FILE_NAME + "." + i);
+            if (from.exists()) {
+                to.delete();
+                from.renameTo(to);
+            }
+        }
+    }
+
+    private static void closeQuietly(Writer writer) {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.autoclick.engine;
+
+/**
+ * 点击投递管线：跟踪已派发但尚未完成的手势，限制同时在途的数量，
+ * 被系统取消的单击在截止时间内自动重试，并统计投递结果。
+ * 在途记录按派发顺序保存在预分配的环形数组中，系统按同样顺序回调完成或取消。
+ */
+public class ClickPipeline {
+
+    /**
+     * 实际派发一次单击手势
+     */
+    public interface Dispatcher {
+        boolean dispatchTap(int x, int y);
+    }
+
+    // 超过该时间仍未回调的在途记录视为丢失，避免窗口被永久占满
+    private static final long STALE_NANOS = 2_000_000_000L;
+
+    private final Dispatcher dispatcher;
+    private final int maxInFlight;
+    private final long retryWindowNanos;
+    // 派发到完成回调的耗时
+    private final LatencyHistogram completionLatency;
+
+    // 在途手势的环形队列：槽位截止时刻、派发时刻、包含的点击数与坐标
+    private final long[] inFlightDeadlines;
+    private final long[] inFlightDispatchNanos;
+    private final int[] inFlightTaps;
+    private final int[] inFlightXs;
+    private final int[] inFlightYs;
+    private int head;
+    private int inFlight;
+
+    // 窗口已满时暂存的一次单击
+    private boolean hasPending;
+    private long pendingDeadline;
+    private int pendingX;
+    private int pendingY;
+
+    private int submitted;
+    private int delivered;
+    private int cancelled;
+    private int retried;
+    private int dropped;
+    private int failed;
+
+    public ClickPipeline(Dispatcher dispatcher, int maxInFlight, long retryWindowNanos,
+                         LatencyHistogram completionLatency) {
+        this.dispatcher = dispatcher;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.retryWindowNanos = Math.max(0, retryWindowNanos);
+        this.completionLatency = completionLatency;
+        this.inFlightDeadlines = new long[this.maxInFlight];
+        this.inFlightDispatchNanos = new long[this.maxInFlight];
+        this.inFlightTaps = new int[this.maxInFlight];
+        this.inFlightXs = new int[this.maxInFlight];
+        this.inFlightYs = new int[this.maxInFlight];
+    }
+
+    /**
+     * 提交一次在 (x, y)、截止时刻为 deadlineNanos 的单击；窗口已满时暂存，等待在途手势完成后再派发
+     */
+    public synchronized void submitTap(int x, int y, long deadlineNanos, long nowNanos) {
+        submitted++;
+        evictStale(nowNanos);
+        if (inFlight >= maxInFlight) {
+            if (hasPending) {
+                // 新的点击替换尚未派发的旧点击
+                dropped++;
+            }
+            hasPending = true;
+            pendingDeadline = deadlineNanos;
+            pendingX = x;
+            pendingY = y;
+            return;
+        }
+        dispatch(x, y, deadlineNanos, nowNanos);
+    }
+
+    /**
+     * 连发手势派发前检查窗口是否还有空位
+     */
+    public synchronized boolean tryAcquireBurst(long nowNanos) {
+        evictStale(nowNanos);
+        return inFlight < maxInFlight;
+    }
+
+    /**
+     * 记录一次已在外部派发的连发手势，包含 taps 次点击；连发手势被取消时不重试
+     */
+    public synchronized void onBurstDispatched(long deadlineNanos, long dispatchNanos, int planned, int taps) {
+        submitted += planned;
+        if (taps > 0) {
+            push(0, 0, deadlineNanos, dispatchNanos, taps);
+        } else {
+            failed += planned;
+        }
+    }
+
+    /**
+     * 窗口已满而放弃的一批连发点击
+     */
+    public synchronized void onBurstDropped(int planned) {
+        submitted += planned;
+        dropped += planned;
+    }
+
+    /**
+     * 队首手势完成
+     *
+     * @return 该手势派发到完成的耗时（纳秒），没有在途手势时返回 -1
+     */
+    public long onGestureCompleted(long nowNanos) {
+        long latency;
+        synchronized (this) {
+            if (inFlight == 0) return -1;
+            delivered += inFlightTaps[head];
+            latency = nowNanos - inFlightDispatchNanos[head];
+            pop();
+            dispatchPending(nowNanos);
+        }
+        // 直方图本身无锁，在锁外记录，点击线程提交时不必等它
+        completionLatency.record(latency);
+        return latency;
+    }
+
+    public synchronized void onGestureCancelled(long nowNanos) {
+        if (inFlight == 0) return;
+        long deadline = inFlightDeadlines[head];
+        int taps = inFlightTaps[head];
+        int x = inFlightXs[head];
+        int y = inFlightYs[head];
+        pop();
+
+        if (taps == 1 && nowNanos <= deadline + retryWindowNanos) {
+            // 截止时间内重试被取消的单击
+            retried++;
+            dispatch(x, y, deadline, nowNanos);
+        } else {
+            cancelled += taps;
+        }
+        dispatchPending(nowNanos);
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getSubmitted() {
+        return submitted;
+    }
+
+    public synchronized int getDelivered() {
+        return delivered;
+    }
+
+    public synchronized int getCancelled() {
+        return cancelled;
+    }
+
+    public synchronized int getRetried() {
+        return retried;
+    }
+
+    public synchronized int getDropped() {
+        return dropped;
+    }
+
+    public synchronized int getFailed() {
+        return failed;
+    }
+
+    public synchronized String summary() {
+        return "提交: " + submitted + ", 送达: " + delivered + ", 取消: " + cancelled
+                + ", 重试: " + retried + ", 丢弃: " + dropped + ", 派发失败: " + failed;
+    }
+
+    private void dispatchPending(long nowNanos) {
+        if (!hasPending || inFlight >= maxInFlight) return;
+        hasPending = false;
+        if (nowNanos > pendingDeadline + retryWindowNanos) {
+            // 已经错过截止时间，不再补发
+            dropped++;
+            return;
+        }
+        dispatch(pendingX, pendingY, pendingDeadline, nowNanos);
+    }
+
+    private void dispatch(int x, int y, long deadlineNanos, long nowNanos) {
+        if (dispatcher.dispatchTap(x, y)) {
+            push(x, y, deadlineNanos, nowNanos, 1);
+        } else {
+            // 派发失败不会有回调
+            failed++;
+        }
+    }
+
+    private void evictStale(long nowNanos) {
+        while (inFlight > 0 && nowNanos - inFlightDeadlines[head] > STALE_NANOS) {
+            cancelled += inFlightTaps[head];
+            pop();
+        }
+    }
+
+    private void push(int x, int y, long deadlineNanos, long dispatchNanos, int taps) {
+        if (inFlight >= maxInFlight) {
+            // 外部派发的手势超出窗口时，最旧的记录视为丢失
+            cancelled += inFlightTaps[head];
+            pop();
+        }
+        int tail = (head + inFlight) % maxInFlight;
+        inFlightDeadlines[tail] = deadlineNanos;
+        inFlightDispatchNanos[tail] = dispatchNanos;
+        inFlightTaps[tail] = taps;
+        inFlightXs[tail] = x;
+        inFlightYs[tail] = y;
+        inFlight++;
+    }
+
+    private void pop() {
+        head = (head + 1) % maxInFlight;
+        inFlight--;
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.autoclick.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多步点击脚本：按顺序执行的步骤，包括在某点点击、等待、重复一段步骤。
+ * 布置任务前通过 {@link #compile()} 展开成扁平的基本类型数组，执行时无需再解析或分配。
+ *
+ * <p>文本格式，步骤之间用分号或换行分隔：
+ * <pre>
+ * tap 540 1200; wait 80
+ * repeat 5 { tap 300 400; wait 120 }
+ * </pre>
+ */
+public final class ClickScript {
+    // 展开后的点击数上限，防止重复块嵌套导致内存失控
+    public static final int MAX_TAPS = 200_000;
+    // 展开后的步骤数（点击加等待，重复块每次迭代至少一步）上限：只含等待或为空的重复块不占点击数，也不能让展开无限循环
+    public static final int MAX_STEPS = 1_000_000;
+
+    private static final int STEP_TAP = 0;
+    private static final int STEP_WAIT = 1;
+    private static final int STEP_REPEAT = 2;
+
+    private static final class Step {
+        final int type;
+        final int x;
+        final int y;
+        final long waitMs;
+        final int repeatCount;
+        final ClickScript body;
+
+        Step(int type, int x, int y, long waitMs, int repeatCount, ClickScript body) {
+            this.type = type;
+            this.x = x;
+            this.y = y;
+            this.waitMs = waitMs;
+            this.repeatCount = repeatCount;
+            this.body = body;
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+
+    public ClickScript tap(int x, int y) {
+        steps.add(new Step(STEP_TAP, x, y, 0, 0, null));
+        return this;
+    }
+
+    public ClickScript waitMs(long ms) {
+        if (ms < 0) {
+            throw new IllegalArgumentException("等待时间不能为负: " + ms);
+        }
+        steps.add(new Step(STEP_WAIT, 0, 0, ms, 0, null));
+        return this;
+    }
+
+    public ClickScript repeat(int count, ClickScript body) {
+        if (count < 0) {
+            throw new IllegalArgumentException("重复次数不能为负: " + count);
+        }
+        steps.add(new Step(STEP_REPEAT, 0, 0, 0, count, body));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return steps.isEmpty();
+    }
+
+    /**
+     * 展开为扁平时间线：每次点击相对脚本开始的偏移和坐标
+     */
+    public Compiled compile() {
+        int taps = (int) count(0, true);
+        count(0, false);
+        Compiled out = new Compiled(taps);
+        long end = emit(out, 0);
+        out.durationMs = end;
+        return out;
+    }
+
+    /**
+     * 展开后的点击数（tapsOnly）或步骤数，超出上限时抛出 IllegalArgumentException
+     */
+    private long count(int depth, boolean tapsOnly) {
+        if (depth > 32) {
+            throw new IllegalArgumentException("重复块嵌套过深");
+        }
+        long limit = tapsOnly ? MAX_TAPS : MAX_STEPS;
+        long total = 0;
+        for (Step step : steps) {
+            if (step.type == STEP_REPEAT) {
+                long body = step.body.count(depth + 1, tapsOnly);
+                // 空循环体和只含重复块的循环体也要逐次执行，每次至少算一步
+                total += (long) step.repeatCount * (tapsOnly ? body : Math.max(1, body));
+            } else if (step.type == STEP_TAP || !tapsOnly) {
+                total++;
+            }
+            if (total > limit) {
+                throw new IllegalArgumentException(tapsOnly
+                        ? "脚本展开后点击次数超过上限 " + MAX_TAPS
+                        : "脚本展开后步骤数超过上限 " + MAX_STEPS);
+            }
+        }
+        return total;
+    }
+
+    private long emit(Compiled out, long cursorMs) {
+        for (Step step : steps) {
+            switch (step.type) {
+                case STEP_TAP:
+                    out.offsetsMs[out.size] = cursorMs;
+                    out.xs[out.size] = step.x;
+                    out.ys[out.size] = step.y;
+                    out.size++;
+                    break;
+                case STEP_WAIT:
+                    cursorMs += step.waitMs;
+                    break;
+                default:
+                    for (int i = 0; i < step.repeatCount; i++) {
+                        cursorMs = step.body.emit(out, cursorMs);
+                    }
+                    break;
+            }
+        }
+        return cursorMs;
+    }
+
+    /**
+     * 编译结果：按时间排序的点击偏移（毫秒）与坐标
+     */
+    public static final class Compiled {
+        final long[] offsetsMs;
+        final int[] xs;
+        final int[] ys;
+        int size;
+        long durationMs;
+
+        Compiled(int capacity) {
+            offsetsMs = new long[capacity];
+            xs = new int[capacity];
+            ys = new int[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long offsetMsAt(int index) {
+            return offsetsMs[index];
+        }
+
+        public int xAt(int index) {
+            return xs[index];
+        }
+
+        public int yAt(int index) {
+            return ys[index];
+        }
+
+        /**
+         * 脚本总时长，包括最后一次点击之后的等待
+         */
+        public long durationMs() {
+            return durationMs;
+        }
+    }
+
+    /**
+     * 解析文本脚本，格式错误时抛出 IllegalArgumentException
+     */
+    public static ClickScript parse(String source) {
+        Parser parser = new Parser(source);
+        ClickScript script = parser.parseBlock(false);
+        if (script.isEmpty()) {
+            throw new IllegalArgumentException("脚本为空");
+        }
+        return script;
+    }
+
+    private static final class Parser {
+        private final String source;
+        private int pos;
+
+        Parser(String source) {
+            this.source = source == null ? "" : source;
+        }
+
+        ClickScript parseBlock(boolean nested) {
+            ClickScript script = new ClickScript();
+            while (true) {
+                skipSeparators();
+                if (pos >= source.length()) {
+                    if (nested) throw error("缺少 }");
+                    return script;
+                }
+                if (source.charAt(pos) == '}') {
+                    if (!nested) throw error("多余的 }");
+                    pos++;
+                    return script;
+                }
+
+                String word = readWord();
+                if ("tap".equalsIgnoreCase(word)) {
+                    script.tap(readInt(), readInt());
+                } else if ("wait".equalsIgnoreCase(word)) {
+                    script.waitMs(readInt());
+                } else if ("repeat".equalsIgnoreCase(word)) {
+                    int count = readInt();
+                    skipWhitespace();
+                    if (pos >= source.length() || source.charAt(pos) != '{') throw error("repeat 后缺少 {");
+                    pos++;
+                    script.repeat(count, parseBlock(true));
+                } else {
+                    throw error("未知步骤 \"" + word + "\"");
+                }
+            }
+        }
+
+        private void skipSeparators() {
+            while (pos < source.length()) {
+                char c = source.charAt(pos);
+                if (c == ';' || Character.isWhitespace(c)) {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private String readWord() {
+            skipWhitespace();
+            int start = pos;
+            while (pos < source.length() && Character.isLetter(source.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) throw error("需要步骤名");
+            return source.substring(start, pos);
+        }
+
+        private int readInt() {
+            skipWhitespace();
+            int start = pos;
+            if (pos < source.length() && source.charAt(pos) == '-') pos++;
+            while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) throw error("需要数字");
+            try {
+                return Integer.parseInt(source.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("数字格式错误");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("脚本第 " + (pos + 1) + " 个字符处: " + message);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.autoclick.engine;
+
+import java.util.Random;
+
+/**
+ * 预先计算好的点击时间线：任务布置时一次性生成所有点击的绝对时刻（纳秒，含随机抖动），
+ * 点击循环只按下标读取，不再在热路径上生成随机数或分配对象。
+ * 由脚本生成的时间线还带有每次点击各自的坐标。
+ */
+public final class ClickTimeline {
+
+    /**
+     * 错过槽位时的处理策略
+     */
+    public enum MissedSlotPolicy {
+        // 只补最近一个已到期的槽位，其余丢弃，保持后续节奏
+        SKIP,
+        // 逐个补发已到期的槽位，直到追上时间线
+        COMPRESS
+    }
+
+    private final long[] deadlines;
+    private final int size;
+    // 每个槽位的坐标，单点任务为 null
+    private final int[] xs;
+    private final int[] ys;
+
+    private ClickTimeline(long[] deadlines, int size, int[] xs, int[] ys) {
+        this.deadlines = deadlines;
+        this.size = size;
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    /**
+     * 生成 [startNanos, startNanos + durationNanos] 区间内的点击时间线，
+     * 相邻点击间隔为 baseIntervalMs + [0, randomRangeMs] 的随机值
+     */
+    public static ClickTimeline build(long startNanos, long durationNanos,
+                                      int baseIntervalMs, int randomRangeMs, Random random) {
+        long baseNanos = Math.max(1, baseIntervalMs) * 1_000_000L;
+        long endNanos = startNanos + Math.max(0, durationNanos);
+
+        // 间隔不小于 baseInterval，据此得到容量上限，无需扩容
+        long capacity = Math.max(0, durationNanos) / baseNanos + 1;
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("点击次数过多: " + capacity);
+        }
+
+        long[] deadlines = new long[(int) capacity];
+        int size = 0;
+        long t = startNanos;
+        while (t <= endNanos && size < deadlines.length) {
+            deadlines[size++] = t;
+            long interval = baseNanos;
+            if (randomRangeMs > 0) {
+                interval += random.nextInt(randomRangeMs + 1) * 1_000_000L;
+            }
+            t += interval;
+        }
+        return new ClickTimeline(deadlines, size, null, null);
+    }
+
+    /**
+     * 把编译好的脚本放到以 startNanos 开始的绝对时间线上
+     */
+    public static ClickTimeline fromScript(long startNanos, ClickScript.Compiled script) {
+        int size = script.size();
+        long[] deadlines = new long[size];
+        int[] xs = new int[size];
+        int[] ys = new int[size];
+        for (int i = 0; i < size; i++) {
+            deadlines[i] = startNanos + script.offsetMsAt(i) * 1_000_000L;
+            xs[i] = script.xAt(i);
+            ys[i] = script.yAt(i);
+        }
+        return new ClickTimeline(deadlines, size, xs, ys);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long deadlineAt(int index) {
+        return deadlines[index];
+    }
+
+    /**
+     * 是否每个槽位带有自己的坐标
+     */
+    public boolean hasPoints() {
+        return xs != null;
+    }
+
+    public int xAt(int index) {
+        return xs[index];
+    }
+
+    public int yAt(int index) {
+        return ys[index];
+    }
+
+    /**
+     * 两个槽位是否点击同一位置；单点任务总是同一位置
+     */
+    public boolean samePoint(int a, int b) {
+        return xs == null || (xs[a] == xs[b] && ys[a] == ys[b]);
+    }
+
+    /**
+     * 整条时间线平移 deltaNanos，间隔不变；只能在开始点击前调用，用于按最新的提前量调整首次点击时刻
+     */
+    public void shift(long deltaNanos) {
+        for (int i = 0; i < size; i++) {
+            deadlines[i] += deltaNanos;
+        }
+    }
+
+    public long startNanos() {
+        return size > 0 ? deadlines[0] : 0;
+    }
+
+    public long lastDeadlineNanos() {
+        return size > 0 ? deadlines[size - 1] : 0;
+    }
+
+    /**
+     * 根据当前时刻和策略，返回从 index 起本次应执行的槽位下标；
+     * 返回值与 index 的差即为被跳过的槽位数
+     */
+    public int nextSlot(int index, long nowNanos, MissedSlotPolicy policy) {
+        if (policy == MissedSlotPolicy.SKIP) {
+            while (index + 1 < size && deadlines[index + 1] <= nowNanos) {
+                index++;
+            }
+        }
+        return index;
+    }
+}
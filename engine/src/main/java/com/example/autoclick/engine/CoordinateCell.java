@@ -0,0 +1,50 @@
+package com.example.autoclick.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内共享的坐标单元：x、y 打包进一个 long，写入和读取都是一次原子操作，
+ * 读取方不会看到新 x 配旧 y 的半更新坐标，也不需要加锁。
+ */
+public final class CoordinateCell {
+    // 未设置坐标；x 为 Integer.MIN_VALUE 的坐标不会出现在屏幕上
+    public static final long UNSET = Long.MIN_VALUE;
+
+    private final AtomicLong packed = new AtomicLong(UNSET);
+    private final AtomicLong publishCount = new AtomicLong();
+
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int x(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public static int y(long packed) {
+        return (int) packed;
+    }
+
+    public void publish(int x, int y) {
+        packed.set(pack(x, y));
+        publishCount.incrementAndGet();
+    }
+
+    /**
+     * 当前坐标的打包值，未设置时返回 UNSET
+     */
+    public long get() {
+        return packed.get();
+    }
+
+    public void clear() {
+        packed.set(UNSET);
+    }
+
+    /**
+     * 累计发布次数，用于观察合并效果
+     */
+    public long getPublishCount() {
+        return publishCount.get();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.autoclick.engine;
+
+/**
+ * 倒计时文本格式化：按剩余时间输出 HH:mm:ss.SSS / mm:ss.SSS / ss.SSS，
+ * 直接写入调用方提供的 char 数组，不产生中间字符串。
+ */
+public final class CountdownFormatter {
+    // 输出的最大长度：小时数最多 13 位，加上 ":mm:ss.SSS"
+    public static final int MAX_LENGTH = 24;
+
+    public static final int COLOR_GREEN = 0xFF00FF00;
+    public static final int COLOR_YELLOW = 0xFFFFFF00;
+    public static final int COLOR_RED = 0xFFFF0000;
+
+    private CountdownFormatter() {
+    }
+
+    /**
+     * 把剩余时间格式化进 out，返回写入的字符数；out 长度至少为 MAX_LENGTH
+     */
+    public static int format(long remainingMs, char[] out) {
+        long remaining = Math.max(0, remainingMs);
+        long hours = remaining / (1000 * 60 * 60);
+        int minutes = (int) ((remaining % (1000 * 60 * 60)) / (1000 * 60));
+        int seconds = (int) ((remaining % (1000 * 60)) / 1000);
+        int milliseconds = (int) (remaining % 1000);
+
+        int pos = 0;
+        if (hours > 0) {
+            pos = writeHours(hours, out, pos);
+            out[pos++] = ':';
+            pos = write2(minutes, out, pos);
+            out[pos++] = ':';
+        } else if (minutes > 0) {
+            pos = write2(minutes, out, pos);
+            out[pos++] = ':';
+        }
+        pos = write2(seconds, out, pos);
+        out[pos++] = '.';
+        out[pos++] = (char) ('0' + milliseconds / 100);
+        out[pos++] = (char) ('0' + milliseconds / 10 % 10);
+        out[pos++] = (char) ('0' + milliseconds % 10);
+        return pos;
+    }
+
+    /**
+     * 便捷版本，会分配字符串，仅用于非热路径
+     */
+    public static String format(long remainingMs) {
+        char[] buffer = new char[MAX_LENGTH];
+        return new String(buffer, 0, format(remainingMs, buffer));
+    }
+
+    /**
+     * 根据剩余时间选择颜色：1 分钟以上绿色，10 秒以上黄色，否则红色
+     */
+    public static int colorFor(long remainingMs) {
+        if (remainingMs > 60000) {
+            return COLOR_GREEN;
+        } else if (remainingMs > 10000) {
+            return COLOR_YELLOW;
+        }
+        return COLOR_RED;
+    }
+
+    private static int write2(int value, char[] out, int pos) {
+        out[pos++] = (char) ('0' + value / 10);
+        out[pos++] = (char) ('0' + value % 10);
+        return pos;
+    }
+
+    private static int writeHours(long hours, char[] out, int pos) {
+        if (hours < 100) {
+            return write2((int) hours, out, pos);
+        }
+        // 超过两位的小时数，先倒序写入再翻转
+        int start = pos;
+        while (hours > 0) {
+            out[pos++] = (char) ('0' + hours % 10);
+            hours /= 10;
+        }
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            char c = out[i];
+            out[i] = out[j];
+            out[j] = c;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.autoclick.engine;
+
+/**
+ * 无障碍事件触发条件：某个应用的窗口切换到前台、界面上出现某段文字、某个控件的内容发生变化。
+ * 只描述条件本身和它需要订阅的事件类型，节点内容的匹配由无障碍服务完成。
+ *
+ * <p>文本格式（便于通过 Intent 和任务日志传递）：
+ * <pre>
+ * window:包名
+ * text:[包名]:文字
+ * view:[包名]:控件资源 id   例如 view:com.foo:com.foo:id/submit
+ * </pre>
+ */
+public final class EventTrigger {
+
+    // 与 android.view.accessibility.AccessibilityEvent 中的取值一致
+    public static final int TYPE_VIEW_TEXT_CHANGED = 0x00000010;
+    public static final int TYPE_WINDOW_STATE_CHANGED = 0x00000020;
+    public static final int TYPE_WINDOW_CONTENT_CHANGED = 0x00000800;
+
+    public enum Kind {
+        // 指定应用的窗口切换到前台
+        WINDOW,
+        // 界面上出现包含指定文字的节点
+        TEXT,
+        // 指定资源 id 的控件内容发生变化
+        VIEW
+    }
+
+    private final Kind kind;
+    private final String packageName;   // 为 null 时不限应用
+    private final String value;         // TEXT 的文字或 VIEW 的资源 id
+
+    private EventTrigger(Kind kind, String packageName, String value) {
+        this.kind = kind;
+        this.packageName = packageName;
+        this.value = value;
+    }
+
+    public static EventTrigger window(String packageName) {
+        if (packageName == null || packageName.isEmpty()) {
+            throw new IllegalArgumentException("窗口触发必须指定包名");
+        }
+        return new EventTrigger(Kind.WINDOW, packageName, null);
+    }
+
+    public static EventTrigger text(String packageName, String text) {
+        if (text == null || text.isEmpty()) {
+            throw new IllegalArgumentException("文字触发必须指定文字");
+        }
+        return new EventTrigger(Kind.TEXT, emptyToNull(packageName), text);
+    }
+
+    public static EventTrigger view(String packageName, String viewId) {
+        if (viewId == null || viewId.isEmpty()) {
+            throw new IllegalArgumentException("控件触发必须指定资源 id");
+        }
+        return new EventTrigger(Kind.VIEW, emptyToNull(packageName), viewId);
+    }
+
+    /**
+     * 解析文本格式的触发条件，格式错误时抛出 IllegalArgumentException
+     */
+    public static EventTrigger parse(String source) {
+        if (source == null) {
+            throw new IllegalArgumentException("触发条件为空");
+        }
+        String[] parts = source.trim().split(":", 3);
+        String kind = parts[0].trim();
+        if ("window".equals(kind) && parts.length == 2) {
+            return window(parts[1].trim());
+        }
+        if ("text".equals(kind) && parts.length == 3) {
+            return text(parts[1].trim(), parts[2]);
+        }
+        if ("view".equals(kind) && parts.length == 3) {
+            return view(parts[1].trim(), parts[2].trim());
+        }
+        throw new IllegalArgumentException("无法识别的触发条件: " + source);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public String packageName() {
+        return packageName;
+    }
+
+    public String value() {
+        return value;
+    }
+
+    /**
+     * 判断条件需要订阅的事件类型
+     */
+    public int eventTypes() {
+        switch (kind) {
+            case WINDOW:
+                return TYPE_WINDOW_STATE_CHANGED;
+            case TEXT:
+                // 文字可能随新窗口、局部刷新或输入框变化出现
+                return TYPE_WINDOW_STATE_CHANGED | TYPE_WINDOW_CONTENT_CHANGED | TYPE_VIEW_TEXT_CHANGED;
+            default:
+                return TYPE_WINDOW_CONTENT_CHANGED;
+        }
+    }
+
+    /**
+     * 只看事件类型和来源应用的预筛选，通过后才需要检查节点内容
+     */
+    public boolean accepts(int eventType, CharSequence eventPackage) {
+        if ((eventTypes() & eventType) == 0) return false;
+        return packageName == null || (eventPackage != null && packageName.contentEquals(eventPackage));
+    }
+
+    @Override
+    public String toString() {
+        String pkg = packageName == null ? "" : packageName;
+        switch (kind) {
+            case WINDOW:
+                return "window:" + pkg;
+            case TEXT:
+                return "text:" + pkg + ":" + value;
+            default:
+                return "view:" + pkg + ":" + value;
+        }
+    }
+}
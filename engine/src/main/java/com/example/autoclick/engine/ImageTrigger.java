@@ -0,0 +1,91 @@
+package com.example.autoclick.engine;
+
+/**
+ * 图像触发条件：屏幕上出现参考图像时触发，并在图像中心点击。
+ *
+ * <p>文本格式：{@code image:图片路径[,阈值[,left,top,right,bottom]]}，路径中不能有逗号。
+ * 阈值为平均每像素灰度差上限，默认 20；后四个数为感兴趣区域，默认整个屏幕。
+ */
+public final class ImageTrigger {
+    public static final String PREFIX = "image:";
+    private static final double DEFAULT_MAX_SCORE = 20;
+
+    private final String path;
+    private final double maxScore;
+    private final int roiLeft;
+    private final int roiTop;
+    private final int roiRight;
+    private final int roiBottom;
+
+    private ImageTrigger(String path, double maxScore, int roiLeft, int roiTop, int roiRight, int roiBottom) {
+        this.path = path;
+        this.maxScore = maxScore;
+        this.roiLeft = roiLeft;
+        this.roiTop = roiTop;
+        this.roiRight = roiRight;
+        this.roiBottom = roiBottom;
+    }
+
+    public static boolean isImageSpec(String source) {
+        return source != null && source.trim().startsWith(PREFIX);
+    }
+
+    /**
+     * 解析文本格式的图像触发条件，格式错误时抛出 IllegalArgumentException
+     */
+    public static ImageTrigger parse(String source) {
+        if (!isImageSpec(source)) {
+            throw new IllegalArgumentException("不是图像触发条件: " + source);
+        }
+        String[] fields = source.trim().substring(PREFIX.length()).split(",");
+        String path = fields[0].trim();
+        if (path.isEmpty() || (fields.length != 1 && fields.length != 2 && fields.length != 6)) {
+            throw new IllegalArgumentException("图像触发格式应为 image:路径[,阈值[,left,top,right,bottom]]: " + source);
+        }
+        try {
+            double maxScore = fields.length > 1 ? Double.parseDouble(fields[1].trim()) : DEFAULT_MAX_SCORE;
+            if (fields.length == 6) {
+                int left = Integer.parseInt(fields[2].trim());
+                int top = Integer.parseInt(fields[3].trim());
+                int right = Integer.parseInt(fields[4].trim());
+                int bottom = Integer.parseInt(fields[5].trim());
+                if (right <= left || bottom <= top) {
+                    throw new IllegalArgumentException("感兴趣区域为空: " + source);
+                }
+                return new ImageTrigger(path, maxScore, left, top, right, bottom);
+            }
+            return new ImageTrigger(path, maxScore, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("图像触发参数不是数字: " + source);
+        }
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public double maxScore() {
+        return maxScore;
+    }
+
+    public int roiLeft() {
+        return roiLeft;
+    }
+
+    public int roiTop() {
+        return roiTop;
+    }
+
+    public int roiRight() {
+        return roiRight;
+    }
+
+    public int roiBottom() {
+        return roiBottom;
+    }
+
+    @Override
+    public String toString() {
+        return PREFIX + path + "," + maxScore;
+    }
+}
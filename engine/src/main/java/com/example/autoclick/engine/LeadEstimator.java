@@ -0,0 +1,150 @@
+package com.example.autoclick.engine;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 输入延迟（派发手势到目标应用收到触摸）的稳健估计：保留最近 WINDOW 个样本，中位数为估计值，
+ * 中位数绝对偏差（MAD）衡量离散程度，偶发的调度卡顿或错配的事件不会拉偏结果。
+ * 置信半宽取中位数的标准误 1.253 * 1.4826 * MAD / sqrt(n)。
+ * 样本不足 MIN_SAMPLES 时不给出估计。线程安全，添加样本不分配对象。
+ */
+public final class LeadEstimator {
+    public static final int WINDOW = 64;
+    public static final int MIN_SAMPLES = 8;
+    private static final int VERSION = 1;
+    // MAD 换算为正态分布标准差的系数，乘以中位数相对均值的效率损失
+    private static final double STANDARD_ERROR_FACTOR = 1.4826 * 1.2533;
+
+    private final long[] samples = new long[WINDOW];
+    private final long[] scratch = new long[WINDOW];
+    private int size;
+    private int next;                // 下一个写入位置，窗口满后覆盖最旧的样本
+    private long total;              // 累计收到的样本数
+    private boolean stale = true;
+    private long median;
+    private long mad;
+
+    public synchronized void add(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % WINDOW;
+        if (size < WINDOW) size++;
+        total++;
+        stale = true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long total() {
+        return total;
+    }
+
+    public synchronized boolean isReady() {
+        return size >= MIN_SAMPLES;
+    }
+
+    /**
+     * 估计值（纳秒），没有样本时为 0
+     */
+    public synchronized long median() {
+        update();
+        return median;
+    }
+
+    public synchronized long mad() {
+        update();
+        return mad;
+    }
+
+    /**
+     * 估计值的置信半宽（纳秒），约 68% 置信
+     */
+    public synchronized long confidenceNanos() {
+        if (size == 0) return 0;
+        update();
+        return (long) (STANDARD_ERROR_FACTOR * mad / Math.sqrt(size));
+    }
+
+    public synchronized void clear() {
+        size = 0;
+        next = 0;
+        total = 0;
+        stale = true;
+    }
+
+    private void update() {
+        if (!stale) return;
+        stale = false;
+        if (size == 0) {
+            median = 0;
+            mad = 0;
+            return;
+        }
+        System.arraycopy(samples, 0, scratch, 0, size);
+        median = middle(scratch, size);
+        for (int i = 0; i < size; i++) {
+            scratch[i] = Math.abs(samples[i] - median);
+        }
+        mad = middle(scratch, size);
+    }
+
+    private static long middle(long[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int half = count >> 1;
+        return (count & 1) != 0 ? values[half] : (values[half - 1] + values[half]) / 2;
+    }
+
+    public synchronized String summary() {
+        if (size == 0) return "无样本";
+        return String.format(Locale.US, "%.2fms ± %.2fms, MAD %.2fms (样本 %d)",
+                median() / 1e6, confidenceNanos() / 1e6, mad / 1e6, size);
+    }
+
+    /**
+     * 序列化窗口内的样本，从旧到新
+     */
+    public synchronized byte[] toBytes() {
+        ByteBuffer out = ByteBuffer.allocate(1 + 8 + 4 + size * 8);
+        out.put((byte) VERSION);
+        out.putLong(total);
+        out.putInt(size);
+        int oldest = size < WINDOW ? 0 : next;
+        for (int i = 0; i < size; i++) {
+            out.putLong(samples[(oldest + i) % WINDOW]);
+        }
+        return out.array();
+    }
+
+    /**
+     * 用 in 中序列化的样本替换当前内容，格式错误时抛出 IOException 且内容不变
+     */
+    public synchronized void read(ByteBuffer in) throws IOException {
+        try {
+            int version = in.get();
+            if (version != VERSION) {
+                throw new IOException("不支持的输入延迟样本版本: " + version);
+            }
+            long storedTotal = in.getLong();
+            int count = in.getInt();
+            if (count < 0 || count > WINDOW) {
+                throw new IOException("输入延迟样本数无效: " + count);
+            }
+            long[] stored = new long[count];
+            for (int i = 0; i < count; i++) {
+                stored[i] = in.getLong();
+            }
+            System.arraycopy(stored, 0, samples, 0, count);
+            size = count;
+            next = count % WINDOW;
+            total = storedTotal;
+            stale = true;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("输入延迟样本已截断", e);
+        }
+    }
+}
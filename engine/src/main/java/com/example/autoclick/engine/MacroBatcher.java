@@ -0,0 +1,191 @@
+package com.example.autoclick.engine;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 把触摸宏的事件流切成一个个手势：同一批内的笔画保持录制时的相对时刻，由系统按毫秒排布，
+ * 批与批之间只在所有手指都已抬起的空档切开，因为新手势会取消仍在进行的手势。
+ * 每批笔画数不超过 maxStrokes、时长不超过 maxDurationMs；
+ * 单次连续触摸（从第一根手指按下到全部抬起）本身超出上限时，多余的手指被忽略，超时部分被截掉。
+ * 只缓存当前一批的数据，非线程安全。
+ */
+public final class MacroBatcher {
+    private static final int NONE = -1;
+    // 超出笔画数或时长上限而被忽略的手指
+    private static final int IGNORED = -2;
+
+    private final MacroReader reader;
+    private final int maxStrokes;
+    private final long maxDurationMs;
+
+    private StrokeBatch work = new StrokeBatch();
+    private StrokeBatch spare = new StrokeBatch();
+    // 每根手指当前对应的笔画
+    private final int[] active = new int[TouchMacro.MAX_POINTERS];
+    private int activeCount;
+    private int sessionFirstStroke;
+    private long sessionStartMs;
+    private boolean sessionClipped;
+    private boolean ended;
+
+    private long truncated;
+    private long batches;
+
+    public MacroBatcher(MacroReader reader, int maxStrokes, long maxDurationMs) {
+        if (maxStrokes < 1 || maxDurationMs < 1) {
+            throw new IllegalArgumentException("手势上限无效: " + maxStrokes + ", " + maxDurationMs);
+        }
+        this.reader = reader;
+        this.maxStrokes = maxStrokes;
+        this.maxDurationMs = maxDurationMs;
+        Arrays.fill(active, NONE);
+    }
+
+    /**
+     * 解码出下一批笔画写入 out
+     *
+     * @return 已没有更多笔画时返回 false
+     */
+    public boolean next(StrokeBatch out) throws IOException {
+        while (!ended) {
+            if (!reader.next()) {
+                ended = true;
+                // 录制在手指抬起前结束，按最后一条事件的时间抬起
+                if (activeCount > 0) {
+                    for (int pid = 0; pid < active.length; pid++) {
+                        if (active[pid] != NONE) {
+                            up(pid, reader.timeMs(), Integer.MIN_VALUE, 0);
+                        }
+                    }
+                    if (closeSession(out)) return true;
+                }
+                break;
+            }
+            int pid = reader.pointerId();
+            long t = reader.timeMs();
+            switch (reader.action()) {
+                case TouchMacro.ACTION_DOWN:
+                    down(pid, t, reader.x(), reader.y());
+                    break;
+                case TouchMacro.ACTION_MOVE:
+                    move(pid, t, reader.x(), reader.y());
+                    break;
+                default:
+                    if (up(pid, t, reader.x(), reader.y()) && activeCount == 0 && closeSession(out)) {
+                        return true;
+                    }
+                    break;
+            }
+        }
+
+        // 事件流结束，剩下的笔画作为最后一批
+        if (work.size() == 0) return false;
+        out.clear();
+        out.setStartMs(work.startMs());
+        for (int i = 0; i < work.size(); i++) {
+            out.copyStroke(work, i, 0);
+        }
+        work.clear();
+        batches++;
+        return true;
+    }
+
+    private void down(int pid, long t, int x, int y) {
+        if (active[pid] != NONE) {
+            // 缺少抬起记录，先结束上一笔
+            up(pid, t, x, y);
+        }
+        if (activeCount == 0) {
+            sessionFirstStroke = work.size();
+            sessionStartMs = t;
+            if (work.size() == 0) {
+                work.setStartMs(t);
+            }
+        }
+        activeCount++;
+        if (work.size() - sessionFirstStroke >= maxStrokes || t - sessionStartMs >= maxDurationMs) {
+            active[pid] = IGNORED;
+            truncated++;
+            return;
+        }
+        int stroke = work.addStroke(t - work.startMs());
+        work.addPoint(stroke, x, y);
+        active[pid] = stroke;
+    }
+
+    private void move(int pid, long t, int x, int y) {
+        int stroke = active[pid];
+        if (stroke < 0) return;
+        if (t - sessionStartMs > maxDurationMs) {
+            sessionClipped = true;
+            return;
+        }
+        work.addPoint(stroke, x, y);
+    }
+
+    /**
+     * 结束一根手指的笔画；x 为 Integer.MIN_VALUE 时不追加抬起点
+     *
+     * @return 这根手指此前处于按下状态时返回 true
+     */
+    private boolean up(int pid, long t, int x, int y) {
+        int stroke = active[pid];
+        if (stroke == NONE) return false;
+        active[pid] = NONE;
+        activeCount--;
+        if (stroke == IGNORED) return true;
+
+        long endMs = Math.min(t, sessionStartMs + maxDurationMs);
+        if (t > endMs) {
+            sessionClipped = true;
+        } else if (x != Integer.MIN_VALUE) {
+            work.addPoint(stroke, x, y);
+        }
+        long startMs = work.startMs() + work.strokeStartMs(stroke);
+        // 系统要求笔画时长为正
+        work.setDurationMs(stroke, Math.max(1, endMs - startMs));
+        return true;
+    }
+
+    /**
+     * 一次连续触摸结束：加入它后本批超出上限时，把它之前的笔画作为一批写入 out，它留作下一批的开头
+     */
+    private boolean closeSession(StrokeBatch out) {
+        if (sessionClipped) {
+            truncated++;
+            sessionClipped = false;
+        }
+        if (work.size() <= maxStrokes && work.durationMs() <= maxDurationMs) return false;
+
+        // 单次触摸已限制在上限内，这里 sessionFirstStroke 一定大于 0
+        out.clear();
+        out.setStartMs(work.startMs());
+        for (int i = 0; i < sessionFirstStroke; i++) {
+            out.copyStroke(work, i, 0);
+        }
+        spare.clear();
+        spare.setStartMs(sessionStartMs);
+        long shiftMs = work.startMs() - sessionStartMs;
+        for (int i = sessionFirstStroke; i < work.size(); i++) {
+            spare.copyStroke(work, i, shiftMs);
+        }
+        StrokeBatch swap = work;
+        work = spare;
+        spare = swap;
+        sessionFirstStroke = 0;
+        batches++;
+        return true;
+    }
+
+    /**
+     * 因超出笔画数或时长上限被忽略的手指和被截短的触摸次数
+     */
+    public long getTruncated() {
+        return truncated;
+    }
+
+    public long getBatchCount() {
+        return batches;
+    }
+}
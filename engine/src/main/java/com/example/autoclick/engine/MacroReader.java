@@ -0,0 +1,107 @@
+package com.example.autoclick.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 顺序解码 TouchMacro 格式：每次 next 解出一条事件，通过访问方法读取，解码过程不分配对象。非线程安全。
+ */
+public final class MacroReader {
+    private final ByteBuffer in;
+
+    private final int[] lastX = new int[TouchMacro.MAX_POINTERS];
+    private final int[] lastY = new int[TouchMacro.MAX_POINTERS];
+    private long timeMs;
+    private int action;
+    private int pointerId;
+    private long eventCount;
+
+    /**
+     * 从 in 的当前位置开始解码，先校验文件头
+     */
+    public MacroReader(ByteBuffer in) throws IOException {
+        this.in = in;
+        if (in.remaining() < TouchMacro.HEADER_BYTES) {
+            throw new IOException("触摸宏文件过短");
+        }
+        for (byte b : TouchMacro.MAGIC) {
+            if (in.get() != b) {
+                throw new IOException("不是触摸宏文件");
+            }
+        }
+        int version = in.get() & 0xFF;
+        if (version != TouchMacro.VERSION) {
+            throw new IOException("未知的触摸宏格式版本: " + version);
+        }
+    }
+
+    /**
+     * 解码下一条事件
+     *
+     * @return 已到末尾时返回 false；记录不完整或格式错误时抛出 IOException
+     */
+    public boolean next() throws IOException {
+        if (!in.hasRemaining()) return false;
+        int tag = in.get() & 0xFF;
+        int nextAction = tag & 0x3;
+        if (nextAction > TouchMacro.ACTION_UP || (tag & 0x80) != 0) {
+            throw new IOException("触摸宏记录损坏, 位置 " + (in.position() - 1));
+        }
+        pointerId = (tag >>> 2) & 0x1F;
+        action = nextAction;
+        timeMs += getVarLong();
+        lastX[pointerId] += TouchMacro.unzigzag(getVarInt());
+        lastY[pointerId] += TouchMacro.unzigzag(getVarInt());
+        eventCount++;
+        return true;
+    }
+
+    private int getVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!in.hasRemaining()) throw new IOException("触摸宏记录不完整");
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("触摸宏记录损坏, 位置 " + in.position());
+    }
+
+    private long getVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            if (!in.hasRemaining()) throw new IOException("触摸宏记录不完整");
+            int b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("触摸宏记录损坏, 位置 " + in.position());
+    }
+
+    /**
+     * 当前事件相对录制开始的毫秒数
+     */
+    public long timeMs() {
+        return timeMs;
+    }
+
+    public int action() {
+        return action;
+    }
+
+    public int pointerId() {
+        return pointerId;
+    }
+
+    public int x() {
+        return lastX[pointerId];
+    }
+
+    public int y() {
+        return lastY[pointerId];
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.autoclick.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 按 TouchMacro 格式逐条写入触摸事件，内部缓冲后批量写出。非线程安全。
+ */
+public final class MacroWriter implements Closeable {
+    // 单条记录最长：标记 1 字节 + 时间 10 字节 + 坐标各 5 字节
+    private static final int MAX_RECORD_BYTES = 1 + 10 + 5 + 5;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+
+    private final int[] lastX = new int[TouchMacro.MAX_POINTERS];
+    private final int[] lastY = new int[TouchMacro.MAX_POINTERS];
+    private long lastTimeMs;
+    private long eventCount;
+    private long bytesWritten;
+
+    public MacroWriter(OutputStream out) throws IOException {
+        this.out = out;
+        System.arraycopy(TouchMacro.MAGIC, 0, buffer, 0, TouchMacro.MAGIC.length);
+        buffer[TouchMacro.MAGIC.length] = (byte) TouchMacro.VERSION;
+        position = TouchMacro.HEADER_BYTES;
+    }
+
+    /**
+     * 追加一条事件。timeMs 为相对录制开始的毫秒数，早于上一条时按上一条的时间记录。
+     */
+    public void add(long timeMs, int action, int pointerId, int x, int y) throws IOException {
+        if (action < TouchMacro.ACTION_DOWN || action > TouchMacro.ACTION_UP) {
+            throw new IllegalArgumentException("未知的触摸动作: " + action);
+        }
+        if (pointerId < 0 || pointerId >= TouchMacro.MAX_POINTERS) {
+            throw new IllegalArgumentException("手指编号超出范围: " + pointerId);
+        }
+        if (buffer.length - position < MAX_RECORD_BYTES) {
+            flushBuffer();
+        }
+        long deltaMs = Math.max(0, timeMs - lastTimeMs);
+        lastTimeMs += deltaMs;
+
+        buffer[position++] = (byte) (action | (pointerId << 2));
+        putVarLong(deltaMs);
+        putVarInt(TouchMacro.zigzag(x - lastX[pointerId]));
+        putVarInt(TouchMacro.zigzag(y - lastY[pointerId]));
+        lastX[pointerId] = x;
+        lastY[pointerId] = y;
+        eventCount++;
+    }
+
+    private void putVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, position);
+        bytesWritten += position;
+        position = 0;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * 已写出和缓冲中的总字节数（含文件头）
+     */
+    public long getSize() {
+        return bytesWritten + position;
+    }
+
+    /**
+     * 最后一条事件的时间，即录制时长
+     */
+    public long getDurationMs() {
+        return lastTimeMs;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.autoclick.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * 界面节点树的查找索引：按资源 id、文字、内容描述分别建哈希表，值为节点点击点（CoordinateCell 打包值）。
+ * 点击点在节点加入索引时由边界算出一次，之后查找只是一次哈希查询。
+ *
+ * <p>内容变化只失效变化节点的子树：子树记录被移除，子树根和它的父节点记入待刷新列表，
+ * 调用方在下次查找前只重新遍历这些子树。已被移除的节点再次变化不会重复登记。
+ *
+ * <p>H 为节点句柄，需按节点身份实现 equals/hashCode。非线程安全，所有方法在同一线程调用。
+ */
+public final class NodeIndex<H> {
+
+    private static final class Node<H> {
+        final H handle;
+        final Node<H> parent;
+        final ArrayList<Node<H>> children = new ArrayList<>(4);
+        final String viewId;
+        final String text;
+        final String desc;
+        final long point;
+
+        Node(H handle, Node<H> parent, String viewId, String text, String desc, long point) {
+            this.handle = handle;
+            this.parent = parent;
+            this.viewId = viewId;
+            this.text = text;
+            this.desc = desc;
+            this.point = point;
+        }
+    }
+
+    private final HashMap<H, Node<H>> byHandle = new HashMap<>();
+    private final HashMap<String, ArrayList<Node<H>>> byId = new HashMap<>();
+    private final HashMap<String, ArrayList<Node<H>>> byText = new HashMap<>();
+    private final HashMap<String, ArrayList<Node<H>>> byDesc = new HashMap<>();
+
+    // 待重新遍历的子树根及其父节点（父节点为 null 表示整棵树）
+    private final ArrayList<H> dirtyRoots = new ArrayList<>();
+    private final ArrayList<H> dirtyParents = new ArrayList<>();
+    // 待刷新子树中已移除的节点，它们再次变化时不需要重复登记
+    private final HashSet<H> removedPending = new HashSet<>();
+
+    private long indexedNodes;
+    private long invalidatedNodes;
+
+    /**
+     * 加入一个节点；parent 为 null 时是根节点，否则 parent 必须已在索引中
+     *
+     * @param point 节点点击点，不可见或没有面积时为 CoordinateCell.UNSET
+     */
+    public void add(H parent, H handle, String viewId, String text, String desc, long point) {
+        Node<H> parentNode = parent == null ? null : byHandle.get(parent);
+        if (parent != null && parentNode == null) {
+            throw new IllegalStateException("父节点不在索引中");
+        }
+        Node<H> node = new Node<>(handle, parentNode, viewId, text, desc, point);
+        if (byHandle.put(handle, node) != null) {
+            throw new IllegalStateException("节点已在索引中");
+        }
+        if (parentNode != null) {
+            parentNode.children.add(node);
+        }
+        link(byId, viewId, node);
+        link(byText, text, node);
+        link(byDesc, desc, node);
+        indexedNodes++;
+    }
+
+    public boolean contains(H handle) {
+        return byHandle.containsKey(handle);
+    }
+
+    public int size() {
+        return byHandle.size();
+    }
+
+    /**
+     * 目标的点击点，没有可见的匹配节点时返回 CoordinateCell.UNSET
+     */
+    public long find(NodeTarget target) {
+        HashMap<String, ArrayList<Node<H>>> table;
+        switch (target.kind()) {
+            case ID:
+                table = byId;
+                break;
+            case TEXT:
+                table = byText;
+                break;
+            default:
+                table = byDesc;
+                break;
+        }
+        ArrayList<Node<H>> nodes = table.get(target.value());
+        if (nodes == null) return CoordinateCell.UNSET;
+        for (int i = 0; i < nodes.size(); i++) {
+            long point = nodes.get(i).point;
+            if (point != CoordinateCell.UNSET) return point;
+        }
+        return CoordinateCell.UNSET;
+    }
+
+    /**
+     * 节点内容发生变化：移除它的子树并登记待刷新
+     *
+     * @return 节点未知（新出现的节点）时返回 false，调用方应整体重建
+     */
+    public boolean invalidate(H handle) {
+        if (removedPending.contains(handle)) return true;
+        Node<H> node = byHandle.get(handle);
+        if (node == null) return false;
+        if (node.parent != null) {
+            node.parent.children.remove(node);
+        }
+        dirtyRoots.add(handle);
+        dirtyParents.add(node.parent == null ? null : node.parent.handle);
+        removeSubtree(node);
+        return true;
+    }
+
+    public int dirtyCount() {
+        return dirtyRoots.size();
+    }
+
+    public H dirtyRootAt(int i) {
+        return dirtyRoots.get(i);
+    }
+
+    public H dirtyParentAt(int i) {
+        return dirtyParents.get(i);
+    }
+
+    /**
+     * 待刷新的子树都已重新加入后调用
+     */
+    public void clearDirty() {
+        dirtyRoots.clear();
+        dirtyParents.clear();
+        removedPending.clear();
+    }
+
+    public void clear() {
+        byHandle.clear();
+        byId.clear();
+        byText.clear();
+        byDesc.clear();
+        clearDirty();
+    }
+
+    /**
+     * 累计加入索引的节点数，即遍历节点树的工作量
+     */
+    public long getIndexedNodes() {
+        return indexedNodes;
+    }
+
+    public long getInvalidatedNodes() {
+        return invalidatedNodes;
+    }
+
+    private void removeSubtree(Node<H> root) {
+        // 显式栈，深层节点树不会栈溢出
+        ArrayList<Node<H>> stack = new ArrayList<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node<H> node = stack.remove(stack.size() - 1);
+            byHandle.remove(node.handle);
+            removedPending.add(node.handle);
+            unlink(byId, node.viewId, node);
+            unlink(byText, node.text, node);
+            unlink(byDesc, node.desc, node);
+            stack.addAll(node.children);
+            invalidatedNodes++;
+        }
+    }
+
+    private static <H> void link(HashMap<String, ArrayList<Node<H>>> table, String key, Node<H> node) {
+        if (key == null || key.isEmpty()) return;
+        ArrayList<Node<H>> nodes = table.get(key);
+        if (nodes == null) {
+            nodes = new ArrayList<>(1);
+            table.put(key, nodes);
+        }
+        nodes.add(node);
+    }
+
+    private static <H> void unlink(HashMap<String, ArrayList<Node<H>>> table, String key, Node<H> node) {
+        if (key == null || key.isEmpty()) return;
+        ArrayList<Node<H>> nodes = table.get(key);
+        if (nodes == null) return;
+        nodes.remove(node);
+        if (nodes.isEmpty()) {
+            table.remove(key);
+        }
+    }
+}
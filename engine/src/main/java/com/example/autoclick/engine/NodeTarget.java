@@ -0,0 +1,56 @@
+package com.example.autoclick.engine;
+
+/**
+ * 按界面元素而不是固定坐标指定的点击目标。
+ *
+ * <p>文本格式：{@code id:资源 id}、{@code text:文字}、{@code desc:内容描述}，均为精确匹配。
+ */
+public final class NodeTarget {
+
+    public enum Kind {
+        ID,
+        TEXT,
+        DESC
+    }
+
+    private final Kind kind;
+    private final String value;
+
+    public NodeTarget(Kind kind, String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("点击目标为空");
+        }
+        this.kind = kind;
+        this.value = value;
+    }
+
+    /**
+     * 解析文本格式的点击目标，格式错误时抛出 IllegalArgumentException
+     */
+    public static NodeTarget parse(String source) {
+        if (source != null) {
+            int colon = source.indexOf(':');
+            if (colon > 0) {
+                String kind = source.substring(0, colon).trim();
+                String value = source.substring(colon + 1).trim();
+                if ("id".equals(kind)) return new NodeTarget(Kind.ID, value);
+                if ("text".equals(kind)) return new NodeTarget(Kind.TEXT, value);
+                if ("desc".equals(kind)) return new NodeTarget(Kind.DESC, value);
+            }
+        }
+        throw new IllegalArgumentException("无法识别的点击目标: " + source);
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public String value() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return kind.name().toLowerCase() + ":" + value;
+    }
+}
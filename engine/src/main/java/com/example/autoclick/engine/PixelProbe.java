@@ -0,0 +1,217 @@
+package com.example.autoclick.engine;
+
+import java.util.ArrayList;
+
+/**
+ * 像素探针：屏幕上若干个点（或以点为中心的小方块区域）的颜色都达到目标颜色时判定命中。
+ * 每个区域只稀疏采样不超过 MAX_SAMPLES_PER_SIDE × MAX_SAMPLES_PER_SIDE 个像素，取各通道平均值
+ * 与目标颜色比较，各通道差都不超过容差即为该区域匹配；任一区域不匹配立即返回。
+ *
+ * <p>像素为 ARGB int。既可以直接在整帧像素上匹配，也可以只把各区域读进一个紧凑缓冲区后匹配，
+ * 缓冲区布局由 clip 按屏幕尺寸算出。匹配过程不分配对象。非线程安全。
+ *
+ * <p>文本格式：{@code pixel:x,y,#RRGGBB[,容差[,半径]];x,y,#RRGGBB...}，容差默认 16，半径默认 0（单个像素）。
+ */
+public final class PixelProbe {
+    public static final String PREFIX = "pixel:";
+    private static final int DEFAULT_TOLERANCE = 16;
+    private static final int MAX_SAMPLES_PER_SIDE = 5;
+    private static final int MAX_RADIUS = 64;
+
+    private final int count;
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] radii;
+    private final int[] colors;
+    private final int[] tolerances;
+
+    // clip 的结果：各区域在屏幕上的裁剪范围，以及在紧凑缓冲区中的偏移
+    private final int[] lefts;
+    private final int[] tops;
+    private final int[] widths;
+    private final int[] heights;
+    private final int[] offsets;
+    private int bufferSize;
+    private int clipWidth = -1;
+    private int clipHeight = -1;
+
+    private PixelProbe(int count) {
+        this.count = count;
+        xs = new int[count];
+        ys = new int[count];
+        radii = new int[count];
+        colors = new int[count];
+        tolerances = new int[count];
+        lefts = new int[count];
+        tops = new int[count];
+        widths = new int[count];
+        heights = new int[count];
+        offsets = new int[count];
+    }
+
+    public static boolean isProbeSpec(String source) {
+        return source != null && source.trim().startsWith(PREFIX);
+    }
+
+    /**
+     * 解析文本格式的探针，格式错误时抛出 IllegalArgumentException
+     */
+    public static PixelProbe parse(String source) {
+        if (!isProbeSpec(source)) {
+            throw new IllegalArgumentException("不是像素探针: " + source);
+        }
+        ArrayList<int[]> points = new ArrayList<>();
+        for (String part : source.trim().substring(PREFIX.length()).split(";")) {
+            if (part.trim().isEmpty()) continue;
+            String[] fields = part.split(",");
+            if (fields.length < 3 || fields.length > 5) {
+                throw new IllegalArgumentException("探针格式应为 x,y,#RRGGBB[,容差[,半径]]: " + part);
+            }
+            try {
+                int x = Integer.parseInt(fields[0].trim());
+                int y = Integer.parseInt(fields[1].trim());
+                int color = parseColor(fields[2].trim());
+                int tolerance = fields.length > 3 ? Integer.parseInt(fields[3].trim()) : DEFAULT_TOLERANCE;
+                int radius = fields.length > 4 ? Integer.parseInt(fields[4].trim()) : 0;
+                if (x < 0 || y < 0 || tolerance < 0 || tolerance > 255 || radius < 0 || radius > MAX_RADIUS) {
+                    throw new IllegalArgumentException("探针参数超出范围: " + part);
+                }
+                points.add(new int[]{x, y, color, tolerance, radius});
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("探针参数不是数字: " + part);
+            }
+        }
+        if (points.isEmpty()) {
+            throw new IllegalArgumentException("像素探针没有探测点");
+        }
+        PixelProbe probe = new PixelProbe(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            int[] point = points.get(i);
+            probe.xs[i] = point[0];
+            probe.ys[i] = point[1];
+            probe.colors[i] = point[2];
+            probe.tolerances[i] = point[3];
+            probe.radii[i] = point[4];
+        }
+        return probe;
+    }
+
+    private static int parseColor(String text) {
+        String hex = text.startsWith("#") ? text.substring(1) : text;
+        if (hex.length() != 6) {
+            throw new NumberFormatException(text);
+        }
+        return 0xFF000000 | Integer.parseInt(hex, 16);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 按屏幕尺寸裁剪各区域并计算紧凑缓冲区布局，尺寸不变时直接返回
+     */
+    public void clip(int screenWidth, int screenHeight) {
+        if (screenWidth == clipWidth && screenHeight == clipHeight) return;
+        clipWidth = screenWidth;
+        clipHeight = screenHeight;
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            int left = Math.max(0, xs[i] - radii[i]);
+            int top = Math.max(0, ys[i] - radii[i]);
+            int right = Math.min(screenWidth, xs[i] + radii[i] + 1);
+            int bottom = Math.min(screenHeight, ys[i] + radii[i] + 1);
+            lefts[i] = left;
+            tops[i] = top;
+            widths[i] = Math.max(0, right - left);
+            heights[i] = Math.max(0, bottom - top);
+            offsets[i] = offset;
+            offset += widths[i] * heights[i];
+        }
+        bufferSize = offset;
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    public int regionLeft(int i) {
+        return lefts[i];
+    }
+
+    public int regionTop(int i) {
+        return tops[i];
+    }
+
+    public int regionWidth(int i) {
+        return widths[i];
+    }
+
+    public int regionHeight(int i) {
+        return heights[i];
+    }
+
+    public int regionOffset(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * 在紧凑缓冲区上匹配，缓冲区按 clip 算出的布局填充，第 i 个区域从 regionOffset(i) 开始、行宽 regionWidth(i)
+     */
+    public boolean matchesBuffer(int[] buffer) {
+        for (int i = 0; i < count; i++) {
+            if (!matchesRegion(i, buffer, offsets[i], widths[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 直接在整帧像素上匹配，只读取采样点，需先按帧尺寸调用 clip
+     */
+    public boolean matchesFrame(int[] frame, int stride) {
+        for (int i = 0; i < count; i++) {
+            if (!matchesRegion(i, frame, tops[i] * stride + lefts[i], stride)) return false;
+        }
+        return true;
+    }
+
+    private boolean matchesRegion(int i, int[] pixels, int base, int stride) {
+        int width = widths[i];
+        int height = heights[i];
+        // 探测点在屏幕外视为不匹配
+        if (width == 0 || height == 0) return false;
+        int stepX = (width + MAX_SAMPLES_PER_SIDE - 1) / MAX_SAMPLES_PER_SIDE;
+        int stepY = (height + MAX_SAMPLES_PER_SIDE - 1) / MAX_SAMPLES_PER_SIDE;
+        int sumR = 0;
+        int sumG = 0;
+        int sumB = 0;
+        int samples = 0;
+        for (int y = stepY / 2; y < height; y += stepY) {
+            int row = base + y * stride;
+            for (int x = stepX / 2; x < width; x += stepX) {
+                int pixel = pixels[row + x];
+                sumR += (pixel >> 16) & 0xFF;
+                sumG += (pixel >> 8) & 0xFF;
+                sumB += pixel & 0xFF;
+                samples++;
+            }
+        }
+        int target = colors[i];
+        int tolerance = tolerances[i];
+        return Math.abs(sumR / samples - ((target >> 16) & 0xFF)) <= tolerance
+                && Math.abs(sumG / samples - ((target >> 8) & 0xFF)) <= tolerance
+                && Math.abs(sumB / samples - (target & 0xFF)) <= tolerance;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(PREFIX);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) text.append(';');
+            text.append(xs[i]).append(',').append(ys[i]).append(",#")
+                    .append(String.format("%06X", colors[i] & 0xFFFFFF))
+                    .append(',').append(tolerances[i]).append(',').append(radii[i]);
+        }
+        return text.toString();
+    }
+}
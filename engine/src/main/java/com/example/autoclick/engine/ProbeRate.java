@@ -0,0 +1,61 @@
+package com.example.autoclick.engine;
+
+/**
+ * 截屏探测的自适应采样间隔：间隔不小于平台允许的最小截屏间隔，
+ * 同时保证单次截屏加匹配的平均耗时不超过间隔的 budgetFraction；
+ * 被平台以截屏过于频繁拒绝时调高最小间隔，之后连续成功再逐步回落。
+ * 时间单位为纳秒。非线程安全。
+ */
+public final class ProbeRate {
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final double budgetFraction;
+
+    private long floorNanos;
+    private long averageCostNanos = -1;
+
+    public ProbeRate(long minIntervalNanos, long maxIntervalNanos, double budgetFraction) {
+        this.minIntervalNanos = minIntervalNanos;
+        this.maxIntervalNanos = maxIntervalNanos;
+        this.budgetFraction = budgetFraction;
+        this.floorNanos = minIntervalNanos;
+    }
+
+    /**
+     * 记录一次成功采样的耗时（截屏回调到匹配完成），指数平均
+     */
+    public void onSample(long costNanos) {
+        averageCostNanos = averageCostNanos < 0 ? costNanos : averageCostNanos + (costNanos - averageCostNanos) / 4;
+        // 成功后最小间隔每次回落 1/8，向上取整，保证最终回到 minIntervalNanos
+        floorNanos = Math.max(minIntervalNanos, floorNanos - (floorNanos - minIntervalNanos + 7) / 8);
+    }
+
+    /**
+     * 平台拒绝了过于频繁的截屏
+     */
+    public void onRateLimited() {
+        floorNanos = Math.min(maxIntervalNanos, floorNanos + floorNanos / 2);
+    }
+
+    /**
+     * 两次截屏开始时刻之间的间隔
+     */
+    public long intervalNanos() {
+        long interval = floorNanos;
+        if (averageCostNanos > 0) {
+            interval = Math.max(interval, (long) (averageCostNanos / budgetFraction));
+        }
+        return Math.min(maxIntervalNanos, interval);
+    }
+
+    /**
+     * 上一次截屏开始后 sinceStartNanos 纳秒，距下一次截屏还需等待的时间
+     */
+    public long nextDelayNanos(long sinceStartNanos) {
+        return Math.max(0, intervalNanos() - sinceStartNanos);
+    }
+
+    public long getAverageCostNanos() {
+        return Math.max(0, averageCostNanos);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.autoclick.engine;
+
+import java.util.Arrays;
+
+/**
+ * 可以放进一个手势的一批笔画：每个笔画是一根手指从按下到抬起的轨迹，
+ * 起点和时长以毫秒计、相对本批的开始时刻。多根手指的采样点在时间上交错，
+ * 按笔画串成链表存放，用 firstPoint / nextPoint 遍历。数组按需扩容后复用。
+ */
+public final class StrokeBatch {
+    private long startMs;
+    private int size;
+    private long[] strokeStartMs = new long[16];
+    private long[] strokeDurationMs = new long[16];
+    private int[] firstPoint = new int[16];
+    private int[] lastPoint = new int[16];
+    private int[] pointCount = new int[16];
+
+    private int points;
+    private int[] xs = new int[256];
+    private int[] ys = new int[256];
+    private int[] next = new int[256];
+
+    /**
+     * 本批第一个笔画按下的时刻，相对录制开始的毫秒数
+     */
+    public long startMs() {
+        return startMs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long strokeStartMs(int stroke) {
+        return strokeStartMs[stroke];
+    }
+
+    public long strokeDurationMs(int stroke) {
+        return strokeDurationMs[stroke];
+    }
+
+    public int pointCount(int stroke) {
+        return pointCount[stroke];
+    }
+
+    public int firstPoint(int stroke) {
+        return firstPoint[stroke];
+    }
+
+    /**
+     * 同一笔画的下一个采样点，没有时返回 -1
+     */
+    public int nextPoint(int point) {
+        return next[point];
+    }
+
+    public int x(int point) {
+        return xs[point];
+    }
+
+    public int y(int point) {
+        return ys[point];
+    }
+
+    /**
+     * 本批最后一个笔画抬起的时刻，相对本批开始
+     */
+    public long durationMs() {
+        long end = 0;
+        for (int i = 0; i < size; i++) {
+            end = Math.max(end, strokeStartMs[i] + strokeDurationMs[i]);
+        }
+        return end;
+    }
+
+    /**
+     * 全部采样点数
+     */
+    public int totalPoints() {
+        return points;
+    }
+
+    void clear() {
+        size = 0;
+        points = 0;
+        startMs = 0;
+    }
+
+    void setStartMs(long startMs) {
+        this.startMs = startMs;
+    }
+
+    int addStroke(long startMs) {
+        if (size == strokeStartMs.length) {
+            int capacity = size * 2;
+            strokeStartMs = Arrays.copyOf(strokeStartMs, capacity);
+            strokeDurationMs = Arrays.copyOf(strokeDurationMs, capacity);
+            firstPoint = Arrays.copyOf(firstPoint, capacity);
+            lastPoint = Arrays.copyOf(lastPoint, capacity);
+            pointCount = Arrays.copyOf(pointCount, capacity);
+        }
+        strokeStartMs[size] = startMs;
+        strokeDurationMs[size] = 0;
+        firstPoint[size] = -1;
+        lastPoint[size] = -1;
+        pointCount[size] = 0;
+        return size++;
+    }
+
+    void setDurationMs(int stroke, long durationMs) {
+        strokeDurationMs[stroke] = durationMs;
+    }
+
+    /**
+     * 给笔画追加一个采样点，与上一个点重合时忽略
+     */
+    void addPoint(int stroke, int x, int y) {
+        int last = lastPoint[stroke];
+        if (last >= 0 && xs[last] == x && ys[last] == y) return;
+        if (points == xs.length) {
+            int capacity = points * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        xs[points] = x;
+        ys[points] = y;
+        next[points] = -1;
+        if (last >= 0) {
+            next[last] = points;
+        } else {
+            firstPoint[stroke] = points;
+        }
+        lastPoint[stroke] = points;
+        pointCount[stroke]++;
+        points++;
+    }
+
+    /**
+     * 把 source 的第 stroke 个笔画复制到本批末尾，起点整体平移 shiftMs
+     */
+    int copyStroke(StrokeBatch source, int stroke, long shiftMs) {
+        int copy = addStroke(source.strokeStartMs[stroke] + shiftMs);
+        strokeDurationMs[copy] = source.strokeDurationMs[stroke];
+        for (int p = source.firstPoint[stroke]; p >= 0; p = source.next[p]) {
+            addPoint(copy, source.xs[p], source.ys[p]);
+        }
+        return copy;
+    }
+}
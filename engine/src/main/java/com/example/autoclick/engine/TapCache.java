@@ -0,0 +1,76 @@
+package com.example.autoclick.engine;
+
+/**
+ * 单点点击手势缓存：按 (x, y, 时长) 复用已构建好的手势对象，命中时不分配任何对象。
+ * 采用直接映射，冲突时直接替换旧条目。手势类型由调用方决定，构建交给 Factory，
+ * 因此缓存本身是纯 Java，可以在普通 JVM 上测试。线程安全。
+ */
+public final class TapCache<G> {
+    // 必须是 2 的幂
+    public static final int CAPACITY = 32;
+
+    /**
+     * 未命中时构建手势，只在缓存锁内调用
+     */
+    public interface Factory<G> {
+        G build(int x, int y, long durationMs);
+    }
+
+    private final Factory<G> factory;
+    private final long[] keys = new long[CAPACITY];
+    private final Object[] gestures = new Object[CAPACITY];
+
+    // 命中与构建次数，构建次数即热路径上的对象分配次数
+    private long hits;
+    private long builds;
+
+    public TapCache(Factory<G> factory) {
+        this.factory = factory;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized G obtain(int x, int y, long durationMs) {
+        long key = key(x, y, durationMs);
+        int slot = slot(key);
+
+        Object cached = gestures[slot];
+        if (cached != null && keys[slot] == key) {
+            hits++;
+            return (G) cached;
+        }
+
+        G gesture = factory.build(x, y, durationMs);
+        keys[slot] = key;
+        gestures[slot] = gesture;
+        builds++;
+        return gesture;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getBuilds() {
+        return builds;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            gestures[i] = null;
+        }
+    }
+
+    /**
+     * 坐标各取 24 位、时长取 16 位（手势时长上限为 60 秒，足够容纳）
+     */
+    static long key(int x, int y, long durationMs) {
+        return ((long) (x & 0xFFFFFF) << 40)
+                | ((long) (y & 0xFFFFFF) << 16)
+                | (durationMs & 0xFFFF);
+    }
+
+    static int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 59) & (CAPACITY - 1);
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.autoclick.engine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加的二进制任务日志：布置任务写一条 ARM 记录并 fsync，任务结束或取消写一条 REMOVE 记录。
+ * 启动时顺序重放日志得到仍然有效的任务；末尾写了一半的记录（进程被杀）通过 CRC 识别并截掉。
+ * 失效记录多于有效记录时重写为只含有效任务的新文件，先写临时文件再原子替换。
+ *
+ * <p>文件格式：4 字节魔数，之后每条记录为
+ * 类型(1) + 任务编号(4) + 负载长度(4) + 负载 + CRC32(4)，CRC 覆盖类型到负载。
+ */
+public final class TaskJournal {
+    private static final int MAGIC = 0x41434A31; // "ACJ1"
+    private static final int HEADER_BYTES = 4;
+    private static final byte RECORD_ARM = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final int RECORD_OVERHEAD = 1 + 4 + 4 + 4;
+    // 单条记录负载上限，超出视为损坏
+    private static final int MAX_PAYLOAD = 1 << 20;
+    // 失效记录达到该数量且多于有效任务时才压缩
+    private static final int COMPACT_MIN_DEAD = 256;
+
+    private final File file;
+    private FileChannel channel;
+    // 有效任务的序列化负载，压缩时直接写回
+    private final LinkedHashMap<Integer, byte[]> live = new LinkedHashMap<>();
+    private int deadRecords;
+    private final CRC32 crc = new CRC32();
+
+    public TaskJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 重放日志，返回仍然有效的任务（按布置顺序）；必须在其他方法之前调用一次
+     */
+    public synchronized Map<Integer, TaskSpec> load() throws IOException {
+        live.clear();
+        deadRecords = 0;
+        byte[] data = readFile(file);
+
+        int validEnd = HEADER_BYTES;
+        if (data.length >= HEADER_BYTES && ByteBuffer.wrap(data).getInt(0) == MAGIC) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            int pos = HEADER_BYTES;
+            while (data.length - pos >= RECORD_OVERHEAD) {
+                byte type = buffer.get(pos);
+                int id = buffer.getInt(pos + 1);
+                int length = buffer.getInt(pos + 5);
+                if (length < 0 || length > MAX_PAYLOAD || data.length - pos < RECORD_OVERHEAD + length) break;
+                crc.reset();
+                crc.update(data, pos, 9 + length);
+                if ((int) crc.getValue() != buffer.getInt(pos + 9 + length)) break;
+
+                if (type == RECORD_ARM) {
+                    byte[] payload = new byte[length];
+                    System.arraycopy(data, pos + 9, payload, 0, length);
+                    if (live.put(id, payload) != null) deadRecords++;
+                } else if (type == RECORD_REMOVE) {
+                    if (live.remove(id) != null) deadRecords++;
+                    deadRecords++;
+                } else {
+                    break;
+                }
+                pos += RECORD_OVERHEAD + length;
+                validEnd = pos;
+            }
+        } else {
+            // 新文件或无法识别的文件，从头开始
+            data = new byte[0];
+        }
+
+        openChannel();
+        if (data.length == 0) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.allocate(HEADER_BYTES).putInt(0, MAGIC), 0);
+            channel.force(false);
+        } else if (validEnd < data.length) {
+            // 截掉末尾不完整或损坏的记录
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+
+        LinkedHashMap<Integer, TaskSpec> tasks = new LinkedHashMap<>();
+        Iterator<Map.Entry<Integer, byte[]>> iterator = live.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, byte[]> entry = iterator.next();
+            try {
+                tasks.put(entry.getKey(), TaskSpec.read(ByteBuffer.wrap(entry.getValue())));
+            } catch (IOException e) {
+                // 无法解析的任务丢弃，下次压缩时清除
+                iterator.remove();
+                deadRecords++;
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * 记录一个已布置的任务，返回前已落盘
+     */
+    public synchronized void append(int id, TaskSpec spec) throws IOException {
+        checkOpen();
+        byte[] payload = spec.toBytes();
+        write(channel, RECORD_ARM, id, payload);
+        channel.force(false);
+        if (live.put(id, payload) != null) deadRecords++;
+        maybeCompact();
+    }
+
+    /**
+     * 记录任务已结束或取消；durable 为 true 时立即落盘，
+     * 已过期的任务重启时本来就会被丢弃，不需要落盘
+     */
+    public synchronized void remove(int id, boolean durable) throws IOException {
+        if (live.remove(id) == null) return;
+        checkOpen();
+        write(channel, RECORD_REMOVE, id, new byte[0]);
+        if (durable) {
+            channel.force(false);
+        }
+        deadRecords += 2;
+        maybeCompact();
+    }
+
+    /**
+     * 清空所有任务
+     */
+    public synchronized void clear() throws IOException {
+        checkOpen();
+        live.clear();
+        deadRecords = 0;
+        channel.truncate(HEADER_BYTES);
+        channel.position(HEADER_BYTES);
+        channel.force(false);
+    }
+
+    public synchronized int size() {
+        return live.size();
+    }
+
+    public synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+        channel = null;
+    }
+
+    private void checkOpen() throws IOException {
+        if (channel == null) {
+            throw new IOException("任务日志未打开: " + file);
+        }
+    }
+
+    private void write(FileChannel target, byte type, int id, byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+        record.put(type).putInt(id).putInt(payload.length).put(payload);
+        crc.reset();
+        crc.update(record.array(), 0, 9 + payload.length);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            target.write(record);
+        }
+    }
+
+    private void maybeCompact() throws IOException {
+        if (deadRecords < COMPACT_MIN_DEAD || deadRecords <= live.size()) return;
+
+        File temp = new File(file.getPath() + ".tmp");
+        RandomAccessFile tempFile = new RandomAccessFile(temp, "rw");
+        try {
+            tempFile.setLength(0);
+            FileChannel target = tempFile.getChannel();
+            target.write(ByteBuffer.allocate(HEADER_BYTES).putInt(0, MAGIC));
+            for (Map.Entry<Integer, byte[]> entry : live.entrySet()) {
+                write(target, RECORD_ARM, entry.getKey(), entry.getValue());
+            }
+            target.force(false);
+        } finally {
+            tempFile.close();
+        }
+
+        close();
+        if (!temp.renameTo(file)) {
+            throw new IOException("无法替换任务日志: " + file);
+        }
+        openChannel();
+        channel.position(channel.size());
+        deadRecords = 0;
+    }
+
+    private void openChannel() throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        channel = new RandomAccessFile(file, "rw").getChannel();
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        if (!file.exists()) return new byte[0];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            long length = file.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("任务日志过大: " + length);
+            }
+            byte[] data = new byte[(int) length];
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            if (read < data.length) {
+                byte[] trimmed = new byte[read];
+                System.arraycopy(data, 0, trimmed, 0, read);
+                return trimmed;
+            }
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+}
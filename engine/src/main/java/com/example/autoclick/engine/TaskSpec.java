@@ -0,0 +1,146 @@
+package com.example.autoclick.engine;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * 定时点击任务的参数，默认值与启动服务时 Intent 中缺省的参数一致。
+ * 可序列化为紧凑的二进制格式，用于任务日志持久化。
+ */
+public final class TaskSpec {
+    // 序列化格式版本，增加字段时递增并在 read 中兼容旧版本
+    private static final int VERSION = 7;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // 不含字符串内容的固定长度
+    private static final int FIXED_BYTES = 1 + 8 + 4 + 4 + 8 + 4 + 4 + 4 + 8 + 1 + 8 + 4 + 8 + 4 + 1 + 4 + 4 + 4 + 4 + 8 + 1;
+
+    public long targetTime;                 // 目标时间，System.currentTimeMillis 时基
+    public int clickX;
+    public int clickY;
+    public double clickDurationSeconds = 5.0;
+    public int baseInterval = 300;
+    public int randomRange;
+    public String missedSlotPolicy;         // ClickTimeline.MissedSlotPolicy 名称，null 为默认
+    public long tapDurationMs = 100;
+    public boolean burstMode;
+    public long burstWindowMs = 500;
+    public int maxInFlight = 1;
+    public long retryWindowMs = 50;
+    public String script;                   // 多步点击脚本，null 为单点任务
+    public boolean fromUi;
+    public String trigger;                  // EventTrigger、PixelProbe 或 ImageTrigger 文本格式，非 null 时从目标时间起等待触发
+    public String target;                   // NodeTarget 文本格式，非 null 时按界面元素定位点击点
+    public String macro;                    // 触摸宏文件路径，非 null 时回放录制的手势代替点击
+    public String chord;                    // ClickChord 文本格式，非 null 时每次点击多指同时按下
+    public long warmupMs = 1000;            // 目标时刻前的预热窗口，0 为不预热
+    public boolean compensateLatency = true; // 按学习到的输入延迟提前派发
+
+    public byte[] toBytes() {
+        byte[] policy = encode(missedSlotPolicy);
+        byte[] scriptBytes = encode(script);
+        byte[] triggerBytes = encode(trigger);
+        byte[] targetBytes = encode(target);
+        byte[] macroBytes = encode(macro);
+        byte[] chordBytes = encode(chord);
+        ByteBuffer out = ByteBuffer.allocate(FIXED_BYTES + length(policy) + length(scriptBytes)
+                + length(triggerBytes) + length(targetBytes) + length(macroBytes)
+                + length(chordBytes));
+        out.put((byte) VERSION);
+        out.putLong(targetTime);
+        out.putInt(clickX);
+        out.putInt(clickY);
+        out.putDouble(clickDurationSeconds);
+        out.putInt(baseInterval);
+        out.putInt(randomRange);
+        putBytes(out, policy);
+        out.putLong(tapDurationMs);
+        out.put((byte) (burstMode ? 1 : 0));
+        out.putLong(burstWindowMs);
+        out.putInt(maxInFlight);
+        out.putLong(retryWindowMs);
+        putBytes(out, scriptBytes);
+        out.put((byte) (fromUi ? 1 : 0));
+        putBytes(out, triggerBytes);
+        putBytes(out, targetBytes);
+        putBytes(out, macroBytes);
+        putBytes(out, chordBytes);
+        out.putLong(warmupMs);
+        out.put((byte) (compensateLatency ? 1 : 0));
+        return out.array();
+    }
+
+    /**
+     * 从 in 的当前位置解析一个任务，格式错误时抛出 IOException
+     */
+    public static TaskSpec read(ByteBuffer in) throws IOException {
+        try {
+            int version = in.get() & 0xFF;
+            if (version < 1 || version > VERSION) {
+                throw new IOException("未知的任务格式版本: " + version);
+            }
+            TaskSpec spec = new TaskSpec();
+            spec.targetTime = in.getLong();
+            spec.clickX = in.getInt();
+            spec.clickY = in.getInt();
+            spec.clickDurationSeconds = in.getDouble();
+            spec.baseInterval = in.getInt();
+            spec.randomRange = in.getInt();
+            spec.missedSlotPolicy = getString(in);
+            spec.tapDurationMs = in.getLong();
+            spec.burstMode = in.get() != 0;
+            spec.burstWindowMs = in.getLong();
+            spec.maxInFlight = in.getInt();
+            spec.retryWindowMs = in.getLong();
+            spec.script = getString(in);
+            spec.fromUi = in.get() != 0;
+            if (version >= 2) {
+                spec.trigger = getString(in);
+            }
+            if (version >= 3) {
+                spec.target = getString(in);
+            }
+            if (version >= 4) {
+                spec.macro = getString(in);
+            }
+            if (version >= 5) {
+                spec.chord = getString(in);
+            }
+            if (version >= 6) {
+                spec.warmupMs = in.getLong();
+            }
+            if (version >= 7) {
+                spec.compensateLatency = in.get() != 0;
+            }
+            return spec;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("任务数据不完整", e);
+        }
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.putInt(-1);
+            return;
+        }
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
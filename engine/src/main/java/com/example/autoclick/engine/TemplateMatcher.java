@@ -0,0 +1,447 @@
+package com.example.autoclick.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 模板匹配：在屏幕截图中查找参考图像的位置，用于没有无障碍节点的界面（游戏、画布）。
+ *
+ * <p>截图和模板都转为灰度并建立 2 倍降采样金字塔。先在模板边长不小于 MIN_TEMPLATE_SIDE 的最粗一层
+ * 对感兴趣区域做全搜索，按行分块并行执行，保留几个互不重叠的最佳候选；再逐层放大到原图，
+ * 每层只在候选位置附近 ±REFINE_RADIUS 的窗口内细化。匹配度量为灰度绝对差和（SAD），
+ * 超过当前最差候选时提前放弃该位置。
+ *
+ * <p>截图金字塔的缓冲区按截图尺寸分配一次，之后每帧复用；模板金字塔在创建模板时建立一次。
+ * setFrame 和 find 必须在同一线程调用，分块任务在构造时传入的 ForkJoinPool 中执行。
+ */
+public final class TemplateMatcher {
+    private static final int MAX_LEVELS = 6;
+    // 最粗一层模板的最小边长，再小就容易误匹配
+    private static final int MIN_TEMPLATE_SIDE = 8;
+    private static final int CANDIDATES = 8;
+    private static final int REFINE_RADIUS = 2;
+    // 候选剪枝时允许的平均每像素灰度差余量
+    private static final int PRUNE_SLACK = 8;
+
+    /**
+     * 参考图像的灰度金字塔
+     */
+    public static final class Template {
+        final byte[][] levels;
+        final int[] widths;
+        final int[] heights;
+        final int levelCount;
+
+        public Template(int[] argb, int width, int height) {
+            if (width < MIN_TEMPLATE_SIDE || height < MIN_TEMPLATE_SIDE) {
+                throw new IllegalArgumentException("模板过小: " + width + "x" + height);
+            }
+            int count = 1;
+            while (count < MAX_LEVELS && Math.min(width >> count, height >> count) >= MIN_TEMPLATE_SIDE) {
+                count++;
+            }
+            levelCount = count;
+            levels = new byte[count][];
+            widths = new int[count];
+            heights = new int[count];
+            widths[0] = width;
+            heights[0] = height;
+            levels[0] = new byte[width * height];
+            toGray(argb, width, levels[0], width, 0, height);
+            for (int level = 1; level < count; level++) {
+                widths[level] = widths[level - 1] / 2;
+                heights[level] = heights[level - 1] / 2;
+                levels[level] = new byte[widths[level] * heights[level]];
+                downsample(levels[level - 1], widths[level - 1], levels[level], widths[level], 0, heights[level]);
+            }
+        }
+
+        public int width() {
+            return widths[0];
+        }
+
+        public int height() {
+            return heights[0];
+        }
+    }
+
+    /**
+     * 匹配结果，可复用
+     */
+    public static final class Match {
+        public boolean found;
+        // 匹配区域左上角和中心（截图坐标）
+        public int left;
+        public int top;
+        public int centerX;
+        public int centerY;
+        // 平均每像素灰度差，0 为完全一致
+        public double score;
+    }
+
+    /**
+     * 几个互不重叠的最佳候选位置，按 SAD 越小越好
+     */
+    private static final class Candidates {
+        final int[] scores = new int[CANDIDATES];
+        final int[] xs = new int[CANDIDATES];
+        final int[] ys = new int[CANDIDATES];
+        int count;
+        // 两个候选在各方向上小于该距离视为重叠
+        final int spanX;
+        final int spanY;
+
+        Candidates(int spanX, int spanY) {
+            this.spanX = spanX;
+            this.spanY = spanY;
+        }
+
+        /**
+         * 新位置的 SAD 不小于该值时不可能成为候选
+         */
+        int bound() {
+            return count < CANDIDATES ? Integer.MAX_VALUE : scores[worst()];
+        }
+
+        void offer(int score, int x, int y) {
+            for (int i = 0; i < count; i++) {
+                if (Math.abs(xs[i] - x) < spanX && Math.abs(ys[i] - y) < spanY) {
+                    if (score < scores[i]) {
+                        set(i, score, x, y);
+                    }
+                    return;
+                }
+            }
+            if (count < CANDIDATES) {
+                set(count++, score, x, y);
+            } else {
+                int worst = worst();
+                if (score < scores[worst]) {
+                    set(worst, score, x, y);
+                }
+            }
+        }
+
+        /**
+         * 细化后去掉明显差于最佳候选的候选，越往原图层细化越贵：
+         * 保留 SAD 不超过最佳值两倍加 slack 的候选
+         */
+        void prune(int slack) {
+            int best = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                best = Math.min(best, scores[i]);
+            }
+            if (best == Integer.MAX_VALUE) return;
+            long limit = 2L * best + slack;
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (scores[i] <= limit) {
+                    set(kept++, scores[i], xs[i], ys[i]);
+                }
+            }
+            count = kept;
+        }
+
+        void merge(Candidates other) {
+            for (int i = 0; i < other.count; i++) {
+                offer(other.scores[i], other.xs[i], other.ys[i]);
+            }
+        }
+
+        private int worst() {
+            int worst = 0;
+            for (int i = 1; i < count; i++) {
+                if (scores[i] > scores[worst]) worst = i;
+            }
+            return worst;
+        }
+
+        private void set(int i, int score, int x, int y) {
+            scores[i] = score;
+            xs[i] = x;
+            ys[i] = y;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final byte[][] frameLevels = new byte[MAX_LEVELS][];
+    private final int[] frameWidths = new int[MAX_LEVELS];
+    private final int[] frameHeights = new int[MAX_LEVELS];
+    private int frameLevelCount;
+
+    public TemplateMatcher(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 载入一帧截图（ARGB，行宽 stride）并建立灰度金字塔，尺寸不变时复用缓冲区
+     */
+    public void setFrame(final int[] argb, final int width, final int height, final int stride) {
+        if (width != frameWidths[0] || height != frameHeights[0] || frameLevels[0] == null) {
+            allocateFrame(width, height);
+        }
+        final byte[] gray = frameLevels[0];
+        pool.invoke(new RowBands(new RowRange() {
+            @Override
+            public void rows(int from, int to) {
+                toGray(argb, stride, gray, width, from, to);
+            }
+        }, 0, height, bandRows(height)));
+        for (int level = 1; level < frameLevelCount; level++) {
+            final byte[] src = frameLevels[level - 1];
+            final int srcWidth = frameWidths[level - 1];
+            final byte[] dst = frameLevels[level];
+            final int dstWidth = frameWidths[level];
+            int dstHeight = frameHeights[level];
+            pool.invoke(new RowBands(new RowRange() {
+                @Override
+                public void rows(int from, int to) {
+                    downsample(src, srcWidth, dst, dstWidth, from, to);
+                }
+            }, 0, dstHeight, bandRows(dstHeight)));
+        }
+    }
+
+    /**
+     * 在当前帧的感兴趣区域 [roiLeft, roiRight) × [roiTop, roiBottom) 中查找模板
+     *
+     * @param maxScore 平均每像素灰度差不超过该值才算找到
+     * @return out.found
+     */
+    public boolean find(Template template, int roiLeft, int roiTop, int roiRight, int roiBottom,
+                        double maxScore, Match out) {
+        out.found = false;
+        if (frameLevelCount == 0) return false;
+        roiLeft = Math.max(0, roiLeft);
+        roiTop = Math.max(0, roiTop);
+        roiRight = Math.min(frameWidths[0], roiRight);
+        roiBottom = Math.min(frameHeights[0], roiBottom);
+        if (roiRight - roiLeft < template.width() || roiBottom - roiTop < template.height()) return false;
+
+        int top = Math.min(template.levelCount, frameLevelCount) - 1;
+        // 最粗一层在缩小后的感兴趣区域内全搜索。各层的区域向外取整：向内取整时区域与模板一样大且边界不对齐的话
+        // 缩小后放不下模板，所有候选都会落在窗口外；原图层上两种取整相同，区域仍是精确的
+        int tw = template.widths[top];
+        int th = template.heights[top];
+        int left = roiLeft >> top;
+        int upper = roiTop >> top;
+        int maxX = Math.min(ceilShift(roiRight, top), frameWidths[top]) - tw;
+        int maxY = Math.min(ceilShift(roiBottom, top), frameHeights[top]) - th;
+        if (maxX < left || maxY < upper) return false;
+        int rows = maxY - upper + 1;
+        Candidates candidates = pool.invoke(new CoarseSearch(frameLevels[top], frameWidths[top],
+                template.levels[top], tw, th, left, maxX, upper, upper + rows, bandRows(rows)));
+
+        // 逐层细化每个候选
+        for (int level = top - 1; level >= 0; level--) {
+            byte[] frame = frameLevels[level];
+            int fw = frameWidths[level];
+            byte[] tpl = template.levels[level];
+            int lw = template.widths[level];
+            int lh = template.heights[level];
+            int minX = roiLeft >> level;
+            int minY = roiTop >> level;
+            int limitX = Math.min(ceilShift(roiRight, level), fw) - lw;
+            int limitY = Math.min(ceilShift(roiBottom, level), frameHeights[level]) - lh;
+            for (int i = 0; i < candidates.count; i++) {
+                int bestScore = Integer.MAX_VALUE;
+                int bestX = 0;
+                int bestY = 0;
+                int cx = candidates.xs[i] * 2;
+                int cy = candidates.ys[i] * 2;
+                for (int y = Math.max(minY, cy - REFINE_RADIUS); y <= Math.min(limitY, cy + REFINE_RADIUS); y++) {
+                    for (int x = Math.max(minX, cx - REFINE_RADIUS); x <= Math.min(limitX, cx + REFINE_RADIUS); x++) {
+                        int score = sad(frame, fw, tpl, lw, lh, x, y, bestScore);
+                        if (score < bestScore) {
+                            bestScore = score;
+                            bestX = x;
+                            bestY = y;
+                        }
+                    }
+                }
+                candidates.scores[i] = bestScore;
+                candidates.xs[i] = bestX;
+                candidates.ys[i] = bestY;
+            }
+            candidates.prune(lw * lh * PRUNE_SLACK);
+        }
+
+        int best = -1;
+        for (int i = 0; i < candidates.count; i++) {
+            if (candidates.scores[i] == Integer.MAX_VALUE) continue;
+            if (best < 0 || candidates.scores[i] < candidates.scores[best]) best = i;
+        }
+        if (best < 0) return false;
+        out.left = candidates.xs[best];
+        out.top = candidates.ys[best];
+        out.centerX = out.left + template.width() / 2;
+        out.centerY = out.top + template.height() / 2;
+        out.score = candidates.scores[best] / (double) (template.width() * template.height());
+        out.found = out.score <= maxScore;
+        return out.found;
+    }
+
+    private void allocateFrame(int width, int height) {
+        int count = 0;
+        int w = width;
+        int h = height;
+        while (count < MAX_LEVELS && Math.min(w, h) >= MIN_TEMPLATE_SIDE) {
+            frameWidths[count] = w;
+            frameHeights[count] = h;
+            frameLevels[count] = new byte[w * h];
+            count++;
+            w /= 2;
+            h /= 2;
+        }
+        for (int level = count; level < MAX_LEVELS; level++) {
+            frameLevels[level] = null;
+            frameWidths[level] = 0;
+            frameHeights[level] = 0;
+        }
+        frameLevelCount = count;
+    }
+
+    /**
+     * 每块的行数，使块数约为并行度的 4 倍
+     */
+    private int bandRows(int rows) {
+        return Math.max(1, rows / (pool.getParallelism() * 4));
+    }
+
+    private static int ceilShift(int value, int shift) {
+        return (value + (1 << shift) - 1) >> shift;
+    }
+
+    /**
+     * 把第 from 到 to 行转为灰度，ARGB 行宽 stride，灰度行宽 width
+     */
+    private static void toGray(int[] argb, int stride, byte[] gray, int width, int from, int to) {
+        for (int y = from; y < to; y++) {
+            int src = y * stride;
+            int dst = y * width;
+            for (int x = 0; x < width; x++) {
+                int pixel = argb[src + x];
+                gray[dst + x] = (byte) ((((pixel >> 16) & 0xFF) * 77 + ((pixel >> 8) & 0xFF) * 150
+                        + (pixel & 0xFF) * 29) >> 8);
+            }
+        }
+    }
+
+    private static void downsample(byte[] src, int srcWidth, byte[] dst, int dstWidth, int from, int to) {
+        for (int y = from; y < to; y++) {
+            int row0 = 2 * y * srcWidth;
+            int row1 = row0 + srcWidth;
+            int out = y * dstWidth;
+            for (int x = 0; x < dstWidth; x++) {
+                int sx = 2 * x;
+                int sum = (src[row0 + sx] & 0xFF) + (src[row0 + sx + 1] & 0xFF)
+                        + (src[row1 + sx] & 0xFF) + (src[row1 + sx + 1] & 0xFF);
+                dst[out + x] = (byte) ((sum + 2) >> 2);
+            }
+        }
+    }
+
+    /**
+     * 模板放在 (x, y) 处的灰度绝对差和，累计达到 bound 时提前返回
+     */
+    private static int sad(byte[] frame, int frameWidth, byte[] tpl, int tw, int th, int x, int y, int bound) {
+        int sum = 0;
+        for (int row = 0; row < th; row++) {
+            int f = (y + row) * frameWidth + x;
+            int t = row * tw;
+            for (int col = 0; col < tw; col++) {
+                sum += Math.abs((frame[f + col] & 0xFF) - (tpl[t + col] & 0xFF));
+            }
+            if (sum >= bound) return sum;
+        }
+        return sum;
+    }
+
+    private interface RowRange {
+        void rows(int from, int to);
+    }
+
+    /**
+     * 按行二分的并行任务
+     */
+    @SuppressWarnings("serial")
+    private static final class RowBands extends RecursiveAction {
+        private final RowRange body;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        RowBands(RowRange body, int from, int to, int grain) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.rows(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RowBands(body, from, mid, grain), new RowBands(body, mid, to, grain));
+        }
+    }
+
+    /**
+     * 最粗一层的分块全搜索，每块保留自己的候选再合并
+     */
+    @SuppressWarnings("serial")
+    private static final class CoarseSearch extends RecursiveTask<Candidates> {
+        private final byte[] frame;
+        private final int frameWidth;
+        private final byte[] tpl;
+        private final int tw;
+        private final int th;
+        private final int minX;
+        private final int maxX;
+        private final int fromY;
+        private final int toY;
+        private final int grain;
+
+        CoarseSearch(byte[] frame, int frameWidth, byte[] tpl, int tw, int th, int minX, int maxX,
+                     int fromY, int toY, int grain) {
+            this.frame = frame;
+            this.frameWidth = frameWidth;
+            this.tpl = tpl;
+            this.tw = tw;
+            this.th = th;
+            this.minX = minX;
+            this.maxX = maxX;
+            this.fromY = fromY;
+            this.toY = toY;
+            this.grain = grain;
+        }
+
+        @Override
+        protected Candidates compute() {
+            if (toY - fromY <= grain) {
+                Candidates candidates = new Candidates(tw, th);
+                for (int y = fromY; y < toY; y++) {
+                    for (int x = minX; x <= maxX; x++) {
+                        int bound = candidates.bound();
+                        int score = sad(frame, frameWidth, tpl, tw, th, x, y, bound);
+                        if (score < bound) {
+                            candidates.offer(score, x, y);
+                        }
+                    }
+                }
+                return candidates;
+            }
+            int mid = (fromY + toY) >>> 1;
+            CoarseSearch upper = new CoarseSearch(frame, frameWidth, tpl, tw, th, minX, maxX, fromY, mid, grain);
+            CoarseSearch lower = new CoarseSearch(frame, frameWidth, tpl, tw, th, minX, maxX, mid, toY, grain);
+            lower.fork();
+            Candidates result = upper.compute();
+            result.merge(lower.join());
+            return result;
+        }
+    }
+}
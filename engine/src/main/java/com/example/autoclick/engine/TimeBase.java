@@ -0,0 +1,30 @@
+package com.example.autoclick.engine;
+
+/**
+ * 时基换算：墙上时间（毫秒）与单调时钟（纳秒）之间的截止时刻计算。
+ * 调用方传入当前时刻，便于在 JVM 上测试和基准。
+ */
+public final class TimeBase {
+    public static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private TimeBase() {
+    }
+
+    /**
+     * 把墙上时间的目标时刻换算到单调时钟时基
+     */
+    public static long wallClockToMonotonicNanos(long targetWallMillis, long nowWallMillis, long nowMonotonicNanos) {
+        return nowMonotonicNanos + (targetWallMillis - nowWallMillis) * NANOS_PER_MILLI;
+    }
+
+    /**
+     * 距离截止时刻的毫秒数，向上取整以免提前触发；已到期返回 0
+     */
+    public static long delayMillisCeil(long deadlineNanos, long nowNanos) {
+        long delayNanos = deadlineNanos - nowNanos;
+        if (delayNanos <= 0) {
+            return 0;
+        }
+        return (delayNanos + NANOS_PER_MILLI - 1) / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.autoclick.engine;
+
+/**
+ * 分层定时轮：每层 64 个槽位，第 L 层一个槽位覆盖 64^L 个刻度，7 层可覆盖约 2^42 个刻度。
+ * 定时器按到期刻度与当前刻度最高的不同位所在层放入对应槽位，
+ * 插入和取消都是 O(1) 的双向链表操作；每层用一个 long 位图记录非空槽位，
+ * 下一次需要推进的刻度可直接由位图算出，调用方只需为最近的非空槽位安排一次唤醒。
+ *
+ * <p>刻度单位由调用方决定（通常为毫秒）。非线程安全，所有方法必须在同一线程调用。
+ */
+public final class TimerWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 7;
+
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * 已加入定时轮的定时器，可随时取消
+     */
+    public static final class Timeout {
+        private final TimerWheel wheel;
+        private final long deadline;
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int slot;
+
+        private Timeout(TimerWheel wheel, long deadline, Runnable task) {
+            this.wheel = wheel;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        public long deadline() {
+            return deadline;
+        }
+
+        /**
+         * 是否仍在等待到期
+         */
+        public boolean isPending() {
+            return level >= 0;
+        }
+
+        /**
+         * 取消定时器，已到期或已取消时返回 false
+         */
+        public boolean cancel() {
+            if (level < 0) return false;
+            wheel.unlink(this);
+            wheel.size--;
+            return true;
+        }
+    }
+
+    // 每个槽位的链表头
+    private final Timeout[][] heads = new Timeout[LEVELS][SLOTS];
+    // 每层非空槽位的位图
+    private final long[] occupied = new long[LEVELS];
+    private long currentTick;
+    private int size;
+
+    public TimerWheel(long startTick) {
+        this.currentTick = startTick;
+    }
+
+    public long currentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 在 deadline 刻度执行 task；已过期的 deadline 会在下一次 advance 时立即执行
+     */
+    public Timeout schedule(long deadline, Runnable task) {
+        if (deadline - currentTick >= 1L << (SLOT_BITS * LEVELS)) {
+            throw new IllegalArgumentException("超出定时轮范围: " + deadline);
+        }
+        Timeout timeout = new Timeout(this, deadline, task);
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * 下一个需要推进到的刻度（到期或需要下沉的槽位），没有定时器时返回 NO_DEADLINE
+     */
+    public long nextTick() {
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * level;
+            int current = (int) (currentTick >>> shift) & SLOT_MASK;
+            // 第 0 层包含当前槽位（已过期的定时器也放在这里），更高层只看之后的槽位
+            int from = level == 0 ? current : current + 1;
+            if (from >= SLOTS) continue;
+            long candidates = occupied[level] & (-1L << from);
+            if (candidates == 0) continue;
+            int slot = Long.numberOfTrailingZeros(candidates);
+            if (level == 0) {
+                return (currentTick & ~(long) SLOT_MASK) | slot;
+            }
+            long blockMask = (1L << (shift + SLOT_BITS)) - 1;
+            return (currentTick & ~blockMask) | ((long) slot << shift);
+        }
+        return NO_DEADLINE;
+    }
+
+    /**
+     * 推进到 nowTick，依次执行所有到期的定时器，返回执行的数量。
+     * 定时器的任务里可以再加入或取消定时器。
+     */
+    public int advance(long nowTick) {
+        int fired = 0;
+        while (true) {
+            long tick = nextTick();
+            if (tick == NO_DEADLINE || tick > nowTick) {
+                // 中间没有非空槽位，直接跳到 nowTick 不会越过任何需要下沉的槽位
+                if (nowTick > currentTick) currentTick = nowTick;
+                return fired;
+            }
+            if (tick > currentTick) currentTick = tick;
+
+            int level = levelToProcess();
+            int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+            // 逐个从槽位摘下：任务里取消同一槽位中尚未执行的定时器时，它会直接从链表中移除
+            Timeout head;
+            while ((head = heads[level][slot]) != null) {
+                unlink(head);
+                if (level == 0) {
+                    size--;
+                    fired++;
+                    head.task.run();
+                } else {
+                    // 下沉到更低层
+                    place(head);
+                }
+            }
+        }
+    }
+
+    /**
+     * 当前刻度上需要处理的层：第 0 层当前槽位非空时执行到期，否则下沉最低的一个非空层
+     */
+    private int levelToProcess() {
+        for (int level = 0; level < LEVELS; level++) {
+            int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+            if ((occupied[level] & (1L << slot)) != 0) {
+                return level;
+            }
+        }
+        throw new IllegalStateException("定时轮状态错误: " + currentTick);
+    }
+
+    private void place(Timeout timeout) {
+        int level;
+        int slot;
+        if (timeout.deadline <= currentTick) {
+            level = 0;
+            slot = (int) currentTick & SLOT_MASK;
+        } else {
+            long diff = timeout.deadline ^ currentTick;
+            level = (63 - Long.numberOfLeadingZeros(diff)) / SLOT_BITS;
+            slot = (int) (timeout.deadline >>> (SLOT_BITS * level)) & SLOT_MASK;
+        }
+
+        Timeout head = heads[level][slot];
+        timeout.next = head;
+        timeout.prev = null;
+        if (head != null) head.prev = timeout;
+        heads[level][slot] = timeout;
+        occupied[level] |= 1L << slot;
+        timeout.level = level;
+        timeout.slot = slot;
+    }
+
+    private void unlink(Timeout timeout) {
+        int level = timeout.level;
+        int slot = timeout.slot;
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            heads[level][slot] = timeout.next;
+            if (timeout.next == null) {
+                occupied[level] &= ~(1L << slot);
+            }
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+    }
+}
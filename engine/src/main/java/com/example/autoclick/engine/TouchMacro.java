@@ -0,0 +1,36 @@
+package com.example.autoclick.engine;
+
+/**
+ * 触摸宏的二进制格式：文件头为 4 字节魔数 "ACMR" 和 1 字节版本号，之后是连续的事件记录，直到文件结束。
+ * 每条记录：
+ * <pre>
+ *   1 字节标记   低 2 位为动作（按下/移动/抬起），其余 5 位为手指编号
+ *   varint      距上一条记录的毫秒数
+ *   zigzag varint x、y 相对同一手指上一个位置的增量（手指第一次出现时相对 (0, 0)）
+ * </pre>
+ * 连续移动通常每条只占 4 字节；同一位置的重复点击坐标增量为 0，也只占 4 字节。
+ * 时间以录制开始为 0，毫秒精度。
+ */
+public final class TouchMacro {
+    static final byte[] MAGIC = {'A', 'C', 'M', 'R'};
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = MAGIC.length + 1;
+
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_MOVE = 1;
+    public static final int ACTION_UP = 2;
+
+    // 手指编号占 5 位
+    public static final int MAX_POINTERS = 32;
+
+    private TouchMacro() {
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.autoclick.engine;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 当前有效的事件触发条件，并汇总出无障碍服务需要订阅的最小事件范围。
+ * 写时复制：增删时生成新的条目数组，事件分发时遍历快照，监听器在回调中增删条件不影响本次遍历。
+ * 增删和遍历都在主线程。
+ */
+public final class TriggerRegistry<T> {
+
+    public static final class Entry<T> {
+        public final int key;
+        public final EventTrigger trigger;
+        public final T listener;
+
+        Entry(int key, EventTrigger trigger, T listener) {
+            this.key = key;
+            this.trigger = trigger;
+            this.listener = listener;
+        }
+    }
+
+    private static final Entry<?>[] EMPTY = new Entry<?>[0];
+
+    private Entry<?>[] entries = EMPTY;
+    private int eventMask;
+    private String[] packageNames;
+
+    /**
+     * 添加或替换 key 对应的触发条件
+     */
+    public void put(int key, EventTrigger trigger, T listener) {
+        int index = indexOf(key);
+        Entry<?>[] next;
+        if (index >= 0) {
+            next = entries.clone();
+        } else {
+            next = new Entry<?>[entries.length + 1];
+            System.arraycopy(entries, 0, next, 0, entries.length);
+            index = entries.length;
+        }
+        next[index] = new Entry<>(key, trigger, listener);
+        update(next);
+    }
+
+    /**
+     * @return key 存在并已移除时返回 true
+     */
+    public boolean remove(int key) {
+        int index = indexOf(key);
+        if (index < 0) return false;
+        Entry<?>[] next = new Entry<?>[entries.length - 1];
+        System.arraycopy(entries, 0, next, 0, index);
+        System.arraycopy(entries, index + 1, next, index, next.length - index);
+        update(next);
+        return true;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * 当前条目的快照，调用方不得修改
+     */
+    @SuppressWarnings("unchecked")
+    public Entry<T>[] entries() {
+        return (Entry<T>[]) entries;
+    }
+
+    /**
+     * 所有条件需要的事件类型之和，没有条件时为 0
+     */
+    public int eventMask() {
+        return eventMask;
+    }
+
+    /**
+     * 所有条件涉及的应用；有条件不限应用或没有条件时返回 null（不按应用过滤）
+     */
+    public String[] packageNames() {
+        return packageNames == null ? null : packageNames.clone();
+    }
+
+    private int indexOf(int key) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].key == key) return i;
+        }
+        return -1;
+    }
+
+    private void update(Entry<?>[] next) {
+        int mask = 0;
+        Set<String> packages = new LinkedHashSet<>();
+        boolean anyPackage = false;
+        for (Entry<?> entry : next) {
+            mask |= entry.trigger.eventTypes();
+            String pkg = entry.trigger.packageName();
+            if (pkg == null) {
+                anyPackage = true;
+            } else {
+                packages.add(pkg);
+            }
+        }
+        entries = next;
+        eventMask = mask;
+        packageNames = anyPackage || packages.isEmpty() ? null : packages.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ClickChordTest {
+
+    @Test
+    public void parsesPointsInOrder() {
+        ClickChord chord = ClickChord.parse(" 100, 200 ;300,400;0,0");
+        assertEquals(3, chord.size());
+        assertEquals(100, chord.x(0));
+        assertEquals(200, chord.y(0));
+        assertEquals(300, chord.x(1));
+        assertEquals(400, chord.y(1));
+        assertEquals(0, chord.x(2));
+        assertEquals(0, chord.y(2));
+    }
+
+    @Test
+    public void blankSegmentsAreSkipped() {
+        ClickChord chord = ClickChord.parse(";1,2;; ;3,4;");
+        assertEquals(2, chord.size());
+        assertEquals("1,2;3,4", chord.toString());
+    }
+
+    @Test
+    public void rejectsMalformedChords() {
+        String[] bad = {
+                null, "", " ; ", "1,2", "1,2;;", "-1,2;3,4", "1,-2;3,4", "1;2,3", "1,2,3;4,5", "a,b;1,2",
+                "1,;2,3", ",1;2,3", "1 2;3 4", "99999999999,1;2,3", "1.5,2;3,4"
+        };
+        for (String source : bad) {
+            try {
+                ClickChord.parse(source);
+                fail(source);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void toStringRoundTrips() {
+        String[] specs = {"1,2;3,4", "540,1200;100,100;980,2000;0,0;2147483647,2147483647"};
+        for (String spec : specs) {
+            ClickChord chord = ClickChord.parse(spec);
+            assertEquals(spec, chord.toString());
+            assertEquals(spec, ClickChord.parse(chord.toString()).toString());
+        }
+        assertEquals("10,20;30,40", ClickChord.parse(" 10 , 20 ; 30 , 40 ").toString());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ClickPipelineTest {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private int dispatched;
+
+    private final ClickPipeline pipeline = new ClickPipeline(new ClickPipeline.Dispatcher() {
+        @Override
+        public boolean dispatchTap(int x, int y) {
+            dispatched++;
+            return true;
+        }
+    }, 2, 50_000_000L, latency);
+
+    @Test
+    public void completionReturnsAndRecordsLatency() {
+        pipeline.submitTap(1, 1, 1_000, 1_000);
+        assertEquals(4_000, pipeline.onGestureCompleted(5_000));
+        assertEquals(1, latency.getCount());
+        assertEquals(4_000, latency.getMax());
+        assertEquals(1, pipeline.getDelivered());
+    }
+
+    @Test
+    public void completionWithNothingInFlightIsIgnored() {
+        assertEquals(-1, pipeline.onGestureCompleted(5_000));
+        assertEquals(0, latency.getCount());
+    }
+
+    @Test
+    public void fullWindowHoldsOneTapUntilCompletion() {
+        pipeline.submitTap(1, 1, 0, 0);
+        pipeline.submitTap(2, 2, 0, 0);
+        pipeline.submitTap(3, 3, 0, 0);
+        pipeline.submitTap(4, 4, 0, 0);
+        assertEquals(2, dispatched);
+        // 第 3 次被第 4 次替换
+        assertEquals(1, pipeline.getDropped());
+
+        pipeline.onGestureCompleted(1_000);
+        assertEquals(3, dispatched);
+        assertEquals(2, pipeline.getInFlight());
+    }
+
+    @Test
+    public void cancelledTapIsRetriedWithinWindow() {
+        pipeline.submitTap(1, 1, 0, 0);
+        pipeline.onGestureCancelled(10_000_000L);
+        assertEquals(1, pipeline.getRetried());
+        assertEquals(2, dispatched);
+
+        pipeline.onGestureCancelled(100_000_000L);
+        assertEquals(1, pipeline.getCancelled());
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ClickScriptTest {
+
+    private static void expectRejected(String source) {
+        try {
+            ClickScript.parse(source).compile();
+            fail(source);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void compilesStepsInOrder() {
+        ClickScript.Compiled compiled = ClickScript.parse("tap 540 1200; wait 80\ntap -1 7 ; wait 20").compile();
+        assertEquals(2, compiled.size());
+        assertEquals(0, compiled.offsetMsAt(0));
+        assertEquals(540, compiled.xAt(0));
+        assertEquals(1200, compiled.yAt(0));
+        assertEquals(80, compiled.offsetMsAt(1));
+        assertEquals(-1, compiled.xAt(1));
+        // 总时长包括最后一次点击之后的等待
+        assertEquals(100, compiled.durationMs());
+    }
+
+    @Test
+    public void expandsNestedRepeats() {
+        ClickScript.Compiled compiled = ClickScript.parse(
+                "tap 1 1; REPEAT 2 { wait 10; repeat 3 { tap 2 2; wait 5 } } tap 3 3").compile();
+        assertEquals(1 + 2 * 3 + 1, compiled.size());
+        long[] expected = {0, 10, 15, 20, 35, 40, 45, 50};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("tap " + i, expected[i], compiled.offsetMsAt(i));
+        }
+        assertEquals(3, compiled.xAt(7));
+        assertEquals(50, compiled.durationMs());
+    }
+
+    @Test
+    public void zeroRepeatEmitsNothing() {
+        ClickScript.Compiled compiled = ClickScript.parse("repeat 0 { tap 1 1; wait 1000 } tap 2 2").compile();
+        assertEquals(1, compiled.size());
+        assertEquals(0, compiled.offsetMsAt(0));
+        assertEquals(2, compiled.xAt(0));
+    }
+
+    @Test
+    public void tapLimitIsInclusive() {
+        assertEquals(ClickScript.MAX_TAPS,
+                ClickScript.parse("repeat " + ClickScript.MAX_TAPS + " { tap 1 1 }").compile().size());
+        expectRejected("repeat " + (ClickScript.MAX_TAPS + 1) + " { tap 1 1 }");
+        // 嵌套相乘后超限
+        expectRejected("repeat 1000 { repeat 1000 { tap 1 1 } }");
+        expectRejected("repeat 2147483647 { repeat 2147483647 { tap 1 1 } }");
+    }
+
+    @Test(timeout = 5000)
+    public void waitOnlyRepeatsAreBounded() {
+        ClickScript.Compiled compiled = ClickScript.parse("tap 1 1; repeat 999999 { wait 1 }").compile();
+        assertEquals(999_999, compiled.durationMs());
+        // 不含点击的重复块曾能让展开循环 4×10^18 次
+        expectRejected("tap 1 1; repeat 2147483647 { repeat 2147483647 { wait 1 } }");
+        expectRejected("tap 1 1; repeat 1000001 { wait 1 }");
+    }
+
+    @Test(timeout = 5000)
+    public void emptyRepeatsAreBounded() {
+        // 空循环体每次迭代算一步，嵌套后同样受步骤上限约束
+        expectRejected("tap 1 1; repeat 100000 { repeat 100000 { } }");
+        expectRejected("tap 1 1; repeat 1000001 { }");
+        ClickScript.Compiled compiled = ClickScript.parse("tap 1 1; repeat 1000 { repeat 999 { } } tap 2 2").compile();
+        assertEquals(2, compiled.size());
+        assertEquals(0, compiled.offsetMsAt(1));
+    }
+
+    @Test
+    public void rejectsDeepNesting() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            source.append("repeat 1 { ");
+        }
+        source.append("tap 1 1");
+        for (int i = 0; i < 40; i++) {
+            source.append(" }");
+        }
+        expectRejected(source.toString());
+    }
+
+    @Test
+    public void rejectsMalformedScripts() {
+        String[] bad = {
+                "", "  ;; ", "tap 1", "tap x 1", "wait", "wait -5", "jump 1 2", "}", "tap 1 1 }",
+                "repeat 2 tap 1 1", "repeat 2 { tap 1 1", "repeat -1 { tap 1 1 }", "tap 99999999999 1"
+        };
+        for (String source : bad) {
+            expectRejected(source);
+        }
+    }
+
+    @Test
+    public void errorReportsPosition() {
+        try {
+            ClickScript.parse("tap 1 1; bogus");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("第 15 个字符"));
+        }
+    }
+}
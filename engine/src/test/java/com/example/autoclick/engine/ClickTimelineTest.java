@@ -0,0 +1,50 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class ClickTimelineTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void buildStaysWithinDurationAndInterval() {
+        ClickTimeline timeline = ClickTimeline.build(1000 * MS, 2000 * MS, 100, 50, new Random(5));
+        assertEquals(1000 * MS, timeline.startNanos());
+        assertTrue(timeline.lastDeadlineNanos() <= 3000 * MS);
+        for (int i = 1; i < timeline.size(); i++) {
+            long interval = timeline.deadlineAt(i) - timeline.deadlineAt(i - 1);
+            assertTrue(interval >= 100 * MS && interval <= 150 * MS);
+        }
+    }
+
+    @Test
+    public void shiftMovesEverySlotAndKeepsIntervals() {
+        ClickTimeline timeline = ClickTimeline.build(1000 * MS, 1000 * MS, 100, 30, new Random(9));
+        long[] before = new long[timeline.size()];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = timeline.deadlineAt(i);
+        }
+        // 提前量从 0 变为 12ms，整条时间线提前
+        timeline.shift(-12 * MS);
+        assertEquals(988 * MS, timeline.startNanos());
+        for (int i = 0; i < before.length; i++) {
+            assertEquals(before[i] - 12 * MS, timeline.deadlineAt(i));
+        }
+        timeline.shift(12 * MS);
+        assertEquals(before[before.length - 1], timeline.lastDeadlineNanos());
+    }
+
+    @Test
+    public void skipPolicyJumpsToLatestDueSlot() {
+        ClickTimeline timeline = ClickTimeline.build(0, 1000 * MS, 100, 0, new Random(1));
+        assertEquals(11, timeline.size());
+        assertEquals(3, timeline.nextSlot(0, 350 * MS, ClickTimeline.MissedSlotPolicy.SKIP));
+        assertEquals(0, timeline.nextSlot(0, 350 * MS, ClickTimeline.MissedSlotPolicy.COMPRESS));
+        timeline.shift(50 * MS);
+        assertEquals(3, timeline.nextSlot(0, 350 * MS, ClickTimeline.MissedSlotPolicy.SKIP));
+        assertEquals(2, timeline.nextSlot(0, 349 * MS, ClickTimeline.MissedSlotPolicy.SKIP));
+    }
+}
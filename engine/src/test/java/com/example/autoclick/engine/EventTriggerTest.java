@@ -0,0 +1,153 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class EventTriggerTest {
+
+    @Test
+    public void parsesEachKind() {
+        EventTrigger window = EventTrigger.parse("  window: com.foo ");
+        assertEquals(EventTrigger.Kind.WINDOW, window.kind());
+        assertEquals("com.foo", window.packageName());
+        assertNull(window.value());
+        assertEquals(EventTrigger.TYPE_WINDOW_STATE_CHANGED, window.eventTypes());
+
+        // 文字中的冒号和开头空格保留，整条规格先去掉首尾空白
+        EventTrigger text = EventTrigger.parse("text:com.foo: 抢购:开始 ");
+        assertEquals(EventTrigger.Kind.TEXT, text.kind());
+        assertEquals("com.foo", text.packageName());
+        assertEquals(" 抢购:开始", text.value());
+
+        EventTrigger anyApp = EventTrigger.parse("text::确定");
+        assertNull(anyApp.packageName());
+        assertEquals("确定", anyApp.value());
+
+        EventTrigger view = EventTrigger.parse("view:com.foo:com.foo:id/submit");
+        assertEquals(EventTrigger.Kind.VIEW, view.kind());
+        assertEquals("com.foo", view.packageName());
+        assertEquals("com.foo:id/submit", view.value());
+        assertEquals(EventTrigger.TYPE_WINDOW_CONTENT_CHANGED, view.eventTypes());
+    }
+
+    @Test
+    public void rejectsMalformedSpecs() {
+        String[] bad = {
+                null, "", "window", "window:", "window: ", "window:a:b", "text:com.foo", "text:com.foo:",
+                "view:com.foo", "view:com.foo: ", "click:com.foo", "WINDOW:com.foo", ":com.foo"
+        };
+        for (String source : bad) {
+            try {
+                EventTrigger.parse(source);
+                fail(source);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void toStringRoundTrips() {
+        String[] specs = {
+                "window:com.foo", "text:com.foo:抢购开始", "text::a:b:c", "view::com.foo:id/ok",
+                "view:com.bar:com.bar:id/submit"
+        };
+        for (String spec : specs) {
+            EventTrigger trigger = EventTrigger.parse(spec);
+            assertEquals(spec, trigger.toString());
+            EventTrigger again = EventTrigger.parse(trigger.toString());
+            assertEquals(trigger.kind(), again.kind());
+            assertEquals(trigger.packageName(), again.packageName());
+            assertEquals(trigger.value(), again.value());
+        }
+    }
+
+    @Test
+    public void acceptsByTypeAndPackage() {
+        EventTrigger text = EventTrigger.text("com.foo", "确定");
+        assertTrue(text.accepts(EventTrigger.TYPE_VIEW_TEXT_CHANGED, "com.foo"));
+        assertTrue(text.accepts(EventTrigger.TYPE_WINDOW_CONTENT_CHANGED, new StringBuilder("com.foo")));
+        assertFalse(text.accepts(EventTrigger.TYPE_VIEW_TEXT_CHANGED, "com.bar"));
+        assertFalse(text.accepts(EventTrigger.TYPE_VIEW_TEXT_CHANGED, null));
+        assertFalse(text.accepts(0x1, "com.foo"));
+
+        EventTrigger anyApp = EventTrigger.text("", "确定");
+        assertTrue(anyApp.accepts(EventTrigger.TYPE_WINDOW_STATE_CHANGED, null));
+        assertFalse(EventTrigger.window("com.foo").accepts(EventTrigger.TYPE_WINDOW_CONTENT_CHANGED, "com.foo"));
+    }
+
+    @Test
+    public void registryAggregatesMaskAndPackages() {
+        TriggerRegistry<String> registry = new TriggerRegistry<>();
+        assertEquals(0, registry.eventMask());
+        assertNull(registry.packageNames());
+
+        registry.put(1, EventTrigger.window("com.foo"), "a");
+        registry.put(2, EventTrigger.view("com.bar", "com.bar:id/x"), "b");
+        registry.put(3, EventTrigger.window("com.foo"), "c");
+        assertEquals(EventTrigger.TYPE_WINDOW_STATE_CHANGED | EventTrigger.TYPE_WINDOW_CONTENT_CHANGED,
+                registry.eventMask());
+        assertArrayEquals(new String[]{"com.foo", "com.bar"}, registry.packageNames());
+        // 返回副本，调用方修改不影响注册表
+        registry.packageNames()[0] = "x";
+        assertEquals("com.foo", registry.packageNames()[0]);
+
+        // 任一条件不限应用时不按应用过滤
+        registry.put(4, EventTrigger.text(null, "确定"), "d");
+        assertNull(registry.packageNames());
+        assertTrue(registry.remove(4));
+        assertArrayEquals(new String[]{"com.foo", "com.bar"}, registry.packageNames());
+
+        assertTrue(registry.remove(2));
+        assertFalse(registry.remove(2));
+        assertEquals(EventTrigger.TYPE_WINDOW_STATE_CHANGED, registry.eventMask());
+        assertArrayEquals(new String[]{"com.foo"}, registry.packageNames());
+    }
+
+    @Test
+    public void putReplacesInPlace() {
+        TriggerRegistry<String> registry = new TriggerRegistry<>();
+        registry.put(1, EventTrigger.window("com.a"), "a");
+        registry.put(2, EventTrigger.window("com.b"), "b");
+        registry.put(3, EventTrigger.window("com.c"), "c");
+        registry.put(2, EventTrigger.window("com.d"), "d");
+        assertEquals(3, registry.size());
+        TriggerRegistry.Entry<String>[] entries = registry.entries();
+        assertEquals(2, entries[1].key);
+        assertEquals("d", entries[1].listener);
+        assertArrayEquals(new String[]{"com.a", "com.d", "com.c"}, registry.packageNames());
+    }
+
+    @Test
+    public void mutationDuringIterationDoesNotAffectSnapshot() {
+        final TriggerRegistry<String> registry = new TriggerRegistry<>();
+        for (int i = 0; i < 5; i++) {
+            registry.put(i, EventTrigger.window("com.p" + i), "l" + i);
+        }
+        TriggerRegistry.Entry<String>[] snapshot = registry.entries();
+        List<Integer> visited = new ArrayList<>();
+        for (TriggerRegistry.Entry<String> entry : snapshot) {
+            visited.add(entry.key);
+            // 监听器在回调中移除自己、移除后面的条件并添加新条件
+            registry.remove(entry.key);
+            registry.remove(entry.key + 1);
+            registry.put(100 + entry.key, EventTrigger.window("com.new"), "n");
+        }
+        assertEquals(5, visited.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, (int) visited.get(i));
+            assertEquals(i, snapshot[i].key);
+        }
+        assertEquals(5, registry.size());
+        assertArrayEquals(new String[]{"com.new"}, registry.packageNames());
+        assertSame(registry.entries(), registry.entries());
+    }
+}
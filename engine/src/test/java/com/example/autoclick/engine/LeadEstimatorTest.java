@@ -0,0 +1,158 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class LeadEstimatorTest {
+    private static final long MS = 1_000_000L;
+
+    private final LeadEstimator estimator = new LeadEstimator();
+
+    @Test
+    public void notReadyBelowMinSamples() {
+        assertFalse(estimator.isReady());
+        assertEquals(0, estimator.median());
+        assertEquals(0, estimator.confidenceNanos());
+        for (int i = 1; i < LeadEstimator.MIN_SAMPLES; i++) {
+            estimator.add(10 * MS);
+            assertFalse(estimator.isReady());
+        }
+        estimator.add(10 * MS);
+        assertTrue(estimator.isReady());
+        assertEquals(10 * MS, estimator.median());
+        // 样本完全一致时没有离散
+        assertEquals(0, estimator.mad());
+        assertEquals(0, estimator.confidenceNanos());
+    }
+
+    @Test
+    public void medianAndMadOfOddAndEvenCounts() {
+        long[] values = {9, 1, 5, 3, 7};
+        for (long value : values) {
+            estimator.add(value * MS);
+        }
+        assertEquals(5 * MS, estimator.median());
+        // 偏差 4、4、0、2、2，中位数 2
+        assertEquals(2 * MS, estimator.mad());
+        estimator.add(11 * MS);
+        assertEquals(6 * MS, estimator.median());
+    }
+
+    @Test
+    public void steadyStreamConvergesToMedian() {
+        Random random = new Random(4);
+        for (int i = 0; i < 500; i++) {
+            // 12ms 上下 ±1ms 均匀抖动
+            estimator.add(12 * MS + random.nextInt(2_000_001) - 1_000_000);
+        }
+        assertTrue(Math.abs(estimator.median() - 12 * MS) < 300_000);
+        assertTrue(estimator.mad() < MS);
+        assertTrue(estimator.confidenceNanos() < 200_000);
+        assertEquals(LeadEstimator.WINDOW, estimator.size());
+        assertEquals(500, estimator.total());
+    }
+
+    @Test
+    public void singleOutlierDoesNotMoveEstimate() {
+        for (int i = 0; i < 20; i++) {
+            estimator.add((10 + i % 3) * MS);
+        }
+        long median = estimator.median();
+        long mad = estimator.mad();
+        // 一次调度卡顿
+        estimator.add(190 * MS);
+        assertEquals(median, estimator.median());
+        assertEquals(mad, estimator.mad());
+        estimator.add(0);
+        assertEquals(median, estimator.median());
+    }
+
+    @Test
+    public void windowRollsOverOldestSamples() {
+        for (int i = 0; i < LeadEstimator.WINDOW; i++) {
+            estimator.add(5 * MS);
+        }
+        assertEquals(5 * MS, estimator.median());
+        // 新样本过半后估计值切换到新水平
+        for (int i = 0; i < LeadEstimator.WINDOW / 2; i++) {
+            estimator.add(20 * MS);
+        }
+        assertEquals((5 * MS + 20 * MS) / 2, estimator.median());
+        estimator.add(20 * MS);
+        assertEquals(20 * MS, estimator.median());
+        for (int i = 0; i < LeadEstimator.WINDOW; i++) {
+            estimator.add(20 * MS);
+        }
+        assertEquals(LeadEstimator.WINDOW, estimator.size());
+        assertEquals(2 * LeadEstimator.WINDOW + LeadEstimator.WINDOW / 2 + 1, estimator.total());
+        assertEquals(20 * MS, estimator.median());
+        assertEquals(0, estimator.mad());
+    }
+
+    @Test
+    public void roundTripsAfterRollover() throws IOException {
+        for (int i = 0; i < LeadEstimator.WINDOW + 10; i++) {
+            estimator.add(i * MS);
+        }
+        byte[] bytes = estimator.toBytes();
+        LeadEstimator restored = new LeadEstimator();
+        restored.read(ByteBuffer.wrap(bytes));
+        assertEquals(estimator.size(), restored.size());
+        assertEquals(estimator.total(), restored.total());
+        assertEquals(estimator.median(), restored.median());
+        assertEquals(estimator.mad(), restored.mad());
+        // 从旧到新保存，之后的样本覆盖的是最旧的那个
+        assertTrue(Arrays.equals(bytes, restored.toBytes()));
+        estimator.add(1000 * MS);
+        restored.add(1000 * MS);
+        assertTrue(Arrays.equals(estimator.toBytes(), restored.toBytes()));
+    }
+
+    @Test
+    public void rejectsCorruptDataAndKeepsContent() {
+        estimator.add(3 * MS);
+        byte[] bytes = estimator.toBytes();
+        LeadEstimator target = new LeadEstimator();
+        for (int i = 0; i < LeadEstimator.MIN_SAMPLES; i++) {
+            target.add(7 * MS);
+        }
+        byte[][] bad = {Arrays.copyOf(bytes, bytes.length - 1), new byte[]{2}, new byte[0]};
+        for (byte[] data : bad) {
+            try {
+                target.read(ByteBuffer.wrap(data));
+                fail();
+            } catch (IOException expected) {
+            }
+        }
+        ByteBuffer tooMany = ByteBuffer.allocate(13);
+        tooMany.put((byte) 1).putLong(0).putInt(LeadEstimator.WINDOW + 1);
+        tooMany.flip();
+        try {
+            target.read(tooMany);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(LeadEstimator.MIN_SAMPLES, target.size());
+        assertEquals(7 * MS, target.median());
+    }
+
+    @Test
+    public void clearResetsEverything() {
+        for (int i = 0; i < 10; i++) {
+            estimator.add(MS);
+        }
+        estimator.clear();
+        assertEquals(0, estimator.size());
+        assertEquals(0, estimator.total());
+        assertFalse(estimator.isReady());
+        assertEquals(0, estimator.median());
+    }
+}
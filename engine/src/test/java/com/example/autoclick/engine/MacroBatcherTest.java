@@ -0,0 +1,190 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class MacroBatcherTest {
+    private static final int DOWN = TouchMacro.ACTION_DOWN;
+    private static final int MOVE = TouchMacro.ACTION_MOVE;
+    private static final int UP = TouchMacro.ACTION_UP;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final MacroWriter writer;
+    private MacroBatcher batcher;
+
+    public MacroBatcherTest() throws IOException {
+        writer = new MacroWriter(bytes);
+    }
+
+    private void event(long timeMs, int action, int pointerId, int x, int y) throws IOException {
+        writer.add(timeMs, action, pointerId, x, y);
+    }
+
+    private void tap(long downMs, long upMs, int x, int y) throws IOException {
+        event(downMs, DOWN, 0, x, y);
+        event(upMs, UP, 0, x, y);
+    }
+
+    /**
+     * 切出所有批次，每批复制一份，便于逐批检查
+     */
+    private List<StrokeBatch> batches(int maxStrokes, long maxDurationMs) throws IOException {
+        writer.close();
+        batcher = new MacroBatcher(new MacroReader(ByteBuffer.wrap(bytes.toByteArray())), maxStrokes, maxDurationMs);
+        List<StrokeBatch> result = new ArrayList<>();
+        StrokeBatch batch = new StrokeBatch();
+        while (batcher.next(batch)) {
+            StrokeBatch copy = new StrokeBatch();
+            copy.setStartMs(batch.startMs());
+            for (int i = 0; i < batch.size(); i++) {
+                copy.copyStroke(batch, i, 0);
+            }
+            result.add(copy);
+            // 每批都在上限之内
+            assertTrue(batch.size() <= maxStrokes);
+            assertTrue(batch.durationMs() <= maxDurationMs);
+        }
+        assertFalse(batcher.next(batch));
+        assertEquals(result.size(), batcher.getBatchCount());
+        return result;
+    }
+
+    @Test
+    public void singleTapIsOneStroke() throws IOException {
+        tap(100, 150, 10, 20);
+        List<StrokeBatch> batches = batches(10, 60_000);
+        assertEquals(1, batches.size());
+        StrokeBatch batch = batches.get(0);
+        assertEquals(100, batch.startMs());
+        assertEquals(1, batch.size());
+        assertEquals(0, batch.strokeStartMs(0));
+        assertEquals(50, batch.strokeDurationMs(0));
+        // 抬起点与按下点重合，只保留一个
+        assertEquals(1, batch.pointCount(0));
+        int point = batch.firstPoint(0);
+        assertEquals(10, batch.x(point));
+        assertEquals(20, batch.y(point));
+    }
+
+    @Test
+    public void zeroLengthTapGetsPositiveDuration() throws IOException {
+        tap(100, 100, 1, 1);
+        assertEquals(1, batches(10, 60_000).get(0).strokeDurationMs(0));
+    }
+
+    @Test
+    public void cutsAtStrokeLimit() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            tap(i * 100, i * 100 + 30, i, i);
+        }
+        List<StrokeBatch> batches = batches(3, 60_000);
+        assertEquals(2, batches.size());
+        assertEquals(3, batches.get(0).size());
+        assertEquals(0, batches.get(0).startMs());
+        assertEquals(2, batches.get(1).size());
+        // 下一批的笔画相对它自己的开始时刻
+        assertEquals(300, batches.get(1).startMs());
+        assertEquals(0, batches.get(1).strokeStartMs(0));
+        assertEquals(100, batches.get(1).strokeStartMs(1));
+        assertEquals(0, batcher.getTruncated());
+    }
+
+    @Test
+    public void cutsAtDurationLimit() throws IOException {
+        tap(0, 50, 0, 0);
+        tap(400, 450, 0, 0);
+        tap(800, 850, 0, 0);
+        tap(1200, 1250, 0, 0);
+        List<StrokeBatch> batches = batches(10, 1000);
+        assertEquals(2, batches.size());
+        assertEquals(3, batches.get(0).size());
+        assertEquals(850, batches.get(0).durationMs());
+        assertEquals(1200, batches.get(1).startMs());
+        assertEquals(50, batches.get(1).durationMs());
+    }
+
+    @Test
+    public void neverCutsWhileAFingerIsDown() throws IOException {
+        event(0, DOWN, 0, 10, 10);
+        event(500, DOWN, 1, 20, 20);
+        event(600, UP, 0, 10, 10);
+        event(900, UP, 1, 25, 25);
+        tap(950, 1100, 30, 30);
+        List<StrokeBatch> batches = batches(10, 1000);
+        assertEquals(2, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(500, batches.get(0).strokeStartMs(1));
+        assertEquals(400, batches.get(0).strokeDurationMs(1));
+        assertEquals(2, batches.get(0).pointCount(1));
+        assertEquals(950, batches.get(1).startMs());
+    }
+
+    @Test
+    public void extraFingersBeyondStrokeLimitAreIgnored() throws IOException {
+        event(0, DOWN, 0, 1, 1);
+        event(10, DOWN, 1, 2, 2);
+        event(20, DOWN, 2, 3, 3);
+        event(30, MOVE, 2, 4, 4);
+        event(100, UP, 2, 4, 4);
+        event(110, UP, 1, 2, 2);
+        event(120, UP, 0, 1, 1);
+        tap(200, 250, 5, 5);
+        List<StrokeBatch> batches = batches(2, 60_000);
+        assertEquals(1, batcher.getTruncated());
+        assertEquals(2, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(1, batches.get(1).size());
+    }
+
+    @Test
+    public void longTouchIsClippedAtDurationLimit() throws IOException {
+        event(0, DOWN, 0, 0, 0);
+        event(500, MOVE, 0, 50, 0);
+        event(1500, MOVE, 0, 150, 0);
+        event(3000, UP, 0, 300, 0);
+        List<StrokeBatch> batches = batches(10, 1000);
+        assertEquals(1, batches.size());
+        StrokeBatch batch = batches.get(0);
+        assertEquals(1000, batch.strokeDurationMs(0));
+        // 超时之后的移动和抬起点被截掉
+        assertEquals(2, batch.pointCount(0));
+        assertEquals(1, batcher.getTruncated());
+    }
+
+    @Test
+    public void fingerStillDownAtEndIsLiftedAtLastEvent() throws IOException {
+        tap(0, 40, 0, 0);
+        event(100, DOWN, 3, 7, 7);
+        event(180, MOVE, 3, 9, 9);
+        List<StrokeBatch> batches = batches(10, 60_000);
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(80, batches.get(0).strokeDurationMs(1));
+        assertEquals(2, batches.get(0).pointCount(1));
+    }
+
+    @Test
+    public void manyBatchesKeepEveryStroke() throws IOException {
+        int taps = 1000;
+        for (int i = 0; i < taps; i++) {
+            tap(i * 37L, i * 37L + 20, i % 100, i / 100);
+        }
+        int strokes = 0;
+        long lastStart = -1;
+        for (StrokeBatch batch : batches(20, 500)) {
+            assertTrue(batch.startMs() > lastStart);
+            lastStart = batch.startMs();
+            strokes += batch.size();
+        }
+        assertEquals(taps, strokes);
+        assertEquals(0, batcher.getTruncated());
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class NodeIndexTest {
+
+    /**
+     * 模拟的界面节点，按对象身份作为句柄
+     */
+    private static final class FakeNode {
+        final int id;
+        FakeNode parent;
+        final List<FakeNode> children = new ArrayList<>();
+        boolean attached = true;
+        boolean visible = true;
+        int version;
+
+        FakeNode(int id) {
+            this.id = id;
+        }
+
+        String viewId() {
+            return "com.foo:id/item_" + id % 5;
+        }
+
+        String text() {
+            return "节点 " + id + "." + version;
+        }
+
+        String desc() {
+            return id % 3 == 0 ? null : "描述 " + id % 3;
+        }
+
+        long point() {
+            return visible ? CoordinateCell.pack(id, version) : CoordinateCell.UNSET;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + id;
+        }
+    }
+
+    private final Random random = new Random(21);
+    private final List<FakeNode> attached = new ArrayList<>();
+    private int nextId;
+    private FakeNode root;
+
+    private FakeNode newNode(FakeNode parent) {
+        FakeNode node = new FakeNode(nextId++);
+        node.parent = parent;
+        if (parent != null) {
+            parent.children.add(node);
+        }
+        attached.add(node);
+        return node;
+    }
+
+    private void buildTree(int size) {
+        root = newNode(null);
+        while (attached.size() < size) {
+            newNode(attached.get(random.nextInt(attached.size())));
+        }
+    }
+
+    private void detach(FakeNode node) {
+        node.attached = false;
+        attached.remove(node);
+        for (FakeNode child : node.children) {
+            detach(child);
+        }
+    }
+
+    /**
+     * 与 NodeLocator.walk 相同：显式栈遍历，已在索引中的节点连同子树跳过
+     */
+    private static void walk(NodeIndex<FakeNode> index, FakeNode parent, FakeNode node) {
+        ArrayList<FakeNode> stack = new ArrayList<>();
+        ArrayList<FakeNode> parents = new ArrayList<>();
+        stack.add(node);
+        parents.add(parent);
+        while (!stack.isEmpty()) {
+            int last = stack.size() - 1;
+            FakeNode current = stack.remove(last);
+            FakeNode currentParent = parents.remove(last);
+            if (index.contains(current)) continue;
+            index.add(currentParent, current, current.viewId(), current.text(), current.desc(), current.point());
+            for (int i = current.children.size() - 1; i >= 0; i--) {
+                stack.add(current.children.get(i));
+                parents.add(current);
+            }
+        }
+    }
+
+    /**
+     * 与 NodeLocator.refreshDirty 相同：祖先也失效的子树由祖先覆盖，已脱离界面的节点不再加入
+     */
+    private static void refreshDirty(NodeIndex<FakeNode> index) {
+        for (int i = 0; i < index.dirtyCount(); i++) {
+            FakeNode dirty = index.dirtyRootAt(i);
+            FakeNode parent = index.dirtyParentAt(i);
+            if (index.contains(dirty)) continue;
+            if (parent != null && !index.contains(parent)) continue;
+            if (!dirty.attached) continue;
+            walk(index, parent, dirty);
+        }
+        index.clearDirty();
+    }
+
+    private NodeIndex<FakeNode> rebuild() {
+        NodeIndex<FakeNode> index = new NodeIndex<>();
+        walk(index, null, root);
+        return index;
+    }
+
+    private static NodeTarget target(String kind, String value) {
+        return NodeTarget.parse(kind + ":" + value);
+    }
+
+    /**
+     * 增量结果与整体重建一致：节点集合相同，每个节点的文字都能查到它当前的点击点，
+     * 共用的 id 和描述查到的都是当前界面上某个可见节点
+     */
+    private void assertMatchesRebuild(NodeIndex<FakeNode> index) {
+        NodeIndex<FakeNode> expected = rebuild();
+        assertEquals(expected.size(), index.size());
+        assertEquals(0, index.dirtyCount());
+        for (FakeNode node : attached) {
+            assertTrue(node.toString(), index.contains(node));
+            assertEquals(node.toString(), node.point(), index.find(target("text", node.text())));
+        }
+        for (int i = 0; i < 5; i++) {
+            NodeTarget byId = target("id", "com.foo:id/item_" + i);
+            assertVisiblePoint(expected.find(byId), index.find(byId));
+        }
+        for (int i = 1; i < 3; i++) {
+            NodeTarget byDesc = target("desc", "描述 " + i);
+            assertVisiblePoint(expected.find(byDesc), index.find(byDesc));
+        }
+    }
+
+    private void assertVisiblePoint(long expected, long actual) {
+        assertEquals(expected == CoordinateCell.UNSET, actual == CoordinateCell.UNSET);
+        if (actual == CoordinateCell.UNSET) return;
+        for (FakeNode node : attached) {
+            if (node.point() == actual) return;
+        }
+        throw new AssertionError("查到的点击点不属于当前界面: " + actual);
+    }
+
+    @Test
+    public void addFindAndRejectBadParents() {
+        NodeIndex<FakeNode> index = new NodeIndex<>();
+        FakeNode a = new FakeNode(1);
+        FakeNode b = new FakeNode(2);
+        b.visible = false;
+        index.add(null, a, "com.foo:id/ok", "确定", null, a.point());
+        index.add(a, b, "com.foo:id/ok", "取消", "描述", b.point());
+        assertEquals(2, index.size());
+        assertEquals(a.point(), index.find(target("id", "com.foo:id/ok")));
+        // 不可见节点查不到
+        assertEquals(CoordinateCell.UNSET, index.find(target("text", "取消")));
+        assertEquals(CoordinateCell.UNSET, index.find(target("desc", "描述")));
+        try {
+            index.add(new FakeNode(3), new FakeNode(4), null, null, null, CoordinateCell.UNSET);
+            throw new AssertionError();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            index.add(null, a, null, null, null, CoordinateCell.UNSET);
+            throw new AssertionError();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void childBeforeParentAndParentBeforeChild() {
+        buildTree(1);
+        FakeNode parent = newNode(root);
+        FakeNode child = newNode(parent);
+        FakeNode grandchild = newNode(child);
+        NodeIndex<FakeNode> index = rebuild();
+
+        // 先子后父：子树在父节点遍历时一并恢复
+        child.version++;
+        grandchild.version++;
+        assertTrue(index.invalidate(grandchild));
+        assertTrue(index.invalidate(parent));
+        assertEquals(2, index.dirtyCount());
+        assertFalse(index.contains(grandchild));
+        refreshDirty(index);
+        assertMatchesRebuild(index);
+
+        // 先父后子：已移除的子节点不重复登记
+        grandchild.version++;
+        assertTrue(index.invalidate(parent));
+        assertTrue(index.invalidate(grandchild));
+        assertEquals(1, index.dirtyCount());
+        assertEquals(parent, index.dirtyRootAt(0));
+        assertEquals(root, index.dirtyParentAt(0));
+        refreshDirty(index);
+        assertMatchesRebuild(index);
+    }
+
+    @Test
+    public void rootInvalidationHasNoParent() {
+        buildTree(20);
+        NodeIndex<FakeNode> index = rebuild();
+        root.version++;
+        assertTrue(index.invalidate(root));
+        assertNull(index.dirtyParentAt(0));
+        assertEquals(0, index.size());
+        refreshDirty(index);
+        assertMatchesRebuild(index);
+    }
+
+    @Test
+    public void removedWhilePendingIsNotReadded() {
+        buildTree(1);
+        FakeNode parent = newNode(root);
+        FakeNode child = newNode(parent);
+        newNode(child);
+        NodeIndex<FakeNode> index = rebuild();
+
+        // 子节点先报告变化，随后被移出界面，父节点再报告变化
+        assertTrue(index.invalidate(child));
+        parent.children.remove(child);
+        detach(child);
+        assertTrue(index.invalidate(parent));
+        refreshDirty(index);
+        assertFalse(index.contains(child));
+        assertMatchesRebuild(index);
+
+        // 只有已脱离的节点报告变化时也不会加回
+        FakeNode other = newNode(root);
+        index.invalidate(root);
+        refreshDirty(index);
+        assertTrue(index.contains(other));
+        assertTrue(index.invalidate(other));
+        root.children.remove(other);
+        detach(other);
+        refreshDirty(index);
+        assertMatchesRebuild(index);
+    }
+
+    @Test
+    public void unknownNodeAsksForRebuild() {
+        buildTree(10);
+        NodeIndex<FakeNode> index = rebuild();
+        FakeNode fresh = newNode(root);
+        assertFalse(index.invalidate(fresh));
+        assertEquals(0, index.dirtyCount());
+    }
+
+    @Test
+    public void incrementalRefreshEqualsRebuildAfterRandomChanges() {
+        buildTree(60);
+        NodeIndex<FakeNode> index = rebuild();
+        long rebuiltNodes = 0;
+        for (int round = 0; round < 300; round++) {
+            int events = 1 + random.nextInt(6);
+            boolean needRebuild = false;
+            for (int e = 0; e < events; e++) {
+                FakeNode node = attached.get(random.nextInt(attached.size()));
+                int op = random.nextInt(10);
+                FakeNode source;
+                if (op < 4) {
+                    // 文字或可见性变化，事件来自节点本身
+                    node.version++;
+                    if (random.nextInt(4) == 0) node.visible = !node.visible;
+                    source = node;
+                } else if (op < 7 || node == root) {
+                    // 新增子节点，事件来自父节点
+                    newNode(node);
+                    source = node;
+                } else {
+                    // 移除子树，事件来自原父节点；有时被移除的节点也先报告一次
+                    FakeNode parent = node.parent;
+                    if (random.nextBoolean()) needRebuild |= !index.invalidate(node);
+                    parent.children.remove(node);
+                    detach(node);
+                    source = parent;
+                }
+                if (!index.invalidate(source)) {
+                    needRebuild = true;
+                }
+            }
+            if (needRebuild) {
+                // 与 NodeLocator.invalidateAll 之后的重建相同
+                index.clear();
+                walk(index, null, root);
+                rebuiltNodes++;
+            } else {
+                refreshDirty(index);
+            }
+            assertMatchesRebuild(index);
+            // 控制树的规模
+            while (attached.size() > 120) {
+                FakeNode node = attached.get(1 + random.nextInt(attached.size() - 1));
+                node.parent.children.remove(node);
+                detach(node);
+                index.invalidate(node.parent);
+                refreshDirty(index);
+            }
+        }
+        // 大部分轮次走增量刷新
+        assertTrue("rebuilds " + rebuiltNodes, rebuiltNodes < 150);
+        assertTrue(index.getInvalidatedNodes() > 0);
+    }
+}
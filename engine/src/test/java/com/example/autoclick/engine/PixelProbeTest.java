@@ -0,0 +1,217 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class PixelProbeTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 300;
+
+    private static int[] frame(int color) {
+        int[] frame = new int[WIDTH * HEIGHT];
+        Arrays.fill(frame, color);
+        return frame;
+    }
+
+    private static void fillRect(int[] frame, int stride, int left, int top, int width, int height, int color) {
+        for (int y = top; y < top + height; y++) {
+            Arrays.fill(frame, y * stride + left, y * stride + left + width, color);
+        }
+    }
+
+    /**
+     * 按 clip 的布局把各区域从整帧复制到紧凑缓冲区，与 ScreenProbe 的做法相同
+     */
+    private static int[] compact(PixelProbe probe, int[] frame, int stride) {
+        int[] buffer = new int[probe.bufferSize()];
+        for (int i = 0; i < probe.size(); i++) {
+            int width = probe.regionWidth(i);
+            // 屏幕外的区域不读取
+            if (width == 0) continue;
+            for (int y = 0; y < probe.regionHeight(i); y++) {
+                System.arraycopy(frame, (probe.regionTop(i) + y) * stride + probe.regionLeft(i),
+                        buffer, probe.regionOffset(i) + y * width, width);
+            }
+        }
+        return buffer;
+    }
+
+    private static PixelProbe clipped(String source) {
+        PixelProbe probe = PixelProbe.parse(source);
+        probe.clip(WIDTH, HEIGHT);
+        return probe;
+    }
+
+    @Test
+    public void parsesDefaultsAndRoundTrips() {
+        PixelProbe probe = PixelProbe.parse("pixel:10,20,#FF8000; 30,40,#00ff00,5,3");
+        assertEquals(2, probe.size());
+        assertEquals("pixel:10,20,#FF8000,16,0;30,40,#00FF00,5,3", probe.toString());
+        assertEquals(probe.toString(), PixelProbe.parse(probe.toString()).toString());
+    }
+
+    @Test
+    public void rejectsMalformedSpecs() {
+        String[] bad = {
+                "pixel:", "pixel:1,2", "pixel:1,2,#FFF", "pixel:1,2,#GG0000", "pixel:-1,2,#000000",
+                "pixel:1,2,#000000,256", "pixel:1,2,#000000,-1", "pixel:1,2,#000000,0,65",
+                "pixel:1,2,#000000,0,0,0", "pixel:a,2,#000000", "1,2,#000000"
+        };
+        for (String source : bad) {
+            try {
+                PixelProbe.parse(source);
+                fail(source);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void toleranceIsInclusive() {
+        PixelProbe probe = clipped("pixel:50,50,#808080,16");
+        int[] frame = frame(0xFF000000);
+
+        frame[50 * WIDTH + 50] = 0xFF909090;
+        assertTrue(probe.matchesFrame(frame, WIDTH));
+        frame[50 * WIDTH + 50] = 0xFF707070;
+        assertTrue(probe.matchesFrame(frame, WIDTH));
+        // 任一通道差 17 即不匹配
+        frame[50 * WIDTH + 50] = 0xFF809180;
+        assertFalse(probe.matchesFrame(frame, WIDTH));
+        frame[50 * WIDTH + 50] = 0xFF80806F;
+        assertFalse(probe.matchesFrame(frame, WIDTH));
+    }
+
+    @Test
+    public void zeroToleranceNeedsExactColorAndIgnoresAlpha() {
+        PixelProbe probe = clipped("pixel:0,0,#123456,0");
+        int[] frame = frame(0x00123456);
+        assertTrue(probe.matchesFrame(frame, WIDTH));
+        frame[0] = 0xFF123457;
+        assertFalse(probe.matchesFrame(frame, WIDTH));
+    }
+
+    @Test
+    public void radiusBoundsTheRegion() {
+        PixelProbe probe = clipped("pixel:100,100,#FF0000,0,2");
+        assertEquals(5, probe.regionWidth(0));
+        assertEquals(5, probe.regionHeight(0));
+
+        int[] frame = frame(0xFF0000FF);
+        fillRect(frame, WIDTH, 98, 98, 5, 5, 0xFFFF0000);
+        // 半径之外的像素不参与
+        assertTrue(probe.matchesFrame(frame, WIDTH));
+
+        // 区域内被采样的像素变色则不匹配
+        frame[100 * WIDTH + 100] = 0xFF0000FF;
+        assertFalse(probe.matchesFrame(frame, WIDTH));
+    }
+
+    @Test
+    public void largeRadiusComparesSampledAverage() {
+        PixelProbe probe = clipped("pixel:100,100,#808080,4,64");
+        assertEquals(129, probe.regionWidth(0));
+        int[] frame = frame(0xFF808080);
+        assertTrue(probe.matchesFrame(frame, WIDTH));
+
+        // 采样步长 26、从 13 开始，每行采样列为 49、75、101、127、153：
+        // 两列偏亮 10、三列偏暗 10，每个采样都超出容差，平均值只差 2
+        fillRect(frame, WIDTH, 36, 36, 65, 129, 0xFF8A8A8A);
+        fillRect(frame, WIDTH, 101, 36, 64, 129, 0xFF767676);
+        assertTrue(probe.matchesFrame(frame, WIDTH));
+        fillRect(frame, WIDTH, 36, 36, 129, 129, 0xFF848484);
+        assertTrue(probe.matchesFrame(frame, WIDTH));
+        fillRect(frame, WIDTH, 36, 36, 129, 129, 0xFF858585);
+        assertFalse(probe.matchesFrame(frame, WIDTH));
+    }
+
+    @Test
+    public void clipsRegionsAtScreenBorders() {
+        PixelProbe probe = clipped("pixel:0,0,#000000,0,3;199,299,#000000,0,3;198,10,#000000,0,5");
+        assertEquals(0, probe.regionLeft(0));
+        assertEquals(0, probe.regionTop(0));
+        assertEquals(4, probe.regionWidth(0));
+        assertEquals(4, probe.regionHeight(0));
+
+        assertEquals(196, probe.regionLeft(1));
+        assertEquals(296, probe.regionTop(1));
+        assertEquals(4, probe.regionWidth(1));
+        assertEquals(4, probe.regionHeight(1));
+
+        assertEquals(193, probe.regionLeft(2));
+        assertEquals(7, probe.regionWidth(2));
+        assertEquals(11, probe.regionHeight(2));
+
+        assertEquals(16 + 16 + 77, probe.bufferSize());
+        assertEquals(0, probe.regionOffset(0));
+        assertEquals(16, probe.regionOffset(1));
+        assertEquals(32, probe.regionOffset(2));
+
+        int[] frame = frame(0xFF000000);
+        assertTrue(probe.matchesFrame(frame, WIDTH));
+        assertTrue(probe.matchesBuffer(compact(probe, frame, WIDTH)));
+    }
+
+    @Test
+    public void offscreenRegionHasZeroSizeAndNeverMatches() {
+        PixelProbe probe = clipped("pixel:10,10,#000000;250,10,#000000,255,2");
+        assertEquals(0, probe.regionWidth(1));
+        assertEquals(1, probe.bufferSize());
+
+        int[] frame = frame(0xFF000000);
+        assertFalse(probe.matchesFrame(frame, WIDTH));
+        assertFalse(probe.matchesBuffer(compact(probe, frame, WIDTH)));
+
+        // 屏幕变宽后同一探针重新裁剪，区域回到屏幕内
+        probe.clip(400, HEIGHT);
+        assertEquals(5, probe.regionWidth(1));
+        assertEquals(26, probe.bufferSize());
+        assertTrue(probe.matchesFrame(new int[400 * HEIGHT], 400));
+    }
+
+    @Test
+    public void zeroSizedScreenMatchesNothing() {
+        PixelProbe probe = PixelProbe.parse("pixel:0,0,#000000,255");
+        probe.clip(0, HEIGHT);
+        assertEquals(0, probe.regionWidth(0));
+        assertEquals(0, probe.bufferSize());
+        assertFalse(probe.matchesBuffer(new int[0]));
+    }
+
+    @Test
+    public void compactBufferMatchesFullFrame() {
+        Random random = new Random(17);
+        int stride = WIDTH + 8; // 行末有填充
+        int matches = 0;
+        for (int round = 0; round < 500; round++) {
+            StringBuilder source = new StringBuilder(PixelProbe.PREFIX);
+            int probes = 1 + random.nextInt(4);
+            int[] frame = new int[stride * HEIGHT];
+            for (int i = 0; i < frame.length; i++) {
+                frame[i] = 0xFF000000 | (0x60 + random.nextInt(0x40)) * 0x010101;
+            }
+            for (int i = 0; i < probes; i++) {
+                int x = random.nextInt(WIDTH + 20);
+                int y = random.nextInt(HEIGHT + 20);
+                int radius = random.nextInt(4) == 0 ? 0 : random.nextInt(20);
+                if (i > 0) source.append(';');
+                source.append(x).append(',').append(y).append(",#808080,").append(8 + random.nextInt(40))
+                        .append(',').append(radius);
+            }
+            PixelProbe probe = PixelProbe.parse(source.toString());
+            probe.clip(WIDTH, HEIGHT);
+
+            boolean onFrame = probe.matchesFrame(frame, stride);
+            assertEquals(source.toString(), onFrame, probe.matchesBuffer(compact(probe, frame, stride)));
+            if (onFrame) matches++;
+        }
+        // 两种结果都要覆盖到
+        assertTrue("matches " + matches, matches > 20 && matches < 480);
+    }
+}
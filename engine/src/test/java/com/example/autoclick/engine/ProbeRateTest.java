@@ -0,0 +1,77 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ProbeRateTest {
+    private static final long MS = 1_000_000L;
+
+    private final ProbeRate rate = new ProbeRate(100 * MS, 1000 * MS, 0.25);
+
+    @Test
+    public void startsAtMinimumInterval() {
+        assertEquals(100 * MS, rate.intervalNanos());
+        assertEquals(0, rate.getAverageCostNanos());
+        assertEquals(40 * MS, rate.nextDelayNanos(60 * MS));
+        assertEquals(0, rate.nextDelayNanos(150 * MS));
+    }
+
+    @Test
+    public void rateLimitBacksOffByHalfUpToMaximum() {
+        rate.onRateLimited();
+        assertEquals(150 * MS, rate.intervalNanos());
+        rate.onRateLimited();
+        assertEquals(225 * MS, rate.intervalNanos());
+        for (int i = 0; i < 10; i++) {
+            rate.onRateLimited();
+        }
+        assertEquals(1000 * MS, rate.intervalNanos());
+    }
+
+    @Test
+    public void successfulSamplesEaseBackToMinimum() {
+        rate.onRateLimited();
+        rate.onRateLimited();
+        long previous = rate.intervalNanos();
+        rate.onSample(MS);
+        // 每次回落超出部分的 1/8
+        assertEquals(225 * MS - (125 * MS + 7) / 8, rate.intervalNanos());
+
+        for (int i = 0; i < 200; i++) {
+            rate.onSample(MS);
+            long interval = rate.intervalNanos();
+            assertTrue(interval <= previous);
+            previous = interval;
+        }
+        assertEquals(100 * MS, rate.intervalNanos());
+    }
+
+    @Test
+    public void slowSamplesStretchIntervalToBudget() {
+        rate.onSample(40 * MS);
+        // 耗时不超过间隔的 25%
+        assertEquals(160 * MS, rate.intervalNanos());
+
+        // 指数平均：新样本只占 1/4
+        rate.onSample(80 * MS);
+        assertEquals(50 * MS, rate.getAverageCostNanos());
+        assertEquals(200 * MS, rate.intervalNanos());
+
+        rate.onSample(2000 * MS);
+        assertEquals(1000 * MS, rate.intervalNanos());
+    }
+
+    @Test
+    public void backOffAndBudgetTakeTheLarger() {
+        rate.onSample(30 * MS);
+        assertEquals(120 * MS, rate.intervalNanos());
+        rate.onRateLimited();
+        rate.onRateLimited();
+        assertEquals(225 * MS, rate.intervalNanos());
+        rate.onSample(100 * MS);
+        // 平均耗时升到 47.5ms 后预算要求 190ms，退避后的下限更大
+        assertEquals(225 * MS - (125 * MS + 7) / 8, rate.intervalNanos());
+    }
+}
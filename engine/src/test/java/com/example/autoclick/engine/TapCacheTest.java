@@ -0,0 +1,95 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+
+public class TapCacheTest {
+
+    private final TapCache<Object> cache = new TapCache<>(new TapCache.Factory<Object>() {
+        @Override
+        public Object build(int x, int y, long durationMs) {
+            return new Object();
+        }
+    });
+
+    @Test
+    public void repeatedTapsAtCachedPointDoNotRebuild() {
+        Object first = cache.obtain(540, 1200, 50);
+        for (int i = 0; i < 1000; i++) {
+            assertSame(first, cache.obtain(540, 1200, 50));
+        }
+        assertEquals(1, cache.getBuilds());
+        assertEquals(1000, cache.getHits());
+    }
+
+    @Test
+    public void pointAndDurationArePartOfTheKey() {
+        Object tap = cache.obtain(100, 200, 50);
+        assertNotSame(tap, cache.obtain(101, 200, 50));
+        assertNotSame(tap, cache.obtain(100, 201, 50));
+        assertNotSame(tap, cache.obtain(100, 200, 51));
+    }
+
+    @Test
+    public void keysDoNotOverlap() {
+        assertTrue(TapCache.key(1, 0, 0) != TapCache.key(0, 1, 0));
+        assertTrue(TapCache.key(0, 1, 0) != TapCache.key(0, 0, 1));
+        // 时长上限 60 秒在 16 位之内，不会溢出到 y
+        assertEquals(60_000, TapCache.key(0, 0, 60_000) & 0xFFFF);
+    }
+
+    @Test
+    public void collidingPointReplacesEntry() {
+        long key = TapCache.key(10, 10, 50);
+        int x = 11;
+        while (TapCache.slot(TapCache.key(x, 10, 50)) != TapCache.slot(key)) x++;
+
+        Object first = cache.obtain(10, 10, 50);
+        cache.obtain(x, 10, 50);
+        assertNotSame(first, cache.obtain(10, 10, 50));
+        assertEquals(3, cache.getBuilds());
+    }
+
+    @Test
+    public void clearForcesRebuild() {
+        Object first = cache.obtain(1, 2, 50);
+        cache.clear();
+        assertNotSame(first, cache.obtain(1, 2, 50));
+        assertEquals(2, cache.getBuilds());
+    }
+
+    @Test
+    public void steadyStateTapsAllocateNothing() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        // 两个点交替点击，先各构建一次并让 JIT 编译完
+        for (int i = 0; i < 20_000; i++) {
+            cache.obtain(540, 1200, 50);
+            cache.obtain(300, 800, 50);
+        }
+        long builds = cache.getBuilds();
+
+        int taps = 100_000;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < taps; i++) {
+            cache.obtain(540, 1200, 50);
+            cache.obtain(300, 800, 50);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(builds, cache.getBuilds());
+        // 每次点击哪怕分配一个对象也会有数 MB，这里只容许查询本身的少量开销
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
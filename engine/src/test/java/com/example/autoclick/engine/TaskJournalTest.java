@@ -0,0 +1,202 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TaskJournalTest {
+    // 魔数
+    private static final int HEADER_BYTES = 4;
+    // 类型 + 编号 + 长度 + CRC
+    private static final int RECORD_OVERHEAD = 13;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private TaskJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "journal/tasks.bin");
+        journal = new TaskJournal(file);
+        assertTrue(journal.load().isEmpty());
+    }
+
+    @After
+    public void tearDown() {
+        journal.close();
+    }
+
+    private static TaskSpec spec(long targetTime) {
+        TaskSpec spec = new TaskSpec();
+        spec.targetTime = targetTime;
+        spec.clickX = (int) targetTime % 1000;
+        spec.clickY = 2000;
+        spec.script = "tap 10 20\nwait 50";
+        spec.trigger = targetTime % 2 == 0 ? null : "pixel 1 2 #ff0000 10";
+        return spec;
+    }
+
+    private Map<Integer, TaskSpec> reopen() throws IOException {
+        journal.close();
+        journal = new TaskJournal(file);
+        return journal.load();
+    }
+
+    private static long recordBytes(TaskSpec spec) {
+        return RECORD_OVERHEAD + spec.toBytes().length;
+    }
+
+    @Test
+    public void replaysArmedTasksInOrder() throws IOException {
+        journal.append(3, spec(3000));
+        journal.append(1, spec(1001));
+        journal.append(2, spec(2000));
+        journal.remove(1, true);
+
+        Map<Integer, TaskSpec> tasks = reopen();
+        assertEquals(Arrays.asList(3, 2), new ArrayList<>(tasks.keySet()));
+        assertArrayEquals(spec(3000).toBytes(), tasks.get(3).toBytes());
+        assertArrayEquals(spec(2000).toBytes(), tasks.get(2).toBytes());
+    }
+
+    @Test
+    public void rearmReplacesTask() throws IOException {
+        journal.append(1, spec(1000));
+        journal.append(1, spec(1500));
+        Map<Integer, TaskSpec> tasks = reopen();
+        assertEquals(1, tasks.size());
+        assertEquals(1500, tasks.get(1).targetTime);
+    }
+
+    @Test
+    public void nonDurableRemoveIsStillReplayed() throws IOException {
+        journal.append(1, spec(1000));
+        journal.remove(1, false);
+        assertTrue(reopen().isEmpty());
+    }
+
+    @Test
+    public void removingUnknownTaskWritesNothing() throws IOException {
+        journal.append(1, spec(1000));
+        long length = file.length();
+        journal.remove(7, true);
+        assertEquals(length, file.length());
+    }
+
+    @Test
+    public void tornTailIsTruncatedAndAppendContinues() throws IOException {
+        journal.append(1, spec(1000));
+        journal.append(2, spec(2001));
+        journal.close();
+        long complete = HEADER_BYTES + recordBytes(spec(1000));
+        // 进程在写第二条记录时被杀
+        truncate(file.length() - 5);
+
+        journal = new TaskJournal(file);
+        Map<Integer, TaskSpec> tasks = journal.load();
+        assertEquals(1, tasks.size());
+        assertTrue(tasks.containsKey(1));
+        assertEquals(complete, file.length());
+
+        journal.append(3, spec(3000));
+        tasks = reopen();
+        assertEquals(2, tasks.size());
+        assertArrayEquals(spec(3000).toBytes(), tasks.get(3).toBytes());
+    }
+
+    @Test
+    public void crcMismatchDropsRecordAndEverythingAfter() throws IOException {
+        journal.append(1, spec(1000));
+        journal.append(2, spec(2000));
+        journal.append(3, spec(3000));
+        journal.close();
+        // 改动第二条记录负载中的一个字节
+        long second = HEADER_BYTES + recordBytes(spec(1000));
+        flipByte(second + 9 + 3);
+
+        journal = new TaskJournal(file);
+        Map<Integer, TaskSpec> tasks = journal.load();
+        assertEquals(1, tasks.size());
+        assertTrue(tasks.containsKey(1));
+        assertEquals(second, file.length());
+    }
+
+    @Test
+    public void unknownFileStartsEmpty() throws IOException {
+        journal.append(1, spec(1000));
+        journal.close();
+        flipByte(0);
+
+        journal = new TaskJournal(file);
+        assertTrue(journal.load().isEmpty());
+        assertEquals(HEADER_BYTES, file.length());
+        journal.append(2, spec(2000));
+        assertEquals(1, reopen().size());
+    }
+
+    @Test
+    public void compactsWhenDeadRecordsDominate() throws IOException {
+        journal.append(0, spec(42));
+        int cycles = 200;
+        for (int i = 1; i <= cycles; i++) {
+            journal.append(i, spec(1000 + i));
+            journal.remove(i, i % 2 == 0);
+        }
+        assertEquals(1, journal.size());
+        // 第 128 轮时压缩过一次，之后只有 72 轮的记录
+        long uncompacted = HEADER_BYTES + recordBytes(spec(42))
+                + cycles * (recordBytes(spec(1001)) + RECORD_OVERHEAD);
+        assertTrue("length " + file.length(), file.length() < uncompacted / 2);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        Map<Integer, TaskSpec> tasks = reopen();
+        assertEquals(1, tasks.size());
+        assertArrayEquals(spec(42).toBytes(), tasks.get(0).toBytes());
+    }
+
+    @Test
+    public void clearDropsEverything() throws IOException {
+        journal.append(1, spec(1000));
+        journal.append(2, spec(2000));
+        journal.clear();
+        assertEquals(0, journal.size());
+        assertEquals(HEADER_BYTES, file.length());
+        assertTrue(reopen().isEmpty());
+    }
+
+    private void truncate(long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void flipByte(long position) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+    }
+}
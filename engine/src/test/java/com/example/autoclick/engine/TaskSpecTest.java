@@ -0,0 +1,121 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class TaskSpecTest {
+    // warmupMs（版本 6）和 compensateLatency（版本 7）在记录末尾
+    private static final int V6_V7_TAIL_BYTES = 8 + 1;
+
+    private static TaskSpec fullSpec() {
+        TaskSpec spec = new TaskSpec();
+        spec.targetTime = 1_700_000_000_123L;
+        spec.clickX = 540;
+        spec.clickY = 1200;
+        spec.clickDurationSeconds = 2.5;
+        spec.baseInterval = 120;
+        spec.randomRange = 30;
+        spec.missedSlotPolicy = ClickTimeline.MissedSlotPolicy.COMPRESS.name();
+        spec.tapDurationMs = 40;
+        spec.burstMode = true;
+        spec.burstWindowMs = 250;
+        spec.maxInFlight = 3;
+        spec.retryWindowMs = 20;
+        spec.script = "tap 1 2; wait 30";
+        spec.fromUi = true;
+        spec.trigger = "text:com.foo:开始";
+        spec.target = "id:com.foo:id/buy";
+        spec.macro = "/data/macro.bin";
+        spec.chord = "100,200;300,400;500,600";
+        spec.warmupMs = 1500;
+        spec.compensateLatency = false;
+        return spec;
+    }
+
+    private static void assertSameSpec(TaskSpec expected, TaskSpec actual) {
+        assertArrayEquals(expected.toBytes(), actual.toBytes());
+    }
+
+    @Test
+    public void roundTripsEveryField() throws IOException {
+        TaskSpec spec = fullSpec();
+        TaskSpec read = TaskSpec.read(ByteBuffer.wrap(spec.toBytes()));
+        assertEquals(spec.targetTime, read.targetTime);
+        assertEquals(spec.clickDurationSeconds, read.clickDurationSeconds, 0);
+        assertEquals("100,200;300,400;500,600", read.chord);
+        assertEquals(3, ClickChord.parse(read.chord).size());
+        assertEquals(spec.macro, read.macro);
+        assertEquals(1500, read.warmupMs);
+        assertFalse(read.compensateLatency);
+        assertSameSpec(spec, read);
+    }
+
+    @Test
+    public void roundTripsNullStringsAndDefaults() throws IOException {
+        TaskSpec spec = new TaskSpec();
+        TaskSpec read = TaskSpec.read(ByteBuffer.wrap(spec.toBytes()));
+        assertNull(read.chord);
+        assertNull(read.script);
+        assertNull(read.missedSlotPolicy);
+        assertTrue(read.compensateLatency);
+        assertSameSpec(spec, read);
+    }
+
+    @Test
+    public void readsVersion5WithChordAndDefaultsLaterFields() throws IOException {
+        TaskSpec spec = fullSpec();
+        byte[] bytes = spec.toBytes();
+        byte[] v5 = Arrays.copyOf(bytes, bytes.length - V6_V7_TAIL_BYTES);
+        v5[0] = 5;
+        TaskSpec read = TaskSpec.read(ByteBuffer.wrap(v5));
+        assertEquals(spec.chord, read.chord);
+        assertEquals(spec.macro, read.macro);
+        assertEquals(new TaskSpec().warmupMs, read.warmupMs);
+        assertTrue(read.compensateLatency);
+    }
+
+    @Test
+    public void readsConsecutiveRecords() throws IOException {
+        TaskSpec first = fullSpec();
+        TaskSpec second = new TaskSpec();
+        second.chord = "1,1;2,2";
+        byte[] a = first.toBytes();
+        byte[] b = second.toBytes();
+        ByteBuffer in = ByteBuffer.allocate(a.length + b.length).put(a).put(b);
+        in.flip();
+        assertSameSpec(first, TaskSpec.read(in));
+        assertEquals("1,1;2,2", TaskSpec.read(in).chord);
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    public void rejectsTruncatedAndUnknownVersions() {
+        byte[] bytes = fullSpec().toBytes();
+        byte[] unknown = bytes.clone();
+        unknown[0] = 8;
+        byte[] zero = bytes.clone();
+        zero[0] = 0;
+        byte[] badLength = bytes.clone();
+        // 在 chord 长度处写入超出剩余数据的值
+        int chordLength = bytes.length - V6_V7_TAIL_BYTES - "100,200;300,400;500,600".length() - 4;
+        ByteBuffer.wrap(badLength).putInt(chordLength, 1 << 20);
+        byte[][] bad = {Arrays.copyOf(bytes, bytes.length - 1), Arrays.copyOf(bytes, 10), new byte[0],
+                unknown, zero, badLength};
+        for (byte[] data : bad) {
+            try {
+                TaskSpec.read(ByteBuffer.wrap(data));
+                fail(data.length + " 字节");
+            } catch (IOException expected) {
+            }
+        }
+    }
+}
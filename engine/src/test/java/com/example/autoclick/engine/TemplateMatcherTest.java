@@ -0,0 +1,191 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+public class TemplateMatcherTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int TW = 48;
+    private static final int TH = 40;
+    private static final int BLOCK = 4;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(3);
+
+    private final TemplateMatcher matcher = new TemplateMatcher(pool);
+    private final TemplateMatcher.Match match = new TemplateMatcher.Match();
+
+    @AfterClass
+    public static void shutdownPool() {
+        pool.shutdown();
+    }
+
+    private static int gray(int value) {
+        return 0xFF000000 | value * 0x010101;
+    }
+
+    /**
+     * 按 BLOCK×BLOCK 分块的随机灰度图，降采样后仍保留纹理
+     */
+    private static int[] blocks(int width, int height, Random random) {
+        int[] image = new int[width * height];
+        int columns = (width + BLOCK - 1) / BLOCK;
+        int[] values = new int[columns * ((height + BLOCK - 1) / BLOCK)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = gray(random.nextInt(256));
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image[y * width + x] = values[(y / BLOCK) * columns + x / BLOCK];
+            }
+        }
+        return image;
+    }
+
+    private static void paste(int[] frame, int stride, int[] image, int width, int height, int left, int top) {
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(image, y * width, frame, (top + y) * stride + left, width);
+        }
+    }
+
+    private static int[] brighten(int[] image, int delta) {
+        int[] result = new int[image.length];
+        for (int i = 0; i < image.length; i++) {
+            int value = Math.min(255, (image[i] & 0xFF) + delta);
+            result[i] = gray(value);
+        }
+        return result;
+    }
+
+    @Test
+    public void findsPastedTemplateAtExactOffset() {
+        Random random = new Random(11);
+        int[] frame = blocks(WIDTH, HEIGHT, random);
+        int[] image = blocks(TW, TH, random);
+        paste(frame, WIDTH, image, TW, TH, 123, 77);
+        TemplateMatcher.Template template = new TemplateMatcher.Template(image, TW, TH);
+        assertEquals(TW, template.width());
+        assertEquals(TH, template.height());
+
+        matcher.setFrame(frame, WIDTH, HEIGHT, WIDTH);
+        assertTrue(matcher.find(template, 0, 0, WIDTH, HEIGHT, 1, match));
+        assertEquals(123, match.left);
+        assertEquals(77, match.top);
+        assertEquals(123 + TW / 2, match.centerX);
+        assertEquals(77 + TH / 2, match.centerY);
+        assertEquals(0, match.score, 0);
+    }
+
+    @Test
+    public void roiWithOddEdgesStillFindsTemplate() {
+        Random random = new Random(12);
+        int[] frame = blocks(WIDTH, HEIGHT, random);
+        int[] image = blocks(TW, TH, random);
+        paste(frame, WIDTH, image, TW, TH, 131, 61);
+        TemplateMatcher.Template template = new TemplateMatcher.Template(image, TW, TH);
+        matcher.setFrame(frame, WIDTH, HEIGHT, WIDTH);
+
+        // 感兴趣区域恰好等于模板所在矩形，边界为奇数，粗层按向上取整裁剪
+        assertTrue(matcher.find(template, 131, 61, 131 + TW, 61 + TH, 1, match));
+        assertEquals(131, match.left);
+        assertEquals(61, match.top);
+    }
+
+    @Test
+    public void roiExcludingTemplateIsNotFound() {
+        Random random = new Random(13);
+        int[] frame = blocks(WIDTH, HEIGHT, random);
+        int[] image = blocks(TW, TH, random);
+        paste(frame, WIDTH, image, TW, TH, 200, 150);
+        TemplateMatcher.Template template = new TemplateMatcher.Template(image, TW, TH);
+        matcher.setFrame(frame, WIDTH, HEIGHT, WIDTH);
+
+        assertFalse(matcher.find(template, 0, 0, 200, HEIGHT, 10, match));
+        // 只差一列，模板不完整地落在区域内
+        assertFalse(matcher.find(template, 0, 0, 200 + TW - 1, HEIGHT, 10, match));
+        assertFalse(match.found);
+        assertTrue(matcher.find(template, 0, 0, 200 + TW, HEIGHT, 10, match));
+    }
+
+    @Test
+    public void nearDuplicateDistractorDoesNotWin() {
+        Random random = new Random(14);
+        int[] frame = blocks(WIDTH, HEIGHT, random);
+        int[] image = blocks(TW, TH, random);
+        // 先出现的是整体偏亮的近似副本，真正的目标在其后
+        paste(frame, WIDTH, brighten(image, 12), TW, TH, 20, 30);
+        paste(frame, WIDTH, image, TW, TH, 210, 170);
+        TemplateMatcher.Template template = new TemplateMatcher.Template(image, TW, TH);
+        matcher.setFrame(frame, WIDTH, HEIGHT, WIDTH);
+
+        assertTrue(matcher.find(template, 0, 0, WIDTH, HEIGHT, 20, match));
+        assertEquals(210, match.left);
+        assertEquals(170, match.top);
+        assertEquals(0, match.score, 0);
+
+        // 只剩近似副本时仍能在阈值内找到它，阈值更严时找不到
+        assertTrue(matcher.find(template, 0, 0, 150, 150, 20, match));
+        assertEquals(20, match.left);
+        assertEquals(30, match.top);
+        assertFalse(matcher.find(template, 0, 0, 150, 150, 5, match));
+    }
+
+    @Test
+    public void absentTemplateExceedsMaxScore() {
+        Random random = new Random(15);
+        int[] frame = blocks(WIDTH, HEIGHT, random);
+        TemplateMatcher.Template template = new TemplateMatcher.Template(blocks(TW, TH, random), TW, TH);
+        matcher.setFrame(frame, WIDTH, HEIGHT, WIDTH);
+        assertFalse(matcher.find(template, 0, 0, WIDTH, HEIGHT, 10, match));
+        // 位置仍给出最接近的一处，只是超出阈值
+        assertTrue(match.score > 10);
+    }
+
+    @Test
+    public void frameSmallerThanTemplateIsNotFound() {
+        Random random = new Random(16);
+        int[] image = blocks(TW, TH, random);
+        TemplateMatcher.Template template = new TemplateMatcher.Template(image, TW, TH);
+        assertFalse(matcher.find(template, 0, 0, WIDTH, HEIGHT, 255, match));
+
+        int[] frame = blocks(TW - 1, TH + 10, random);
+        matcher.setFrame(frame, TW - 1, TH + 10, TW - 1);
+        assertFalse(matcher.find(template, 0, 0, WIDTH, HEIGHT, 255, match));
+        frame = blocks(TW + 10, TH - 1, random);
+        matcher.setFrame(frame, TW + 10, TH - 1, TW + 10);
+        assertFalse(matcher.find(template, 0, 0, WIDTH, HEIGHT, 255, match));
+    }
+
+    @Test
+    public void frameWithRowPaddingAndSizeChange() {
+        Random random = new Random(17);
+        int stride = WIDTH + 16;
+        int[] frame = blocks(stride, HEIGHT, random);
+        int[] image = blocks(TW, TH, random);
+        paste(frame, stride, image, TW, TH, 57, 99);
+        TemplateMatcher.Template template = new TemplateMatcher.Template(image, TW, TH);
+        matcher.setFrame(frame, WIDTH, HEIGHT, stride);
+        assertTrue(matcher.find(template, 0, 0, WIDTH, HEIGHT, 1, match));
+        assertEquals(57, match.left);
+        assertEquals(99, match.top);
+
+        // 换一个尺寸的帧后重新分配金字塔
+        int[] small = blocks(160, 120, random);
+        paste(small, 160, image, TW, TH, 101, 3);
+        matcher.setFrame(small, 160, 120, 160);
+        assertTrue(matcher.find(template, 0, 0, 160, 120, 1, match));
+        assertEquals(101, match.left);
+        assertEquals(3, match.top);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTinyTemplate() {
+        new TemplateMatcher.Template(new int[7 * 20], 7, 20);
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+    private final List<Long> fired = new ArrayList<>();
+
+    private Runnable record(final long deadline, final TimerWheel wheel) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                // 到期时当前刻度不早于 deadline
+                assertTrue(wheel.currentTick() >= deadline);
+                fired.add(deadline);
+            }
+        };
+    }
+
+    @Test
+    public void emptyWheelHasNoDeadline() {
+        TimerWheel wheel = new TimerWheel(0);
+        assertEquals(TimerWheel.NO_DEADLINE, wheel.nextTick());
+        assertEquals(0, wheel.advance(1_000_000));
+        assertEquals(1_000_000, wheel.currentTick());
+    }
+
+    @Test
+    public void firesExactlyAtDeadlineOnEveryLevel() {
+        long[] deadlines = {1, 63, 64, 65, 4095, 4096, 4097, 262_144, 300_000, 1L << 30, (1L << 36) + 5};
+        for (long deadline : deadlines) {
+            TimerWheel wheel = new TimerWheel(0);
+            fired.clear();
+            wheel.schedule(deadline, record(deadline, wheel));
+
+            assertEquals(0, wheel.advance(deadline - 1));
+            assertTrue(fired.isEmpty());
+            assertEquals(1, wheel.size());
+
+            assertEquals(1, wheel.advance(deadline));
+            assertEquals(Collections.singletonList(deadline), fired);
+            assertEquals(0, wheel.size());
+        }
+    }
+
+    @Test
+    public void cascadesThroughNextTickWithoutFiringEarly() {
+        TimerWheel wheel = new TimerWheel(10);
+        long deadline = 10 + 64 * 64 * 3 + 64 * 5 + 7;
+        wheel.schedule(deadline, record(deadline, wheel));
+
+        // 像服务一样只唤醒到 nextTick，中间经过的都是下沉，不会提前执行
+        int wakeups = 0;
+        while (fired.isEmpty()) {
+            long next = wheel.nextTick();
+            assertTrue(next <= deadline);
+            wheel.advance(next);
+            wakeups++;
+        }
+        assertEquals(deadline, wheel.currentTick());
+        assertTrue("wakeups " + wakeups, wakeups <= 7);
+    }
+
+    @Test
+    public void nextTickPointsAtEarliestSlot() {
+        TimerWheel wheel = new TimerWheel(100);
+        wheel.schedule(130, record(130, wheel));
+        wheel.schedule(110, record(110, wheel));
+        assertEquals(110, wheel.nextTick());
+
+        // 高层槽位返回需要下沉的槽位起点，不晚于到期刻度
+        TimerWheel far = new TimerWheel(0);
+        far.schedule(5000, record(5000, far));
+        assertEquals(4096, far.nextTick());
+    }
+
+    @Test
+    public void pastDeadlineFiresOnNextAdvance() {
+        TimerWheel wheel = new TimerWheel(1000);
+        wheel.schedule(500, record(500, wheel));
+        assertEquals(1000, wheel.nextTick());
+        assertEquals(1, wheel.advance(1000));
+        assertEquals(Collections.singletonList(500L), fired);
+    }
+
+    @Test
+    public void cancelRemovesTimer() {
+        TimerWheel wheel = new TimerWheel(0);
+        TimerWheel.Timeout a = wheel.schedule(100, record(100, wheel));
+        TimerWheel.Timeout b = wheel.schedule(100, record(100, wheel));
+        TimerWheel.Timeout c = wheel.schedule(5000, record(5000, wheel));
+
+        assertTrue(b.cancel());
+        assertFalse(b.cancel());
+        assertFalse(b.isPending());
+        assertTrue(c.cancel());
+        assertEquals(1, wheel.size());
+        // 剩下的定时器在第 1 层，唤醒点是它所在槽位的起点
+        assertEquals(64, wheel.nextTick());
+
+        assertEquals(1, wheel.advance(10_000));
+        assertEquals(Collections.singletonList(100L), fired);
+        // 已执行的定时器不能再取消
+        assertFalse(a.cancel());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void taskCanCancelAndScheduleOthers() {
+        final TimerWheel wheel = new TimerWheel(0);
+        final TimerWheel.Timeout victim = wheel.schedule(50, record(50, wheel));
+        wheel.schedule(50, new Runnable() {
+            @Override
+            public void run() {
+                victim.cancel();
+                wheel.schedule(wheel.currentTick() + 10, record(60, wheel));
+            }
+        });
+        // 后加入的定时器先执行，它取消的定时器虽已随槽位到期也不能再执行
+        assertEquals(2, wheel.advance(100));
+        assertEquals(Collections.singletonList(60L), fired);
+        assertFalse(victim.isPending());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void rejectsDeadlineBeyondRange() {
+        TimerWheel wheel = new TimerWheel(0);
+        try {
+            wheel.schedule(1L << 42, record(0, wheel));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        wheel.schedule((1L << 42) - 1, record((1L << 42) - 1, wheel));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    public void matchesSortedReference() {
+        Random random = new Random(7);
+        TimerWheel wheel = new TimerWheel(0);
+        List<Long> pending = new ArrayList<>();
+        List<TimerWheel.Timeout> timeouts = new ArrayList<>();
+        long now = 0;
+
+        for (int round = 0; round < 2000; round++) {
+            for (int i = random.nextInt(5); i > 0; i--) {
+                // 混合近期和远期的到期时刻，覆盖各层
+                long span = random.nextBoolean() ? 200 : 50_000_000;
+                long deadline = now + random.nextInt((int) span);
+                timeouts.add(wheel.schedule(deadline, record(deadline, wheel)));
+                pending.add(deadline);
+            }
+            if (!timeouts.isEmpty() && random.nextInt(4) == 0) {
+                int index = random.nextInt(timeouts.size());
+                TimerWheel.Timeout victim = timeouts.get(index);
+                if (victim.cancel()) {
+                    pending.remove(victim.deadline());
+                }
+                timeouts.remove(index);
+            }
+
+            now += random.nextInt(random.nextInt(10) == 0 ? 1_000_000 : 100);
+            fired.clear();
+            int count = wheel.advance(now);
+
+            List<Long> expected = new ArrayList<>();
+            for (Long deadline : pending) {
+                if (deadline <= now) expected.add(deadline);
+            }
+            pending.removeAll(expected);
+            Collections.sort(expected);
+
+            assertEquals(expected.size(), count);
+            // 按到期先后执行
+            assertEquals(expected, fired);
+            assertEquals(pending.size(), wheel.size());
+        }
+    }
+}
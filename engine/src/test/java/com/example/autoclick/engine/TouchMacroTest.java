@@ -0,0 +1,190 @@
+package com.example.autoclick.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class TouchMacroTest {
+
+    private static byte[] write(long[] times, int[] actions, int[] pointers, int[] xs, int[] ys) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MacroWriter writer = new MacroWriter(bytes);
+        for (int i = 0; i < times.length; i++) {
+            writer.add(times[i], actions[i], pointers[i], xs[i], ys[i]);
+        }
+        writer.close();
+        assertEquals(bytes.size(), writer.getSize());
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void zigzagRoundTripsExtremes() {
+        int[] values = {0, 1, -1, 2, -2, 63, -64, 64, -65, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int value : values) {
+            assertEquals(value, TouchMacro.unzigzag(TouchMacro.zigzag(value)));
+        }
+        // 小的负数编码成小的非负数，varint 只占一个字节
+        assertEquals(1, TouchMacro.zigzag(-1));
+        assertEquals(127, TouchMacro.zigzag(-64));
+    }
+
+    @Test
+    public void roundTripsNegativeDeltasAndAllPointers() throws IOException {
+        int n = 3 * TouchMacro.MAX_POINTERS + 4;
+        long[] times = new long[n];
+        int[] actions = new int[n];
+        int[] pointers = new int[n];
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        int i = 0;
+        for (int pid = 0; pid < TouchMacro.MAX_POINTERS; pid++) {
+            times[i] = pid;
+            actions[i] = TouchMacro.ACTION_DOWN;
+            pointers[i] = pid;
+            xs[i] = 1000 - pid * 30;
+            ys[i] = 2000 - pid * 60;
+            i++;
+        }
+        for (int pid = TouchMacro.MAX_POINTERS - 1; pid >= 0; pid--) {
+            times[i] = 100;
+            actions[i] = TouchMacro.ACTION_MOVE;
+            pointers[i] = pid;
+            // 向左上移动，增量为负
+            xs[i] = -5 - pid;
+            ys[i] = -7 - pid;
+            i++;
+        }
+        for (int pid = 0; pid < TouchMacro.MAX_POINTERS; pid++) {
+            times[i] = 200 + pid;
+            actions[i] = TouchMacro.ACTION_UP;
+            pointers[i] = pid;
+            xs[i] = -5 - pid;
+            ys[i] = -7 - pid;
+            i++;
+        }
+        // 坐标和时间的极端值
+        long[] extremeTimes = {1L << 40, 1L << 40, (1L << 40) + 1, Long.MAX_VALUE / 2};
+        int[] extremeXs = {Integer.MAX_VALUE, Integer.MIN_VALUE, 0, -1};
+        for (int k = 0; k < 4; k++, i++) {
+            times[i] = extremeTimes[k];
+            actions[i] = k == 0 ? TouchMacro.ACTION_DOWN : TouchMacro.ACTION_MOVE;
+            pointers[i] = 31;
+            xs[i] = extremeXs[k];
+            ys[i] = -extremeXs[k];
+        }
+
+        MacroReader reader = new MacroReader(ByteBuffer.wrap(write(times, actions, pointers, xs, ys)));
+        for (int k = 0; k < n; k++) {
+            assertTrue(reader.next());
+            assertEquals(times[k], reader.timeMs());
+            assertEquals(actions[k], reader.action());
+            assertEquals(pointers[k], reader.pointerId());
+            assertEquals(xs[k], reader.x());
+            assertEquals(ys[k], reader.y());
+        }
+        assertFalse(reader.next());
+        assertEquals(n, reader.getEventCount());
+    }
+
+    @Test
+    public void earlierTimestampIsClampedToPrevious() throws IOException {
+        byte[] data = write(new long[]{100, 50}, new int[]{TouchMacro.ACTION_DOWN, TouchMacro.ACTION_UP},
+                new int[]{0, 0}, new int[]{1, 1}, new int[]{2, 2});
+        MacroReader reader = new MacroReader(ByteBuffer.wrap(data));
+        reader.next();
+        reader.next();
+        assertEquals(100, reader.timeMs());
+    }
+
+    @Test
+    public void rejectsPointerAndActionOutOfRange() throws IOException {
+        MacroWriter writer = new MacroWriter(new ByteArrayOutputStream());
+        int[][] bad = {{TouchMacro.ACTION_DOWN, TouchMacro.MAX_POINTERS}, {TouchMacro.ACTION_DOWN, -1},
+                {TouchMacro.ACTION_UP + 1, 0}, {-1, 0}};
+        for (int[] args : bad) {
+            try {
+                writer.add(0, args[0], args[1], 0, 0);
+                fail(Arrays.toString(args));
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        assertEquals(0, writer.getEventCount());
+    }
+
+    @Test
+    public void steadyTrackIsCompact() throws IOException {
+        Random random = new Random(3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MacroWriter writer = new MacroWriter(bytes);
+        int events = 100_000;
+        int x = 500;
+        int y = 1000;
+        long t = 0;
+        for (int i = 0; i < events; i++) {
+            int action = i % 50 == 0 ? TouchMacro.ACTION_DOWN : i % 50 == 49 ? TouchMacro.ACTION_UP
+                    : TouchMacro.ACTION_MOVE;
+            t += 8 + random.nextInt(9);
+            x += random.nextInt(41) - 20;
+            y += random.nextInt(41) - 20;
+            writer.add(t, action, 0, x, y);
+        }
+        writer.close();
+        // 文件头后每条记录平均不超过 6 字节
+        assertTrue("size " + bytes.size(), bytes.size() <= TouchMacro.HEADER_BYTES + 6L * events);
+
+        MacroReader reader = new MacroReader(ByteBuffer.wrap(bytes.toByteArray()));
+        while (reader.next()) {
+            // 全部解码
+        }
+        assertEquals(events, reader.getEventCount());
+        assertEquals(t, reader.timeMs());
+        assertEquals(x, reader.x());
+        assertEquals(y, reader.y());
+    }
+
+    @Test
+    public void rejectsBadHeaderAndTruncatedRecord() throws IOException {
+        byte[] data = write(new long[]{300}, new int[]{TouchMacro.ACTION_DOWN}, new int[]{0},
+                new int[]{1000}, new int[]{2000});
+
+        byte[] badMagic = data.clone();
+        badMagic[0] = 'X';
+        expectIOException(badMagic);
+        byte[] badVersion = data.clone();
+        badVersion[TouchMacro.MAGIC.length] = (byte) (TouchMacro.VERSION + 1);
+        expectIOException(badVersion);
+        expectIOException(Arrays.copyOf(data, TouchMacro.HEADER_BYTES - 1));
+
+        MacroReader truncated = new MacroReader(ByteBuffer.wrap(Arrays.copyOf(data, data.length - 1)));
+        try {
+            truncated.next();
+            fail();
+        } catch (IOException expected) {
+        }
+
+        byte[] badTag = data.clone();
+        badTag[TouchMacro.HEADER_BYTES] = (byte) 0x83;
+        MacroReader corrupt = new MacroReader(ByteBuffer.wrap(badTag));
+        try {
+            corrupt.next();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private static void expectIOException(byte[] data) {
+        try {
+            new MacroReader(ByteBuffer.wrap(data));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+}